@@ -3,12 +3,29 @@ package com.example.libraryweek1.adapter.controller;
 
 import com.example.libraryweek1.adapter.dto.LibraryScanDto;
 import com.example.libraryweek1.adapter.dto.LibraryScanResponseDto;
+import com.example.libraryweek1.adapter.exception.InvalidScanException;
+import com.example.libraryweek1.adapter.exception.ScanBatchTooLargeException;
 import com.example.libraryweek1.adapter.service.LibraryScanAdapterService;
+import com.example.libraryweek1.config.ScanProperties;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 @RestController
@@ -18,10 +35,73 @@ import java.util.concurrent.CompletableFuture;
 public class LibraryScanController {
 
     private final LibraryScanAdapterService libraryScanAdapterService;
+    private final ObjectMapper objectMapper;
+    private final ScanProperties scanProperties;
 
+    // The request thread is released right away; Spring MVC completes the response when the scan engine does
     @PostMapping("/scan")
-    public ResponseEntity<CompletableFuture<LibraryScanResponseDto>> handleLibraryScan(@Valid @RequestBody LibraryScanDto scanDto) {
-        CompletableFuture<LibraryScanResponseDto> response = libraryScanAdapterService.processLibraryScan(scanDto);
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<LibraryScanResponseDto>> handleLibraryScan(@Valid @RequestBody LibraryScanDto scanDto) {
+        return libraryScanAdapterService.processLibraryScan(scanDto).thenApply(ResponseEntity::ok);
     }
-} 
\ No newline at end of file
+
+    // Scans a gate buffered while offline; invalid entries get their own response instead of failing the batch.
+    // The array is read element by element, so an oversized upload is rejected before it is held in memory
+    @PostMapping(value = "/scans", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<List<LibraryScanResponseDto>>> handleLibraryScans(InputStream body) {
+        return libraryScanAdapterService.processLibraryScans(readJsonArray(body)).thenApply(ResponseEntity::ok);
+    }
+
+    // Same as above with one scan per line, so a gate can stream its buffer without building an array
+    @PostMapping(value = "/scans", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public CompletableFuture<ResponseEntity<List<LibraryScanResponseDto>>> handleLibraryScanStream(InputStream body) throws IOException {
+        return libraryScanAdapterService.processLibraryScans(readNdjson(body)).thenApply(ResponseEntity::ok);
+    }
+
+    // --- Helper Logic ---
+    private List<LibraryScanDto> readJsonArray(InputStream body) {
+        ObjectReader scanReader = objectMapper.readerFor(LibraryScanDto.class)
+                .without(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+        List<LibraryScanDto> scans = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidScanException("Scan Batch Must Be A JSON Array");
+            }
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token == null) {
+                    throw new InvalidScanException("Malformed Scan At Index " + scans.size());
+                }
+                checkUploadSize(scans);
+                // A null entry is kept, it is answered as invalid like any other bad scan
+                scans.add(token == JsonToken.VALUE_NULL ? null : scanReader.readValue(parser));
+            }
+        } catch (JacksonException e) {
+            throw new InvalidScanException("Malformed Scan At Index " + scans.size());
+        }
+        return scans;
+    }
+
+    private List<LibraryScanDto> readNdjson(InputStream body) throws IOException {
+        List<LibraryScanDto> scans = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            checkUploadSize(scans);
+            try {
+                scans.add(objectMapper.readValue(line, LibraryScanDto.class));
+            } catch (JacksonException e) {
+                throw new InvalidScanException("Malformed Scan On Line " + lineNumber);
+            }
+        }
+        return scans;
+    }
+
+    private void checkUploadSize(List<LibraryScanDto> scans) {
+        if (scans.size() >= scanProperties.getMaxUploadScans()) {
+            throw new ScanBatchTooLargeException(scanProperties.getMaxUploadScans());
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.libraryweek1.adapter.exception;
+
+import com.example.libraryweek1.config.ApiBaseException;
+import org.springframework.http.HttpStatus;
+
+public class InvalidScanException extends ApiBaseException {
+    public InvalidScanException(String message) {
+        super(message, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.libraryweek1.adapter.exception;
+
+import com.example.libraryweek1.config.ApiBaseException;
+import org.springframework.http.HttpStatus;
+
+public class ScanBatchTooLargeException extends ApiBaseException {
+    public ScanBatchTooLargeException(int maxScans) {
+        super("Scan Batch Exceeds " + maxScans + " Scans", HttpStatus.CONTENT_TOO_LARGE);
+    }
+}
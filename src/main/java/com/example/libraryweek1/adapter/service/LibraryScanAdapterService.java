@@ -4,6 +4,7 @@ package com.example.libraryweek1.adapter.service;
 import com.example.libraryweek1.adapter.dto.LibraryScanDto;
 import com.example.libraryweek1.adapter.dto.LibraryScanResponseDto;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public interface LibraryScanAdapterService {
@@ -13,4 +14,11 @@ public interface LibraryScanAdapterService {
      * @return LibraryScanResponseDto containing check-in status, break status, and remaining break minutes
      */
     CompletableFuture<LibraryScanResponseDto> processLibraryScan(LibraryScanDto scanDto);
+
+    /**
+     * Process scans a gate buffered while offline, in the given order
+     * @param scans The buffered scans, oldest first
+     * @return One response per scan, in the same order
+     */
+    CompletableFuture<List<LibraryScanResponseDto>> processLibraryScans(List<LibraryScanDto> scans);
 } 
\ No newline at end of file
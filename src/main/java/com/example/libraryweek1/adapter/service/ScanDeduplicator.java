@@ -0,0 +1,154 @@
+package com.example.libraryweek1.adapter.service;
+
+import com.example.libraryweek1.adapter.dto.LibraryScanDto;
+import com.example.libraryweek1.adapter.dto.LibraryScanResponseDto;
+import com.example.libraryweek1.config.ScanProperties;
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Drops the repeats of a double-firing gate. A scan is identified by (studentId, scanType, window), the
+ * window being its timestamp divided into {@code dedupWindow} buckets. Each node first checks a local
+ * cache of in-flight and recent scans, so repeats arriving at the same node share the first scan's
+ * response future. Across nodes the first scan claims its key with SET NX PX in Redis and stores its
+ * response there, so a repeat on another node gets the stored response instead of being processed again;
+ * a repeat arriving while the first is still being processed elsewhere gets 409 with Retry-After, since
+ * its outcome is not known yet. Failed scans release their key so the gate's retry goes through. If Redis is unavailable, scans are
+ * processed anyway and only the local tier applies.
+ */
+@Slf4j
+@Component
+public class ScanDeduplicator {
+
+    private static final String KEY_PREFIX = "library:scan:dedup:";
+    private static final String PENDING = "pending";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration window;
+    private final Duration ttl;
+    private final Duration retryAfter;
+    private final Cache<String, CompletableFuture<LibraryScanResponseDto>> recent;
+    private final Counter localDuplicateCounter;
+    private final Counter redisDuplicateCounter;
+
+    public ScanDeduplicator(@Qualifier("activeUsersRedisTemplate") StringRedisTemplate redisTemplate,
+                            ScanProperties scanProperties,
+                            MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.window = scanProperties.getDedupWindow();
+        // Keys name their bucket, so they only have to outlive it; the extra window covers clock skew
+        this.ttl = window.multipliedBy(2);
+        this.retryAfter = scanProperties.getRetryAfter();
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(scanProperties.getDedupMaxEntries())
+                .expireAfterWrite(ttl)
+                .build();
+        this.localDuplicateCounter = Counter.builder("library.scan.duplicates")
+                .tag("tier", "local")
+                .description("Repeated scans answered with the first scan's response")
+                .register(meterRegistry);
+        this.redisDuplicateCounter = Counter.builder("library.scan.duplicates")
+                .tag("tier", "redis")
+                .description("Repeated scans answered with the first scan's response")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code process} for the first scan of its window on this node; repeats get that scan's future.
+     */
+    public CompletableFuture<LibraryScanResponseDto> deduplicate(LibraryScanDto scan,
+                                                                 Supplier<CompletableFuture<LibraryScanResponseDto>> process) {
+        String key = key(scan);
+        CompletableFuture<LibraryScanResponseDto> first = new CompletableFuture<>();
+        CompletableFuture<LibraryScanResponseDto> previous = recent.asMap().putIfAbsent(key, first);
+        if (previous != null) {
+            localDuplicateCounter.increment();
+            return previous;
+        }
+        process.get().whenComplete((response, ex) -> {
+            if (ex != null) {
+                // Not processed (e.g. shed with 503): the gate retries, which must not count as a repeat
+                recent.asMap().remove(key, first);
+                first.completeExceptionally(ex);
+            } else {
+                first.complete(response);
+            }
+        });
+        return first;
+    }
+
+    /**
+     * Claims the scan's window across nodes. Returns the response to answer with when another node
+     * already handled the same scan, empty when this node should process it. Throws a 409
+     * {@link AdmissionRejectedException} while another node is still handling it.
+     */
+    public Optional<LibraryScanResponseDto> claim(LibraryScanDto scan) {
+        String key = KEY_PREFIX + key(scan);
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, PENDING, ttl))) {
+                return Optional.empty();
+            }
+            redisDuplicateCounter.increment();
+            String stored = redisTemplate.opsForValue().get(key);
+            if (stored == null || PENDING.equals(stored)) {
+                // Being processed on another node right now (or just released after failing): the gate retries
+                throw new AdmissionRejectedException("Scan Is Already Being Processed, Please Retry",
+                        HttpStatus.CONFLICT, retryAfter);
+            }
+            return Optional.of(decode(stored));
+        } catch (DataAccessException e) {
+            log.warn("Scan de-duplication in Redis unavailable, processing scan of student {}", scan.getStudentId(), e);
+            return Optional.empty();
+        }
+    }
+
+    // Stores the response of a claimed scan for repeats on other nodes
+    public void remember(LibraryScanDto scan, LibraryScanResponseDto response) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + key(scan), encode(response), ttl);
+        } catch (DataAccessException e) {
+            log.warn("Could not store response of scan of student {}", scan.getStudentId(), e);
+        }
+    }
+
+    // Forgets a scan that failed, so the gate's retry is processed instead of answered from here
+    public void release(LibraryScanDto scan) {
+        String key = key(scan);
+        recent.invalidate(key);
+        try {
+            redisTemplate.delete(KEY_PREFIX + key);
+        } catch (DataAccessException e) {
+            log.warn("Could not release de-duplication key of student {}, it expires after {}", scan.getStudentId(), ttl, e);
+        }
+    }
+
+    // --- Helper Logic ---
+    private String key(LibraryScanDto scan) {
+        long millis = scan.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return scan.getStudentId() + ":" + scan.getScanType() + ":" + Math.floorDiv(millis, window.toMillis());
+    }
+
+    private static String encode(LibraryScanResponseDto response) {
+        return response.getRemainingBreakMinutes() + ":" + response.getMessage();
+    }
+
+    private static LibraryScanResponseDto decode(String stored) {
+        int separator = stored.indexOf(':');
+        return new LibraryScanResponseDto(Long.parseLong(stored.substring(0, separator)), stored.substring(separator + 1));
+    }
+}
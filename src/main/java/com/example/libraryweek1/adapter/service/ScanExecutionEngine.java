@@ -0,0 +1,117 @@
+package com.example.libraryweek1.adapter.service;
+
+import com.example.libraryweek1.config.ScanProperties;
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs turnstile scans on virtual threads, at most {@code maxConcurrent} at a time. A burst at class change
+ * queues up as parked virtual threads instead of blocking carrier or request threads; beyond
+ * {@code maxQueued} waiting scans new ones are shed with 503. Queue wait, every processing stage and the
+ * whole scan are timed separately ({@code library.scan.*}), so a slow stage shows up on its own.
+ */
+@Component
+public class ScanExecutionEngine {
+
+    private final ScanProperties scanProperties;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("scan-", 0).factory());
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Timer queueTimer;
+    private final Timer scanTimer;
+    private final Counter rejectedCounter;
+
+    public ScanExecutionEngine(ScanProperties scanProperties, MeterRegistry meterRegistry) {
+        this.scanProperties = scanProperties;
+        this.meterRegistry = meterRegistry;
+        this.permits = new Semaphore(scanProperties.getMaxConcurrent(), true);
+        this.queueTimer = Timer.builder("library.scan.queue")
+                .description("Time a scan waits for a processing slot")
+                .register(meterRegistry);
+        this.scanTimer = Timer.builder("library.scan.duration")
+                .description("Processing time of a scan once it has a slot")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("library.scan.rejected")
+                .description("Scans shed because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("library.scan.queue.depth", queued, AtomicInteger::get)
+                .description("Scans waiting for a processing slot")
+                .register(meterRegistry);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> scan) {
+        if (queued.incrementAndGet() > scanProperties.getMaxQueued()) {
+            queued.decrementAndGet();
+            rejectedCounter.increment();
+            return CompletableFuture.failedFuture(new AdmissionRejectedException("Scan Queue Is Full, Please Retry",
+                    HttpStatus.SERVICE_UNAVAILABLE, scanProperties.getRetryAfter()));
+        }
+        long enqueuedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> run(scan, enqueuedAt), executor);
+    }
+
+    /**
+     * Times one stage of a scan under {@code library.scan.stage{stage=...}}.
+     */
+    public <T> T stage(String stage, Supplier<T> work) {
+        return stageTimers.computeIfAbsent(stage, name -> Timer.builder("library.scan.stage")
+                        .tag("stage", name)
+                        .register(meterRegistry))
+                .record(work);
+    }
+
+    /**
+     * Runs a scan on the calling thread under the same permits and timers, for callers that queue scans
+     * themselves and were admitted there. {@code enqueuedAt} is when the caller queued it.
+     */
+    <T> T execute(Supplier<T> scan, long enqueuedAt) {
+        queued.incrementAndGet();
+        return run(scan, enqueuedAt);
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Lets accepted scans finish before the context closes their Redis and JDBC connections
+        executor.close();
+    }
+
+    // --- Helper Logic ---
+    private <T> T run(Supplier<T> scan, long enqueuedAt) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a scan slot", e);
+        } finally {
+            queued.decrementAndGet();
+            queueTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+        try {
+            return scanTimer.record(scan);
+        } finally {
+            permits.release();
+        }
+    }
+}
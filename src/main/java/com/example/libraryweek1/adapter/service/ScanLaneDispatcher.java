@@ -0,0 +1,146 @@
+package com.example.libraryweek1.adapter.service;
+
+import com.example.libraryweek1.config.ScanProperties;
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Serializes the scans of a student: studentId is hashed onto one of {@code lanes} single-consumer lanes,
+ * so an EXIT never races the ENTER before it through check-in and check-out. Each lane hands the scan it
+ * holds with the earliest timestamp to the {@link ScanExecutionEngine}, which still caps how many lanes
+ * run at once; different students proceed in parallel on different lanes. Lanes hold at most
+ * {@code laneCapacity} waiting scans, beyond that the scan is shed with 503 like a full engine queue.
+ */
+@Component
+public class ScanLaneDispatcher {
+
+    private static final long POLL_MILLIS = 100;
+
+    private final ScanExecutionEngine scanExecutionEngine;
+    private final ScanProperties scanProperties;
+    private final Lane[] lanes;
+    private final Thread[] consumers;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter rejectedCounter;
+    private volatile boolean closed;
+
+    public ScanLaneDispatcher(ScanExecutionEngine scanExecutionEngine,
+                              ScanProperties scanProperties,
+                              MeterRegistry meterRegistry) {
+        this.scanExecutionEngine = scanExecutionEngine;
+        this.scanProperties = scanProperties;
+        this.rejectedCounter = Counter.builder("library.scan.lane.rejected")
+                .description("Scans shed because their lane was full")
+                .register(meterRegistry);
+        this.lanes = new Lane[scanProperties.getLanes()];
+        this.consumers = new Thread[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            Lane lane = new Lane();
+            lanes[i] = lane;
+            Gauge.builder("library.scan.lane.depth", lane.depth, AtomicInteger::get)
+                    .description("Scans waiting on a per-student lane")
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+            consumers[i] = Thread.ofVirtual().name("scan-lane-" + i).start(() -> consume(lane));
+        }
+    }
+
+    /**
+     * Queues a scan on its student's lane. The future completes with the scan's result, or fails with a
+     * 503 {@link AdmissionRejectedException} when the lane is full.
+     */
+    public <T> CompletableFuture<T> dispatch(Long studentId, LocalDateTime timestamp, Supplier<T> scan) {
+        Lane lane = lanes[laneOf(studentId)];
+        if (closed) {
+            return rejected();
+        }
+        if (lane.depth.incrementAndGet() > scanProperties.getLaneCapacity()) {
+            lane.depth.decrementAndGet();
+            return rejected();
+        }
+        LaneTask<T> task = new LaneTask<>(timestamp, sequence.getAndIncrement(), System.nanoTime(), scan, new CompletableFuture<>());
+        lane.queue.add(task);
+        return task.result();
+    }
+
+    public int laneOf(Long studentId) {
+        return Math.floorMod(Long.hashCode(studentId), lanes.length);
+    }
+
+    public int getDepth(int lane) {
+        return lanes[lane].depth.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Stop admitting, then let every lane drain what it accepted; runs before the engine shuts down
+        closed = true;
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+        // A scan admitted while closing may have missed its consumer; fail it rather than leave the gate hanging
+        for (Lane lane : lanes) {
+            for (LaneTask<?> task = lane.queue.poll(); task != null; task = lane.queue.poll()) {
+                task.result().completeExceptionally(new IllegalStateException("Scan dispatcher is shutting down"));
+            }
+        }
+    }
+
+    // --- Helper Logic ---
+    private <T> CompletableFuture<T> rejected() {
+        rejectedCounter.increment();
+        return CompletableFuture.failedFuture(new AdmissionRejectedException("Scan Queue Is Full, Please Retry",
+                HttpStatus.SERVICE_UNAVAILABLE, scanProperties.getRetryAfter()));
+    }
+
+    private void consume(Lane lane) {
+        while (!closed || !lane.queue.isEmpty()) {
+            LaneTask<?> task;
+            try {
+                task = lane.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task != null) {
+                lane.depth.decrementAndGet();
+                run(task);
+            }
+        }
+    }
+
+    // The lane waits for the scan to finish before taking the next one, that is what keeps a student's scans ordered
+    private <T> void run(LaneTask<T> task) {
+        try {
+            task.result().complete(scanExecutionEngine.execute(task.scan(), task.enqueuedAt()));
+        } catch (RuntimeException ex) {
+            task.result().completeExceptionally(ex);
+        }
+    }
+
+    private static final class Lane {
+        // Earliest timestamp first, arrival order among equal timestamps
+        private final PriorityBlockingQueue<LaneTask<?>> queue = new PriorityBlockingQueue<>(16,
+                Comparator.comparing((LaneTask<?> task) -> task.timestamp(), Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparingLong(LaneTask::sequence));
+        private final AtomicInteger depth = new AtomicInteger();
+    }
+
+    private record LaneTask<T>(LocalDateTime timestamp, long sequence, long enqueuedAt,
+                               Supplier<T> scan, CompletableFuture<T> result) {
+    }
+}
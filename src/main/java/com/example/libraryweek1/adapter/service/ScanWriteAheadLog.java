@@ -0,0 +1,551 @@
+package com.example.libraryweek1.adapter.service;
+
+import com.example.libraryweek1.adapter.dto.LibraryScanDto;
+import com.example.libraryweek1.adapter.dto.ScanType;
+import com.example.libraryweek1.config.ScanWalProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Local write-ahead log for turnstile scans, used when {@code app.scan-wal.enabled} is on. A scan is
+ * acknowledged once it is on disk: a single writer appends every waiting scan to the current
+ * memory-mapped segment and fsyncs them together (group commit). A background consumer then applies
+ * the logged scans in order and records how far it got in a checkpoint file. After a restart it resumes
+ * from that checkpoint, so scans accepted while Redis or Postgres were down are applied once they are
+ * back. Each applied record is also marked in its segment, so replaying the scans after the checkpoint
+ * skips those already applied; only a crash between applying a scan and marking it applies it twice.
+ * A student's scans are applied in log order and stop at the first that has to be retried. Scans that
+ * are rejected, or still fail after {@code maxApplyAttempts}, are dead-lettered to a file next to the
+ * segments instead of holding the log up.
+ * <p>
+ * Segments are named after their first sequence number and hold fixed-size records (big-endian):
+ * sequence (long, 0 marks free space, negated once the scan is applied), CRC32C of the payload (int), then the payload: student id
+ * (long), scan type ordinal (byte), timestamp as UTC epoch second (long) and nanos (int). A record
+ * with a bad checksum is a torn write from a crash and ends the log.
+ */
+@Slf4j
+@Component
+public class ScanWriteAheadLog {
+
+    static final int RECORD_BYTES = 8 + 4 + 8 + 1 + 8 + 4;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String DEAD_LETTER_FILE = "dead-letter";
+    private static final long POLL_MILLIS = 100;
+
+    private final ScanWalProperties properties;
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final LinkedBlockingQueue<PendingAppend> pending = new LinkedBlockingQueue<>();
+    // First sequence number of each segment; only the last one is written to
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Timer fsyncTimer;
+    private final Counter deadLetterCounter;
+    private Thread writer;
+    private Thread consumer;
+    private long nextSequence;
+    private volatile long durableSequence;
+    private volatile long checkpoint;
+    private volatile boolean closed;
+
+    public ScanWriteAheadLog(ScanWalProperties properties, MeterRegistry meterRegistry) throws IOException {
+        this.properties = properties;
+        this.directory = Path.of(properties.getDirectory());
+        this.recordsPerSegment = (int) Math.max(1, properties.getSegmentSize().toBytes() / RECORD_BYTES);
+        this.fsyncTimer = Timer.builder("library.scan.wal.fsync")
+                .description("Time to force a group of logged scans to disk")
+                .register(meterRegistry);
+        this.deadLetterCounter = Counter.builder("library.scan.wal.dead_lettered")
+                .description("Logged scans given up on and written to the dead-letter file")
+                .register(meterRegistry);
+        Gauge.builder("library.scan.wal.lag", this, ScanWriteAheadLog::getLag)
+                .description("Scans logged but not yet applied")
+                .register(meterRegistry);
+        if (properties.isEnabled()) {
+            recover();
+            writer = Thread.ofVirtual().name("scan-wal-writer").start(this::write);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Completes with the scan's sequence number once it has been forced to disk.
+     */
+    public CompletableFuture<Long> append(LibraryScanDto scan) {
+        if (closed || writer == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Scan log is not open"));
+        }
+        PendingAppend append = new PendingAppend(scan, new CompletableFuture<>());
+        pending.add(append);
+        return append.durable();
+    }
+
+    /**
+     * Starts applying logged scans, beginning after the checkpoint. A scan {@code applier} answers with
+     * {@link ApplyResult#RETRY} is retried after {@code retryBackoff}, together with the student's later
+     * scans, and the checkpoint does not move past it until it is applied or dead-lettered.
+     */
+    public void startConsumer(Function<LibraryScanDto, CompletableFuture<ApplyResult>> applier) {
+        consumer = Thread.ofVirtual().name("scan-wal-consumer").start(() -> consume(applier));
+    }
+
+    public long getLag() {
+        return durableSequence - checkpoint;
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // The writer drains what was accepted; the consumer stops at its next checkpoint and resumes from it on restart
+        closed = true;
+        if (writer != null) {
+            writer.join();
+        }
+        // An append that passed the closed check just before it was set may land after the writer exited;
+        // fail it rather than leave the gate waiting for an acknowledgement that never comes
+        for (PendingAppend append = pending.poll(); append != null; append = pending.poll()) {
+            append.durable().completeExceptionally(new IllegalStateException("Scan log is shutting down"));
+        }
+        if (consumer != null) {
+            signalAppended();
+            consumer.join();
+        }
+        segments.values().forEach(Segment::close);
+        segments.clear();
+    }
+
+    // --- Helper Logic ---
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        checkpoint = readCheckpoint();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String name = file.getFileName().toString();
+                long firstSequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(firstSequence, Segment.open(file, firstSequence, recordsPerSegment));
+            }
+        }
+        if (segments.isEmpty()) {
+            nextSequence = checkpoint + 1;
+            durableSequence = checkpoint;
+            return;
+        }
+        // Older segments are full; the end of the log is in the last one
+        Segment last = segments.lastEntry().getValue();
+        int records = 0;
+        while (records < last.capacity() && last.isValid(records, last.firstSequence() + records)) {
+            records++;
+        }
+        last.zeroFrom(records);
+        last.setRecords(records);
+        nextSequence = last.firstSequence() + records;
+        if (nextSequence <= checkpoint) {
+            // Tail lost beyond what was already applied: continue in a fresh segment after the checkpoint
+            log.warn("Scan log ends at {} before its checkpoint {}", nextSequence - 1, checkpoint);
+            last.setRecords(last.capacity());
+            nextSequence = checkpoint + 1;
+        }
+        durableSequence = nextSequence - 1;
+        log.info("Scan log recovered up to sequence {}, checkpoint at {}", durableSequence, checkpoint);
+    }
+
+    private void write() {
+        List<PendingAppend> batch = new ArrayList<>(properties.getMaxGroupCommit());
+        while (!closed || !pending.isEmpty()) {
+            try {
+                PendingAppend first = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, properties.getMaxGroupCommit() - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("Could not log {} scans", batch.size(), e);
+                batch.forEach(append -> append.durable().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingAppend> batch) throws IOException {
+        List<Segment> touched = new ArrayList<>(2);
+        long[] sequences = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Segment segment = writableSegment();
+            if (touched.isEmpty() || touched.getLast() != segment) {
+                touched.add(segment);
+            }
+            sequences[i] = nextSequence;
+            segment.put(nextSequence++, batch.get(i).scan());
+        }
+        fsyncTimer.record(() -> touched.forEach(Segment::force));
+        durableSequence = nextSequence - 1;
+        signalAppended();
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).durable().complete(sequences[i]);
+        }
+    }
+
+    private Segment writableSegment() throws IOException {
+        Map.Entry<Long, Segment> last = segments.lastEntry();
+        if (last != null && !last.getValue().isFull()) {
+            return last.getValue();
+        }
+        Path file = directory.resolve("%020d%s".formatted(nextSequence, SEGMENT_SUFFIX));
+        Segment segment = Segment.open(file, nextSequence, recordsPerSegment);
+        segments.put(nextSequence, segment);
+        return segment;
+    }
+
+    private void consume(Function<LibraryScanDto, CompletableFuture<ApplyResult>> applier) {
+        while (!closed) {
+            long from = checkpoint + 1;
+            long to = Math.min(durableSequence, checkpoint + properties.getApplyBatchSize());
+            if (to < from) {
+                awaitAppended();
+                continue;
+            }
+            List<LoggedScan> scans = new ArrayList<>((int) (to - from + 1));
+            for (long sequence = from; sequence <= to; sequence++) {
+                Segment segment = segments.floorEntry(sequence).getValue();
+                int index = (int) (sequence - segment.firstSequence());
+                // Applied before a restart (or before an earlier attempt at this batch stopped)
+                if (!segment.isApplied(index)) {
+                    scans.add(new LoggedScan(segment, index, sequence, segment.read(index)));
+                }
+            }
+            if (applyAll(scans, applier)) {
+                writeCheckpoint(to);
+            }
+        }
+    }
+
+    // Scans go out in log order, each behind the previous scan of its student; returns false when closed before all are done
+    private boolean applyAll(List<LoggedScan> scans, Function<LibraryScanDto, CompletableFuture<ApplyResult>> applier) {
+        List<LoggedScan> remaining = scans;
+        while (true) {
+            // Per student: whether its scans so far went through; one to retry holds back the student's later ones
+            Map<Long, CompletableFuture<Boolean>> students = new HashMap<>();
+            for (LoggedScan scan : remaining) {
+                CompletableFuture<Boolean> previous = students.getOrDefault(scan.scan().getStudentId(), CompletableFuture.completedFuture(true));
+                students.put(scan.scan().getStudentId(), previous.thenCompose(
+                        through -> through ? apply(scan, applier) : CompletableFuture.completedFuture(false)));
+            }
+            students.values().forEach(CompletableFuture::join);
+            remaining = remaining.stream().filter(scan -> !scan.done).toList();
+            if (remaining.isEmpty()) {
+                return true;
+            }
+            log.warn("{} logged scans could not be applied, retrying in {}", remaining.size(), properties.getRetryBackoff());
+            if (closed || !sleep(properties.getRetryBackoff().toMillis())) {
+                return false;
+            }
+        }
+    }
+
+    // Completes with false when the scan is to be retried; applied and dead-lettered scans are marked so no replay repeats them
+    private CompletableFuture<Boolean> apply(LoggedScan logged, Function<LibraryScanDto, CompletableFuture<ApplyResult>> applier) {
+        return applier.apply(logged.scan())
+                .exceptionally(ex -> ApplyResult.RETRY)
+                .thenApply(result -> {
+                    if (result == ApplyResult.RETRY && ++logged.attempts < properties.getMaxApplyAttempts()) {
+                        return false;
+                    }
+                    if (result != ApplyResult.APPLIED) {
+                        deadLetter(logged, result == ApplyResult.REJECTED ? "rejected" : "failed " + logged.attempts + " times");
+                    }
+                    logged.segment().markApplied(logged.index(), logged.sequence());
+                    logged.done = true;
+                    return true;
+                });
+    }
+
+    private void deadLetter(LoggedScan logged, String reason) {
+        LibraryScanDto scan = logged.scan();
+        log.error("Giving up on logged scan {} of student {} ({}), see {}", logged.sequence(), scan.getStudentId(), reason, DEAD_LETTER_FILE);
+        deadLetterCounter.increment();
+        String line = "%d,%d,%s,%s,%s%n".formatted(logged.sequence(), scan.getStudentId(), scan.getScanType(), scan.getTimestamp(), reason);
+        try (FileChannel channel = FileChannel.open(directory.resolve(DEAD_LETTER_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        } catch (IOException e) {
+            log.warn("Could not write logged scan {} to the dead-letter file", logged.sequence(), e);
+        }
+    }
+
+    private void writeCheckpoint(long sequence) {
+        try {
+            Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence));
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The old checkpoint stays valid; these scans are marked applied and skipped after a restart
+            log.warn("Could not write scan log checkpoint {}", sequence, e);
+            return;
+        }
+        try {
+            deleteAppliedSegments(sequence);
+        } catch (IOException e) {
+            log.warn("Could not delete applied scan log segments up to {}", sequence, e);
+        }
+        // Published last: whoever sees the new checkpoint also sees the segments it made obsolete gone
+        checkpoint = sequence;
+    }
+
+    // A segment can go once the next one starts at or before the first unapplied scan
+    private void deleteAppliedSegments(long applied) throws IOException {
+        for (Map.Entry<Long, Segment> entry = segments.firstEntry(); entry != null; entry = segments.firstEntry()) {
+            Long next = segments.higherKey(entry.getKey());
+            if (next == null || next > applied + 1) {
+                return;
+            }
+            segments.remove(entry.getKey());
+            entry.getValue().close();
+            Files.deleteIfExists(entry.getValue().file());
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file)).getLong();
+    }
+
+    private void signalAppended() {
+        lock.lock();
+        try {
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitAppended() {
+        lock.lock();
+        try {
+            if (durableSequence <= checkpoint && !closed) {
+                appended.await(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Outcome of applying one logged scan.
+     */
+    public enum ApplyResult {
+        APPLIED,    // Done; never applied again
+        RETRY,      // Could not be applied yet (e.g. Redis or Postgres down); retried after retryBackoff
+        REJECTED    // Can never be applied; dead-lettered right away
+    }
+
+    private record PendingAppend(LibraryScanDto scan, CompletableFuture<Long> durable) {
+    }
+
+    private static final class LoggedScan {
+        private final Segment segment;
+        private final int index;
+        private final long sequence;
+        private final LibraryScanDto scan;
+        private int attempts;
+        private boolean done;
+
+        private LoggedScan(Segment segment, int index, long sequence, LibraryScanDto scan) {
+            this.segment = segment;
+            this.index = index;
+            this.sequence = sequence;
+            this.scan = scan;
+        }
+
+        Segment segment() {
+            return segment;
+        }
+
+        int index() {
+            return index;
+        }
+
+        long sequence() {
+            return sequence;
+        }
+
+        LibraryScanDto scan() {
+            return scan;
+        }
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final long firstSequence;
+        private final int capacity;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int records;
+        private int forcedRecords;
+
+        private Segment(Path file, long firstSequence, int capacity, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            this.capacity = capacity;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path file, long firstSequence, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Recovered segments keep the size they were created with
+            long size = Math.max(channel.size(), (long) capacity * RECORD_BYTES);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(file, firstSequence, (int) (size / RECORD_BYTES), channel, buffer);
+        }
+
+        Path file() {
+            return file;
+        }
+
+        long firstSequence() {
+            return firstSequence;
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        boolean isFull() {
+            return records == capacity;
+        }
+
+        void setRecords(int records) {
+            this.records = records;
+            this.forcedRecords = records;
+        }
+
+        void put(long sequence, LibraryScanDto scan) {
+            int offset = records * RECORD_BYTES;
+            int payload = offset + 12;
+            long epochSecond = scan.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+            buffer.putLong(payload, scan.getStudentId())
+                    .put(payload + 8, (byte) scan.getScanType().ordinal())
+                    .putLong(payload + 9, epochSecond)
+                    .putInt(payload + 17, scan.getTimestamp().getNano());
+            buffer.putInt(offset + 8, checksum(payload));
+            // The sequence goes last: a record only counts once it is complete
+            buffer.putLong(offset, sequence);
+            records++;
+        }
+
+        void force() {
+            buffer.force(forcedRecords * RECORD_BYTES, (records - forcedRecords) * RECORD_BYTES);
+            forcedRecords = records;
+        }
+
+        boolean isValid(int index, long expectedSequence) {
+            int offset = index * RECORD_BYTES;
+            long sequence = buffer.getLong(offset);
+            return (sequence == expectedSequence || sequence == -expectedSequence) && buffer.getInt(offset + 8) == checksum(offset + 12);
+        }
+
+        boolean isApplied(int index) {
+            return buffer.getLong(index * RECORD_BYTES) < 0;
+        }
+
+        // Forced right away, so a replay after a crash skips the scan
+        void markApplied(int index, long sequence) {
+            int offset = index * RECORD_BYTES;
+            buffer.putLong(offset, -sequence);
+            buffer.force(offset, Long.BYTES);
+        }
+
+        LibraryScanDto read(int index) {
+            int payload = index * RECORD_BYTES + 12;
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(buffer.getLong(payload + 9), buffer.getInt(payload + 17), ZoneOffset.UTC);
+            return new LibraryScanDto(buffer.getLong(payload), ScanType.values()[buffer.get(payload + 8)], timestamp);
+        }
+
+        // Clears a torn tail so no stale bytes can be mistaken for records later
+        void zeroFrom(int index) {
+            for (int offset = index * RECORD_BYTES; offset < capacity * RECORD_BYTES; offset++) {
+                buffer.put(offset, (byte) 0);
+            }
+            buffer.force();
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int checksum(int payload) {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(payload, RECORD_BYTES - 12));
+            return (int) crc.getValue();
+        }
+    }
+}
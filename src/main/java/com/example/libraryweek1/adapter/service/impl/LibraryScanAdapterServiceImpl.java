@@ -2,48 +2,172 @@ package com.example.libraryweek1.adapter.service.impl;
 
 import com.example.libraryweek1.adapter.dto.LibraryScanDto;
 import com.example.libraryweek1.adapter.dto.LibraryScanResponseDto;
+import com.example.libraryweek1.adapter.dto.ScanType;
 import com.example.libraryweek1.adapter.service.LibraryScanAdapterService;
+import com.example.libraryweek1.adapter.service.ScanDeduplicator;
+import com.example.libraryweek1.adapter.service.ScanExecutionEngine;
+import com.example.libraryweek1.adapter.service.ScanLaneDispatcher;
+import com.example.libraryweek1.adapter.service.ScanWriteAheadLog;
+import com.example.libraryweek1.config.ScanProperties;
+import com.example.libraryweek1.jobs.exception.BreakManagementException;
 import com.example.libraryweek1.jobs.service.BreakManagementService;
+import com.example.libraryweek1.occupancy.service.OccupancyService;
 import com.example.libraryweek1.reservation.entity.Reservation;
+import com.example.libraryweek1.reservation.event.DeskPresenceChangedEvent;
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
 import com.example.libraryweek1.reservation.repository.ReservationRepository;
 import com.example.libraryweek1.reservation.service.ReservationService;
-import lombok.RequiredArgsConstructor;
+import com.example.libraryweek1.user.service.UserLookupService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class LibraryScanAdapterServiceImpl implements LibraryScanAdapterService {
 
+    private static final String USERS_INSIDE_KEY = "library:users:inside";
+    private static final String ERROR_PREFIX = "Error: ";
+
     private final ReservationRepository reservationRepository;
-    private BreakManagementService breakManagementService;
+    private final BreakManagementService breakManagementService;
     private final ReservationService reservationService;
-    private StringRedisTemplate redisTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OccupancyService occupancyService;
+    private final UserLookupService userLookupService;
+    private final ScanExecutionEngine scanExecutionEngine;
+    private final ScanLaneDispatcher scanLaneDispatcher;
+    private final ScanDeduplicator scanDeduplicator;
+    private final ScanWriteAheadLog scanWriteAheadLog;
+    private final ScanProperties scanProperties;
+    private final Validator validator;
 
     public LibraryScanAdapterServiceImpl(ReservationRepository reservationRepository,
+                                     BreakManagementService breakManagementService,
                                      ReservationService reservationService,
-                                     @Qualifier("activeUsersRedisTemplate") StringRedisTemplate redisTemplate) {
+                                     @Qualifier("activeUsersRedisTemplate") StringRedisTemplate redisTemplate,
+                                     ApplicationEventPublisher eventPublisher,
+                                     OccupancyService occupancyService,
+                                     UserLookupService userLookupService,
+                                     ScanExecutionEngine scanExecutionEngine,
+                                     ScanLaneDispatcher scanLaneDispatcher,
+                                     ScanDeduplicator scanDeduplicator,
+                                     ScanWriteAheadLog scanWriteAheadLog,
+                                     ScanProperties scanProperties,
+                                     Validator validator) {
         this.reservationRepository = reservationRepository;
+        this.breakManagementService = breakManagementService;
         this.reservationService = reservationService;
         this.redisTemplate = redisTemplate;
+        this.eventPublisher = eventPublisher;
+        this.occupancyService = occupancyService;
+        this.userLookupService = userLookupService;
+        this.scanExecutionEngine = scanExecutionEngine;
+        this.scanLaneDispatcher = scanLaneDispatcher;
+        this.scanDeduplicator = scanDeduplicator;
+        this.scanWriteAheadLog = scanWriteAheadLog;
+        this.scanProperties = scanProperties;
+        this.validator = validator;
     }
 
     @Override
-    @Async
     public CompletableFuture<LibraryScanResponseDto> processLibraryScan(LibraryScanDto scanDto) {
-        Optional<Reservation> reservationOpt = reservationRepository.findStartedByStudentId(scanDto.getStudentId());
+        // Repeats of a double-firing gate share the first scan's response
+        if (scanWriteAheadLog.isEnabled()) {
+            return scanDeduplicator.deduplicate(scanDto, () -> scanWriteAheadLog.append(scanDto).thenApply(sequence -> accepted()));
+        }
+        // The first goes on the student's lane, so an EXIT arriving right after an ENTER waits for its check-in
+        return scanDeduplicator.deduplicate(scanDto, () -> scanLaneDispatcher.dispatch(
+                scanDto.getStudentId(), scanDto.getTimestamp(), () -> processScan(scanDto)));
+    }
+
+    @Override
+    public CompletableFuture<List<LibraryScanResponseDto>> processLibraryScans(List<LibraryScanDto> scans) {
+        if (scanWriteAheadLog.isEnabled()) {
+            return logScans(scans);
+        }
+        List<LibraryScanResponseDto> responses = new ArrayList<>(scans.size());
+        CompletableFuture<List<LibraryScanResponseDto>> result = CompletableFuture.completedFuture(responses);
+        // Chunks run one after another, so scans of a student that span two chunks are still applied in order;
+        // within a chunk a student's scans are ordered by the lanes
+        for (int from = 0; from < scans.size(); from += scanProperties.getMaxBatchSize()) {
+            List<LibraryScanDto> chunk = scans.subList(from, Math.min(from + scanProperties.getMaxBatchSize(), scans.size()));
+            result = result.thenCompose(done -> processBatch(chunk).thenApply(chunkResponses -> {
+                done.addAll(chunkResponses);
+                return done;
+            }));
+        }
+        return result;
+    }
+
+    // Applies the scans in the local log, after a restart starting from its checkpoint
+    @EventListener(ApplicationReadyEvent.class)
+    public void startScanLogConsumer() {
+        if (scanWriteAheadLog.isEnabled()) {
+            scanWriteAheadLog.startConsumer(this::applyLoggedScan);
+        }
+    }
+
+    // Runs on a scan lane (virtual thread) under an engine permit, so every stage may block on Redis or Postgres.
+    // A failed scan is answered with an error response; a 409 from the claim goes back to the gate as is
+    private LibraryScanResponseDto processScan(LibraryScanDto scanDto) {
+        try {
+            return claimAndApply(scanDto, () -> applyScan(scanDto));
+        } catch (AdmissionRejectedException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            log.warn("Scan of student {} failed", scanDto.getStudentId(), ex);
+            return new LibraryScanResponseDto(0, ERROR_PREFIX + ex.getMessage());
+        }
+    }
+
+    // A failed scan releases its claim, so the retry is processed instead of answered from the de-duplicator
+    private LibraryScanResponseDto claimAndApply(LibraryScanDto scanDto, Supplier<LibraryScanResponseDto> apply) {
+        Optional<LibraryScanResponseDto> previous = scanDeduplicator.claim(scanDto);
+        if (previous.isPresent()) {
+            log.info("Repeated scan of student {} within the de-duplication window", scanDto.getStudentId());
+            return previous.get();
+        }
+        LibraryScanResponseDto response;
+        try {
+            response = apply.get();
+        } catch (RuntimeException ex) {
+            scanDeduplicator.release(scanDto);
+            throw ex;
+        }
+        scanDeduplicator.remember(scanDto, response);
+        return response;
+    }
+
+    private LibraryScanResponseDto applyScan(LibraryScanDto scanDto) {
         log.info("Processing scan for student ID: {} ", scanDto.getStudentId());
+        Optional<Reservation> reservationOpt = scanExecutionEngine.stage("lookup",
+                () -> userLookupService.findByStudentId(scanDto.getStudentId())
+                        .flatMap(user -> reservationRepository.findStartedByUserId(user.getId())));
 
         switch (scanDto.getScanType()) {
             case ENTER:
                 log.info("Student {} is checking in.", scanDto.getStudentId());
-                // Implement check-in logic here
                 return handleEnterScan(scanDto, reservationOpt);
 
             case EXIT:
@@ -52,54 +176,152 @@ public class LibraryScanAdapterServiceImpl implements LibraryScanAdapterService
 
             default:
                 log.error("Unknown scan type for student ID: {}", scanDto.getStudentId());
-                return CompletableFuture.completedFuture(
-                        new LibraryScanResponseDto(0, "Unknown scan type"));
+                return new LibraryScanResponseDto(0, "Unknown scan type");
         }
     }
 
-    private CompletableFuture<LibraryScanResponseDto> handleEnterScan(LibraryScanDto scanDto, Optional<Reservation> reservation) {
-        log.info("Starting async enter scan for student: {}", scanDto.getStudentId());
-
-        return CompletableFuture.supplyAsync(() -> {
-                // Even if no reservation, we log the scan
-                // Keep the users inside set updated
-                    redisTemplate.opsForSet().add("library:users:inside", scanDto.getStudentId().toString());
-                    return scanDto;
-                })
-                .thenApply(dto -> {
-                    // If there's a reservation, handle check-in
-                    if (reservation.isPresent()) {
-                        long remainingBreakMinutes = breakManagementService.handleCheckIn(reservation.get().getId(), scanDto.getTimestamp());
-                        return new LibraryScanResponseDto(remainingBreakMinutes, "Checked in");
-                    }
-                    // No reservation found
-                    return new LibraryScanResponseDto(0L, "No reservation");
-                })
-                .exceptionally(ex -> new LibraryScanResponseDto(0, "Error: " + ex.getMessage()));
-    }
-
-    private CompletableFuture<LibraryScanResponseDto> handleExitScan(LibraryScanDto scanDto, Optional<Reservation> reservation) {
-        log.info("Starting async enter scan for student: {}", scanDto.getStudentId());
-
-        return CompletableFuture.supplyAsync(() -> {
-                    // Even if no reservation, we log the scan
-                    // Keep the users inside set updated
-                    redisTemplate.opsForSet().remove("library:users:inside", scanDto.getStudentId().toString());
-                    return scanDto;
-                })
-                .thenApply(dto -> {
-                    // If there's a reservation, handle check-in
-                    if (reservation.isPresent()) {
-                        long remainingBreakMinutes = breakManagementService.handleCheckOut(reservation.get().getId(), scanDto.getTimestamp());
-                        return new LibraryScanResponseDto(remainingBreakMinutes, "Checked in");
+    // Each scan is processed on its student's lane, earliest first, exactly like a live scan: claimed, looked up,
+    // and its presence and check-in/check-out applied in one lane task, so a batched scan and a live scan of the
+    // same student are never interleaved. A failed or shed scan is reported on its own, so only it is resent
+    private CompletableFuture<List<LibraryScanResponseDto>> processBatch(List<LibraryScanDto> scans) {
+        log.info("Processing batch of {} scans", scans.size());
+        LibraryScanResponseDto[] responses = new LibraryScanResponseDto[scans.size()];
+        List<Integer> valid = new ArrayList<>(scans.size());
+        for (int i = 0; i < scans.size(); i++) {
+            responses[i] = validate(scans.get(i)).orElse(null);
+            if (responses[i] == null) {
+                valid.add(i);
+            }
+        }
+        // Stable, so scans with equal timestamps keep the order the gate sent them in
+        valid.sort(Comparator.comparing(i -> scans.get(i).getTimestamp()));
+
+        List<CompletableFuture<Void>> applied = new ArrayList<>(valid.size());
+        for (int i : valid) {
+            LibraryScanDto scan = scans.get(i);
+            applied.add(scanLaneDispatcher.dispatch(scan.getStudentId(), scan.getTimestamp(), () -> processScan(scan))
+                    .handle((response, ex) -> {
+                        if (ex != null) {
+                            log.warn("Scan of student {} failed", scan.getStudentId(), unwrap(ex));
+                            response = new LibraryScanResponseDto(0, ERROR_PREFIX + unwrap(ex).getMessage());
+                        }
+                        responses[i] = response;
+                        return null;
+                    }));
+        }
+        return CompletableFuture.allOf(applied.toArray(CompletableFuture[]::new))
+                .thenApply(done -> Arrays.asList(responses));
+    }
+
+    private LibraryScanResponseDto handleEnterScan(LibraryScanDto scanDto, Optional<Reservation> reservation) {
+        // Even if no reservation, we log the scan
+        // Keep the users inside set updated
+        boolean entered = scanExecutionEngine.stage("presence", () -> {
+            Long added = redisTemplate.opsForSet().add(USERS_INSIDE_KEY, scanDto.getStudentId().toString());
+            // Daily unique visitors, per room when the student has a started reservation
+            occupancyService.recordVisit(scanDto.getStudentId(), reservation.map(Reservation::getRoomId).orElse(null));
+            return added != null && added > 0;
+        });
+
+        return applyToReservation(scanDto, reservation, entered);
+    }
+
+    private LibraryScanResponseDto handleExitScan(LibraryScanDto scanDto, Optional<Reservation> reservation) {
+        // Even if no reservation, we log the scan
+        // Keep the users inside set updated
+        boolean left = scanExecutionEngine.stage("presence", () -> {
+            Long removed = redisTemplate.opsForSet().remove(USERS_INSIDE_KEY, scanDto.getStudentId().toString());
+            return removed != null && removed > 0;
+        });
+
+        return applyToReservation(scanDto, reservation, left);
+    }
+
+    // Logs every valid scan (one group commit covers most of them) and acknowledges once all are on disk
+    private CompletableFuture<List<LibraryScanResponseDto>> logScans(List<LibraryScanDto> scans) {
+        List<CompletableFuture<LibraryScanResponseDto>> responses = new ArrayList<>(scans.size());
+        for (LibraryScanDto scan : scans) {
+            Optional<LibraryScanResponseDto> invalid = validate(scan);
+            responses.add(invalid.isPresent()
+                    ? CompletableFuture.completedFuture(invalid.get())
+                    : scanWriteAheadLog.append(scan)
+                            .thenApply(sequence -> accepted())
+                            .exceptionally(ex -> new LibraryScanResponseDto(0, ERROR_PREFIX + unwrap(ex).getMessage())));
+        }
+        return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+                .thenApply(done -> responses.stream().map(CompletableFuture::join).toList());
+    }
+
+    // Logged scans go through the lanes like live ones; only failures that can pass (Redis or Postgres down,
+    // lane full, repeat still pending elsewhere) are retried, anything else is given up on
+    private CompletableFuture<ScanWriteAheadLog.ApplyResult> applyLoggedScan(LibraryScanDto scanDto) {
+        return scanLaneDispatcher.dispatch(scanDto.getStudentId(), scanDto.getTimestamp(), () -> claimAndApply(scanDto, () -> applyScan(scanDto)))
+                .handle((response, ex) -> {
+                    if (ex == null) {
+                        return ScanWriteAheadLog.ApplyResult.APPLIED;
                     }
-                    // No reservation found
-                    return new LibraryScanResponseDto(0L, "No reservation");
-                })
-                .exceptionally(ex -> new LibraryScanResponseDto(0, "Error: " + ex.getMessage()));
+                    Throwable cause = unwrap(ex);
+                    log.warn("Logged scan of student {} failed", scanDto.getStudentId(), cause);
+                    return isTransient(cause) ? ScanWriteAheadLog.ApplyResult.RETRY : ScanWriteAheadLog.ApplyResult.REJECTED;
+                });
+    }
+
+    private Optional<LibraryScanResponseDto> validate(LibraryScanDto scan) {
+        if (scan == null) {
+            return Optional.of(new LibraryScanResponseDto(0L, "Invalid scan: empty entry"));
+        }
+        Set<ConstraintViolation<LibraryScanDto>> violations = validator.validate(scan);
+        if (violations.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new LibraryScanResponseDto(0L, "Invalid scan: " + violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "))));
+    }
+
+    // On disk and applied in the background, so the remaining break time is not known yet
+    private static LibraryScanResponseDto accepted() {
+        return new LibraryScanResponseDto(0L, "Accepted");
+    }
+
+    // Check-in on ENTER, check-out on EXIT; the inside-set has already been updated by the caller. Presence is
+    // only published when that update changed the set: a repeated ENTER (or EXIT) must not move the room's
+    // present counter again
+    private LibraryScanResponseDto applyToReservation(LibraryScanDto scanDto, Optional<Reservation> reservation,
+                                                      boolean presenceChanged) {
+        // No reservation found
+        if (reservation.isEmpty()) {
+            return new LibraryScanResponseDto(0L, "No reservation");
+        }
+        boolean enter = scanDto.getScanType() == ScanType.ENTER;
+        long remainingBreakMinutes = enter
+                ? scanExecutionEngine.stage("check-in",
+                        () -> breakManagementService.handleCheckIn(reservation.get().getId(), scanDto.getTimestamp()))
+                : scanExecutionEngine.stage("check-out",
+                        () -> breakManagementService.handleCheckOut(reservation.get().getId(), scanDto.getTimestamp()));
+        if (presenceChanged) {
+            publishPresence(reservation.get(), enter);
+        }
+        return new LibraryScanResponseDto(remainingBreakMinutes, "Checked in");
+    }
+
+    // BreakManagementException is thrown when the break monitor could not be written to Redis
+    private static boolean isTransient(Throwable ex) {
+        return ex instanceof DataAccessException
+                || ex instanceof TransactionException
+                || ex instanceof AdmissionRejectedException
+                || ex instanceof BreakManagementException;
     }
 
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
 
+    // Check-in/check-out have committed by now, so room stream subscribers only see persisted state
+    private void publishPresence(Reservation reservation, boolean present) {
+        eventPublisher.publishEvent(new DeskPresenceChangedEvent(reservation.getRoomId(), reservation.getDeskId(), present));
+    }
 
     }
 
@@ -0,0 +1,19 @@
+package com.example.libraryweek1.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.admission")
+public class AdmissionProperties {
+    private int maxConcurrent = 5;                               // Bookings in flight at once; keep <= Hikari pool size
+    private int maxWaiting = 1_000;                              // Beyond this the queue is full and requests are shed immediately
+    private Duration admissionTimeout = Duration.ofSeconds(2);   // Max time a request waits for a booking permit
+    private Duration retryAfter = Duration.ofSeconds(1);         // Sent back in the Retry-After header
+}
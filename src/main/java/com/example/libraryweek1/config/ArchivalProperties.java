@@ -0,0 +1,18 @@
+package com.example.libraryweek1.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.archival")
+public class ArchivalProperties {
+    private boolean enabled = true;
+    private Duration retention = Duration.ofDays(30); // Finished reservations older than this move to the archive
+    private int batchSize = 500;                      // Rows moved per transaction
+}
@@ -0,0 +1,25 @@
+package com.example.libraryweek1.config;
+
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class GlobalExceptionHandler {
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<ProblemDetail> handleAdmissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(ProblemDetail.forStatusAndDetail(e.getStatus(), e.getMessage()));
+    }
+
+    @ExceptionHandler(ApiBaseException.class)
+    public ResponseEntity<ProblemDetail> handleApiException(ApiBaseException e) {
+        return ResponseEntity.status(e.getStatus())
+                .body(ProblemDetail.forStatusAndDetail(e.getStatus(), e.getMessage()));
+    }
+}
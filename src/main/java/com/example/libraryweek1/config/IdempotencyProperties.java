@@ -0,0 +1,21 @@
+package com.example.libraryweek1.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.idempotency")
+public class IdempotencyProperties {
+    private Duration ttl = Duration.ofHours(24);            // How long a stored response is replayed
+    private Duration inProgressTtl = Duration.ofSeconds(30); // Marker lifetime if the first request dies mid-way
+    private Duration waitTimeout = Duration.ofSeconds(10);  // How long a concurrent duplicate waits for the result
+    private Duration pollInterval = Duration.ofMillis(50);  // Between polls of a waiting duplicate and between store attempts
+    private int storeAttempts = 3;                          // Tries to store a response before only marking the key completed
+    private long nearCacheSize = 10_000;
+}
@@ -0,0 +1,18 @@
+package com.example.libraryweek1.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.lease")
+public class LeaseProperties {
+    private String mode = "postgres";                           // postgres | local (single node / tests)
+    private int poolSize = 2;                                   // Dedicated connections holding advisory locks, outside the application pool
+    private Duration connectionTimeout = Duration.ofSeconds(5); // Wait for a lease connection before the run fails
+}
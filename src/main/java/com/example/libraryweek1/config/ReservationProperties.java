@@ -0,0 +1,41 @@
+package com.example.libraryweek1.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.reservation")
+public class ReservationProperties {
+    private BookingMode bookingMode = BookingMode.PESSIMISTIC; // Default: SELECT ... FOR UPDATE
+    private Duration sequencerTimeout = Duration.ofSeconds(5); // Max in-memory wait for a busy desk
+    private StorageMode storage = StorageMode.SLOTS;
+    private JobsMode jobs = JobsMode.PER_RESERVATION;
+    private boolean slotPartitioning = false; // Day-partition reservation_slots (slots storage only)
+
+    public enum BookingMode {
+        // Lock the requested slot rows (PESSIMISTIC_WRITE, 3s timeout) before booking them
+        PESSIMISTIC,
+        // Claim the slots with one conditional UPDATE and check the affected row count
+        OPTIMISTIC
+    }
+
+    public enum StorageMode {
+        // One pregenerated reservation_slots row per desk per half hour
+        SLOTS,
+        // One reservations row per booking, overlaps rejected by a GiST exclusion constraint on (desk, tsrange)
+        RANGE
+    }
+
+    public enum JobsMode {
+        // Two JobRunr jobs per reservation (check-in at start, completion at end)
+        PER_RESERVATION,
+        // One sweep per :00/:30 boundary with set-based updates for all reservations at once
+        BATCH
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.libraryweek1.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.scan")
+public class ScanProperties {
+    private int maxConcurrent = 4;                               // Scans processed at once; they hit Redis and Postgres, keep < Hikari pool size
+    private int maxQueued = 2_000;                               // Accepted scans waiting for a slot; beyond this gates get 503
+    private int maxBatchSize = 500;                              // Scans of a batch upload applied per chunk; chunks run one after another
+    private int maxUploadScans = 10_000;                         // Scans accepted in one batch upload; a larger body is rejected with 413
+    private int lanes = 16;                                      // Per-student lanes; a student's scans always land on the same one
+    private int laneCapacity = 256;                              // Scans waiting per lane; beyond this that lane's gates get 503
+    private Duration dedupWindow = Duration.ofSeconds(1);        // Repeats of a scan (same student and type) within one window are answered, not processed
+    private int dedupMaxEntries = 10_000;                        // Recent scans remembered per node for the local de-duplication tier
+    private Duration retryAfter = Duration.ofSeconds(1);         // Sent back in the Retry-After header when the queue is full
+}
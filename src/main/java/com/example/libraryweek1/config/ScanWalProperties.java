@@ -0,0 +1,23 @@
+package com.example.libraryweek1.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.scan-wal")
+public class ScanWalProperties {
+    private boolean enabled = false;                             // Log scans to local disk and acknowledge before applying them
+    private String directory = "data/scan-wal";                  // Segments and checkpoint; must survive restarts of this node
+    private DataSize segmentSize = DataSize.ofMegabytes(16);     // Size of each memory-mapped segment file
+    private int maxGroupCommit = 512;                            // Scans written per fsync at most
+    private int applyBatchSize = 256;                            // Scans applied between two checkpoints
+    private Duration retryBackoff = Duration.ofSeconds(1);       // Pause before re-applying scans that failed (Redis or Postgres down)
+    private int maxApplyAttempts = 900;                          // Attempts at a failing scan before it is dead-lettered (15 min at the default backoff)
+}
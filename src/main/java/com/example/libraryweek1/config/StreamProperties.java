@@ -0,0 +1,18 @@
+package com.example.libraryweek1.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.stream")
+public class StreamProperties {
+    private int queueCapacity = 64;                              // Undelivered deltas per connection before it is dropped
+    private Duration timeout = Duration.ofMinutes(30);           // Connection lifetime; clients reconnect afterwards
+    private Duration heartbeatInterval = Duration.ofSeconds(15); // Idle connections get a comment line to detect dead peers
+}
@@ -0,0 +1,18 @@
+package com.example.libraryweek1.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.user-cache")
+public class UserCacheProperties {
+    private long localMaxSize = 10_000;                // Entries per node (W-TinyLFU eviction)
+    private Duration localTtl = Duration.ofMinutes(10); // Upper bound on staleness if an invalidation message is lost
+    private Duration redisTtl = Duration.ofHours(1);
+}
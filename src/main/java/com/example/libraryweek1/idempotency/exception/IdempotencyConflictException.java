@@ -0,0 +1,10 @@
+package com.example.libraryweek1.idempotency.exception;
+
+import com.example.libraryweek1.config.ApiBaseException;
+import org.springframework.http.HttpStatus;
+
+public class IdempotencyConflictException extends ApiBaseException {
+    public IdempotencyConflictException(String message) {
+        super(message, HttpStatus.CONFLICT);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.libraryweek1.idempotency.exception;
+
+import com.example.libraryweek1.config.ApiBaseException;
+import org.springframework.http.HttpStatus;
+
+public class IdempotencyKeyMismatchException extends ApiBaseException {
+    public IdempotencyKeyMismatchException(String message) {
+        super(message, HttpStatus.UNPROCESSABLE_CONTENT);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.libraryweek1.idempotency.service;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+    /**
+     * Run an action at most once per idempotency key
+     * @param scope Namespace of the key, e.g. the endpoint and the caller
+     * @param idempotencyKey Client supplied key; when null or blank the action simply runs
+     * @param request The request body; a key reused with a different body is rejected
+     * @param responseType Type used to replay the stored response
+     * @param action The work to do on the first request
+     * @return The first response for this key, replayed for duplicates
+     */
+    <T> T execute(String scope, String idempotencyKey, Object request, Class<T> responseType, Supplier<T> action);
+}
@@ -0,0 +1,204 @@
+package com.example.libraryweek1.idempotency.service.impl;
+
+import com.example.libraryweek1.config.IdempotencyProperties;
+import com.example.libraryweek1.idempotency.exception.IdempotencyConflictException;
+import com.example.libraryweek1.idempotency.exception.IdempotencyKeyMismatchException;
+import com.example.libraryweek1.idempotency.service.IdempotencyService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Stores the first response per idempotency key in Redis (with a TTL) behind a local near-cache.
+ * The first request writes an in-progress marker with SET NX; duplicates that arrive while it runs
+ * wait for the stored response instead of executing the action again. Marker and response both carry a
+ * SHA-256 fingerprint of the request body, so a key reused for a different request is rejected instead of
+ * being answered with another request's response. Once the action has run, its response is returned even
+ * if it cannot be stored, never turned into an error the client would retry. The store is retried, and if
+ * it still fails the key is marked completed, so a duplicate on another node gets a conflict instead of
+ * running the action again once the in-progress marker expires.
+ */
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String IN_PROGRESS = "__in_progress__";
+    private static final String COMPLETED = "__completed__";
+    private static final char SEPARATOR = ':';
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyProperties properties;
+    private final Cache<String, String> nearCache;
+
+    public IdempotencyServiceImpl(@Qualifier("idempotencyRedisTemplate") StringRedisTemplate redisTemplate,
+                                  ObjectMapper objectMapper,
+                                  IdempotencyProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(properties.getNearCacheSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    @Override
+    public <T> T execute(String scope, String idempotencyKey, Object request, Class<T> responseType, Supplier<T> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        String key = KEY_PREFIX + scope + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+
+        String cached = nearCache.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, fingerprint, responseType);
+        }
+
+        Boolean acquired;
+        try {
+            acquired = redisTemplate.opsForValue().setIfAbsent(key, IN_PROGRESS + SEPARATOR + fingerprint, properties.getInProgressTtl());
+        } catch (DataAccessException e) {
+            // Redis unavailable: serve the request rather than failing it
+            log.warn("Idempotency store unavailable, executing {} without deduplication", key, e);
+            return action.get();
+        }
+
+        if (Boolean.TRUE.equals(acquired)) {
+            return executeFirst(key, fingerprint, action);
+        }
+        return awaitStoredResponse(key, fingerprint, responseType);
+    }
+
+    // --- Helper Logic ---
+    private <T> T executeFirst(String key, String fingerprint, Supplier<T> action) {
+        T response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            // Failed attempts are not remembered, the client may retry with the same key
+            forget(key);
+            throw e;
+        }
+        store(key, fingerprint, response);
+        return response;
+    }
+
+    // Duplicates on this node replay from the near-cache; for other nodes the response goes to Redis, or at
+    // least the fact that the action completed does
+    private void store(String key, String fingerprint, Object response) {
+        String stored;
+        try {
+            stored = fingerprint + SEPARATOR + objectMapper.writeValueAsString(response);
+        } catch (JacksonException e) {
+            log.warn("Could not serialize idempotent response for {}, marking it completed without it", key, e);
+            markCompleted(key, fingerprint);
+            return;
+        }
+        nearCache.put(key, stored);
+        for (int attempt = 1; attempt <= properties.getStoreAttempts(); attempt++) {
+            try {
+                redisTemplate.opsForValue().set(key, stored, properties.getTtl());
+                return;
+            } catch (DataAccessException e) {
+                log.warn("Could not store idempotent response for {} (attempt {} of {})", key, attempt,
+                        properties.getStoreAttempts(), e);
+            }
+            if (attempt < properties.getStoreAttempts() && !pause()) {
+                break;
+            }
+        }
+        markCompleted(key, fingerprint);
+    }
+
+    // Short, so it fits where the response did not; replaces the in-progress marker for the full TTL
+    private void markCompleted(String key, String fingerprint) {
+        try {
+            redisTemplate.opsForValue().set(key, COMPLETED + SEPARATOR + fingerprint, properties.getTtl());
+        } catch (DataAccessException e) {
+            log.error("Could not mark {} completed; a duplicate on another node may run it again after {}",
+                    key, properties.getInProgressTtl(), e);
+        }
+    }
+
+    private <T> T awaitStoredResponse(String key, String fingerprint, Class<T> responseType) {
+        long deadline = System.nanoTime() + properties.getWaitTimeout().toNanos();
+        while (true) {
+            String stored = redisTemplate.opsForValue().get(key);
+            if (stored != null && stored.startsWith(COMPLETED)) {
+                // The action ran but its response was lost; answering without it beats running it twice
+                verifyFingerprint(stored.substring(COMPLETED.length() + 1), fingerprint);
+                throw new IdempotencyConflictException("A Request With This Idempotency-Key Already Completed, Its Response Is Unavailable");
+            }
+            if (stored != null && !stored.startsWith(IN_PROGRESS)) {
+                T response = replay(stored, fingerprint, responseType);
+                nearCache.put(key, stored);
+                return response;
+            }
+            if (stored != null) {
+                // Reject a different request reusing the key without waiting for the first one to finish
+                verifyFingerprint(stored.substring(IN_PROGRESS.length() + 1), fingerprint);
+            }
+            if (stored == null || System.nanoTime() >= deadline) {
+                // The first attempt failed (marker removed) or is still running past our deadline
+                throw new IdempotencyConflictException("A Request With This Idempotency-Key Is Still In Progress Or Failed, Please Retry");
+            }
+            if (!pause()) {
+                throw new IdempotencyConflictException("Interrupted While Waiting For Idempotent Response");
+            }
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(properties.getPollInterval());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Stored as "<fingerprint>:<response json>"
+    private <T> T replay(String stored, String fingerprint, Class<T> responseType) {
+        int separator = stored.indexOf(SEPARATOR);
+        verifyFingerprint(stored.substring(0, separator), fingerprint);
+        return objectMapper.readValue(stored.substring(separator + 1), responseType);
+    }
+
+    private static void verifyFingerprint(String storedFingerprint, String fingerprint) {
+        if (!storedFingerprint.equals(fingerprint)) {
+            throw new IdempotencyKeyMismatchException("This Idempotency-Key Was Already Used For A Different Request");
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void forget(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (DataAccessException e) {
+            log.warn("Could not release idempotency key {}, it expires after {}", key, properties.getInProgressTtl(), e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.libraryweek1.jobs.service;
+
+/**
+ * Cluster-wide mutual exclusion for maintenance tasks. A lease is held only while the work runs
+ * and is released when the holder finishes or dies.
+ */
+public interface LeaseService {
+    /**
+     * Runs the work only if no other node holds the lease for this task; returns false if skipped.
+     */
+    boolean runIfLeader(String task, Runnable work);
+
+    /**
+     * Waits for the lease, then runs the work. For tasks every node needs done before it continues.
+     */
+    void runExclusively(String task, Runnable work);
+}
@@ -0,0 +1,7 @@
+package com.example.libraryweek1.jobs.service;
+
+import java.time.LocalDateTime;
+
+public interface ReservationSweepService {
+    void sweepBoundary(LocalDateTime boundary);
+}
@@ -6,10 +6,12 @@ import com.example.libraryweek1.jobs.exception.BreakManagementException;
 import com.example.libraryweek1.jobs.service.BreakManagementService;
 import com.example.libraryweek1.reservation.entity.Reservation;
 import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
 import com.example.libraryweek1.reservation.exception.ResourceNotFoundException;
 import com.example.libraryweek1.reservation.repository.ReservationRepository;
 import com.example.libraryweek1.reservation.service.ReservationService;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
@@ -26,17 +28,21 @@ public class BreakManagementServiceImpl implements BreakManagementService {
 
     private final ReservationRepository reservationRepository;
 
+    private final ApplicationEventPublisher eventPublisher;
+
     private static final String BREAK_MONITOR_KEY_PREFIX = "break_monitor:";
     private static final long MAX_BREAK_DURATION_MINUTES = 30; // Example maximum break duration
 
     public BreakManagementServiceImpl(TransactionTemplate transactionTemplate,
                                       ReservationService reservationService,
     @Qualifier("breakMonitorRedisTemplate") RedisTemplate<String, Object> redisTemplate,
-                                      ReservationRepository reservationRepository) {
+                                      ReservationRepository reservationRepository,
+                                      ApplicationEventPublisher eventPublisher) {
         this.transactionTemplate = transactionTemplate;
         this.reservationService = reservationService;
         this.redisTemplate = redisTemplate;
         this.reservationRepository = reservationRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -76,10 +82,13 @@ public class BreakManagementServiceImpl implements BreakManagementService {
         // User is checking in for the first time
         else {
             transactionTemplate.execute(status -> {
+                ReservationStatus previousStatus = reservation.getStatus();
                 // Clear break time and update reservation status
                 reservation.setStatus(ReservationStatus.CONFIRMED);
                 reservation.setBreakTime(MAX_BREAK_DURATION_MINUTES);
                 reservationRepository.save(reservation);
+                eventPublisher.publishEvent(new ReservationStatusChangedEvent(reservation.getRoomId(),
+                        reservation.getDeskId(), null, previousStatus, ReservationStatus.CONFIRMED));
                 return null;
             });
             return MAX_BREAK_DURATION_MINUTES;
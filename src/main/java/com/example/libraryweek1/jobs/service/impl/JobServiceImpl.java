@@ -7,6 +7,7 @@ import com.example.libraryweek1.reservation.exception.ResourceNotFoundException;
 import com.example.libraryweek1.reservation.repository.ReservationRepository;
 import com.example.libraryweek1.reservation.service.ReservationService;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -17,13 +18,15 @@ public class JobServiceImpl implements JobService {
 
     private final ReservationRepository reservationRepository;
     private final ReservationService reservationService;
-    private StringRedisTemplate redisTemplate;
+    private final StringRedisTemplate redisTemplate;
 
 
-    public JobServiceImpl(ReservationRepository reservationRepository, ReservationService reservationService,
+    // ReservationService depends on JobService for scheduling, so it is resolved lazily here
+    public JobServiceImpl(ReservationRepository reservationRepository, @Lazy ReservationService reservationService,
     @Qualifier("activeUsersRedisTemplate") StringRedisTemplate redisTemplate) {
         this.reservationRepository = reservationRepository;
         this.reservationService = reservationService;
+        this.redisTemplate = redisTemplate;
     }
 
     @Override
@@ -40,7 +43,7 @@ public class JobServiceImpl implements JobService {
                 // Check in Redis if the user has checked in as final verification
                 boolean checkStudent = redisTemplate.opsForSet().isMember("library:users:inside", studentId);
                 if(checkStudent == Boolean.FALSE) {
-                    reservationService.cancelReservation(reservationId, "User did not check in on time");
+                    reservationService.cancelReservation(reservationId, Reservation.NO_SHOW_REASON);
                 }
             }
         }
@@ -0,0 +1,44 @@
+package com.example.libraryweek1.jobs.service.impl;
+
+import com.example.libraryweek1.jobs.service.LeaseService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process stand-in for {@link PostgresAdvisoryLeaseService}, for tests and single-node setups.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.lease", name = "mode", havingValue = "local")
+public class LocalLeaseService implements LeaseService {
+
+    private final Map<String, ReentrantLock> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean runIfLeader(String task, Runnable work) {
+        ReentrantLock lease = leases.computeIfAbsent(task, name -> new ReentrantLock());
+        if (!lease.tryLock()) {
+            return false;
+        }
+        try {
+            work.run();
+            return true;
+        } finally {
+            lease.unlock();
+        }
+    }
+
+    @Override
+    public void runExclusively(String task, Runnable work) {
+        ReentrantLock lease = leases.computeIfAbsent(task, name -> new ReentrantLock());
+        lease.lock();
+        try {
+            work.run();
+        } finally {
+            lease.unlock();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.libraryweek1.jobs.service.impl;
+
+import com.example.libraryweek1.config.LeaseProperties;
+import com.example.libraryweek1.jobs.service.LeaseService;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Leases backed by Postgres session-level advisory locks, keyed by (namespace, hashtext(task)).
+ * Each run holds its own connection for the duration of the work; if the node dies, the session
+ * ends and Postgres releases the lock, so the next run on another node takes over. The connections
+ * come from a small pool of their own, so a held lease never takes a connection the work itself needs.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "app.lease", name = "mode", havingValue = "postgres", matchIfMissing = true)
+public class PostgresAdvisoryLeaseService implements LeaseService {
+
+    // Keeps our advisory locks apart from any other application using the same database
+    private static final int LOCK_NAMESPACE = 0x4C494252;
+
+    private final HikariDataSource dataSource;
+
+    public PostgresAdvisoryLeaseService(DataSourceProperties dataSourceProperties, LeaseProperties leaseProperties) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("lease");
+        dataSource.setMaximumPoolSize(leaseProperties.getPoolSize());
+        dataSource.setMinimumIdle(0);
+        dataSource.setConnectionTimeout(leaseProperties.getConnectionTimeout().toMillis());
+        // Dead lease holders are noticed and their advisory locks released
+        dataSource.addDataSourceProperty("tcpKeepAlive", true);
+    }
+
+    @Override
+    public boolean runIfLeader(String task, Runnable work) {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!lock(connection, "SELECT pg_try_advisory_lock(?, hashtext(?))", task)) {
+                log.info("Lease for {} is held by another node, skipping.", task);
+                return false;
+            }
+            runAndUnlock(connection, task, work);
+            return true;
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Could not acquire lease for " + task, e);
+        }
+    }
+
+    @Override
+    public void runExclusively(String task, Runnable work) {
+        try (Connection connection = dataSource.getConnection()) {
+            lock(connection, "SELECT pg_advisory_lock(?, hashtext(?)) IS NOT NULL", task);
+            runAndUnlock(connection, task, work);
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Could not acquire lease for " + task, e);
+        }
+    }
+
+    // --- Helper Logic ---
+    private boolean lock(Connection connection, String sql, String task) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, LOCK_NAMESPACE);
+            statement.setString(2, task);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private void runAndUnlock(Connection connection, String task, Runnable work) throws SQLException {
+        try {
+            work.run();
+        } finally {
+            unlock(connection, task);
+        }
+    }
+
+    // The connection goes back to the pool, so the session lock must not outlive this call: if the unlock
+    // fails the connection is evicted, and closing its session releases the lock
+    private void unlock(Connection connection, String task) {
+        try {
+            if (lock(connection, "SELECT pg_advisory_unlock(?, hashtext(?))", task)) {
+                return;
+            }
+            log.warn("Lease for {} was not held at unlock, discarding its connection.", task);
+        } catch (SQLException e) {
+            log.warn("Could not release lease for {}, discarding its connection.", task, e);
+        }
+        dataSource.evictConnection(connection);
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.libraryweek1.jobs.service.impl;
+
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.config.ReservationProperties.JobsMode;
+import com.example.libraryweek1.jobs.service.LeaseService;
+import com.example.libraryweek1.jobs.service.ReservationSweepService;
+import com.example.libraryweek1.reservation.entity.Reservation;
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import com.example.libraryweek1.reservation.service.SlotMaintenanceService;
+import com.example.libraryweek1.utilization.service.UtilizationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch replacement for the per-reservation JobRunr jobs. Reservations start and end on slot boundaries,
+ * so one sweep per :00/:30 completes every ended reservation and cancels every no-show with set-based
+ * updates, checking who is inside the library with a single SMISMEMBER.
+ */
+@Slf4j
+@Service
+public class ReservationSweepServiceImpl implements ReservationSweepService {
+
+    private static final String USERS_INSIDE_KEY = "library:users:inside";
+
+    private final ReservationRepository reservationRepository;
+    private final ReservationSlotRepository reservationSlotRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReservationProperties reservationProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final LeaseService leaseService;
+    private final UtilizationService utilizationService;
+
+    public ReservationSweepServiceImpl(ReservationRepository reservationRepository,
+                                       ReservationSlotRepository reservationSlotRepository,
+                                       @Qualifier("activeUsersRedisTemplate") StringRedisTemplate redisTemplate,
+                                       ApplicationEventPublisher eventPublisher,
+                                       ReservationProperties reservationProperties,
+                                       TransactionTemplate transactionTemplate,
+                                       LeaseService leaseService,
+                                       UtilizationService utilizationService) {
+        this.reservationRepository = reservationRepository;
+        this.reservationSlotRepository = reservationSlotRepository;
+        this.redisTemplate = redisTemplate;
+        this.eventPublisher = eventPublisher;
+        this.reservationProperties = reservationProperties;
+        this.transactionTemplate = transactionTemplate;
+        this.leaseService = leaseService;
+        this.utilizationService = utilizationService;
+    }
+
+    @Scheduled(cron = "0 0,30 * * * *")
+    public void sweepCurrentBoundary() {
+        if (reservationProperties.getJobs() != JobsMode.BATCH) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime boundary = now.minusMinutes(now.getMinute() % SlotMaintenanceService.SLOT_DURATION_MINUTES);
+        leaseService.runIfLeader("reservations:boundary-sweep", () -> sweepBoundary(boundary));
+    }
+
+    @Override
+    public void sweepBoundary(LocalDateTime boundary) {
+        Integer completed = transactionTemplate.execute(status -> {
+            utilizationService.recordCompletionsEndedBy(boundary);
+            return reservationRepository.completeEndedBy(boundary);
+        });
+        if (completed != null && completed > 0) {
+            // Set-based update, the rooms it touched are unknown
+            eventPublisher.publishEvent(new ReservationStatusChangedEvent(null, null, ReservationStatus.COMPLETED));
+        }
+
+        List<Reservation> unconfirmed = reservationRepository.findUnconfirmedStartedBy(boundary);
+        List<Reservation> noShows = unconfirmed.isEmpty() ? List.of() : filterNotInside(unconfirmed);
+        Integer cancelled = noShows.isEmpty() ? 0 : transactionTemplate.execute(status -> cancelNoShows(noShows));
+        log.info("Boundary sweep {}: {} completed, {} of {} unconfirmed cancelled as no-show",
+                boundary, completed, cancelled, unconfirmed.size());
+    }
+
+    // --- Helper Logic ---
+    private List<Reservation> filterNotInside(List<Reservation> reservations) {
+        Object[] studentIds = reservations.stream()
+                .map(reservation -> reservation.getUser().getStudentId().toString())
+                .distinct()
+                .toArray();
+        // One SMISMEMBER round trip for the whole boundary instead of one SISMEMBER per reservation
+        Map<Object, Boolean> inside = redisTemplate.opsForSet().isMember(USERS_INSIDE_KEY, studentIds);
+        return reservations.stream()
+                .filter(reservation -> !Boolean.TRUE.equals(inside.get(reservation.getUser().getStudentId().toString())))
+                .toList();
+    }
+
+    private int cancelNoShows(List<Reservation> noShows) {
+        // Students who checked in since the read above are dropped here; only the rest are counted and published
+        List<Reservation> stillPending = reservationRepository.findPendingByIdsForUpdate(
+                noShows.stream().map(Reservation::getId).toList());
+        if (stillPending.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = stillPending.stream().map(Reservation::getId).toList();
+        utilizationService.recordNoShows(ids);
+        int cancelled = reservationRepository.cancelPendingByIds(ids, Reservation.NO_SHOW_REASON);
+        reservationSlotRepository.releaseSlotsByReservationIds(ids);
+        stillPending.forEach(reservation -> eventPublisher.publishEvent(new SlotsChangedEvent(reservation.getRoomId(),
+                reservation.getDeskId(), reservation.getStartTime(), reservation.getEndTime(), false)));
+        return cancelled;
+    }
+}
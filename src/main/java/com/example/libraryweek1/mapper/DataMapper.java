@@ -3,6 +3,7 @@ package com.example.libraryweek1.mapper;
 import com.example.libraryweek1.reservation.dto.ReservationRequest;
 import com.example.libraryweek1.reservation.dto.ReservationResponse;
 import com.example.libraryweek1.reservation.dto.SlotsDto;
+import com.example.libraryweek1.reservation.entity.ArchivedReservation;
 import com.example.libraryweek1.reservation.entity.Reservation;
 import com.example.libraryweek1.reservation.entity.ReservationSlot;
 import com.example.libraryweek1.reservation.entity.ReservationStatus;
@@ -70,5 +71,20 @@ public class DataMapper {
                 .build();
     }
 
+    public ReservationResponse toReservationResponse(ArchivedReservation reservation) {
+        return ReservationResponse.builder()
+                .id(reservation.getId())
+                .userId(reservation.getUserId())
+                .roomId(reservation.getRoomId())
+                .deskId(reservation.getDeskId())
+                .startTime(reservation.getStartTime())
+                .endTime(reservation.getEndTime())
+                .status(reservation.getStatus())
+                .cancellationReason(reservation.getCancellationReason())
+                .createdAt(reservation.getCreatedAt())
+                .updatedAt(reservation.getUpdatedAt())
+                .build();
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.example.libraryweek1.occupancy.controller;
+
+import com.example.libraryweek1.occupancy.dto.LibraryOccupancyDto;
+import com.example.libraryweek1.occupancy.dto.RoomOccupancyDto;
+import com.example.libraryweek1.occupancy.service.OccupancyService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+@RequestMapping("/api/occupancy")
+@RequiredArgsConstructor
+public class OccupancyController {
+
+    private final OccupancyService occupancyService;
+
+    @GetMapping
+    public ResponseEntity<LibraryOccupancyDto> getLibraryOccupancy() {
+        return ResponseEntity.ok(occupancyService.getLibraryOccupancy());
+    }
+
+    @GetMapping("/room/{roomId}")
+    public ResponseEntity<RoomOccupancyDto> getRoomOccupancy(@PathVariable Integer roomId) {
+        return ResponseEntity.ok(occupancyService.getRoomOccupancy(roomId));
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.libraryweek1.occupancy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LibraryOccupancyDto {
+    private long inside;              // Everyone inside, with or without a reservation
+    private long activeReservations;
+    private long present;
+    private long onBreak;
+    private long uniqueVisitorsToday; // HyperLogLog estimate
+    private List<RoomOccupancyDto> rooms;
+}
@@ -0,0 +1,18 @@
+package com.example.libraryweek1.occupancy.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomOccupancyDto {
+    private Integer roomId;
+    private long activeReservations;  // CONFIRMED reservations in the room
+    private long present;             // Of those, students currently inside the library
+    private long onBreak;             // Checked in earlier but currently outside
+    private long uniqueVisitorsToday; // HyperLogLog estimate
+}
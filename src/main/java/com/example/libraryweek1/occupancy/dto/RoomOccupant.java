@@ -0,0 +1,5 @@
+package com.example.libraryweek1.occupancy.dto;
+
+// Room (null when unknown) and student, used to rebuild the occupancy counters and to record visits
+public record RoomOccupant(Integer roomId, Long studentId) {
+}
@@ -0,0 +1,29 @@
+package com.example.libraryweek1.occupancy.service;
+
+import com.example.libraryweek1.occupancy.dto.LibraryOccupancyDto;
+import com.example.libraryweek1.occupancy.dto.RoomOccupancyDto;
+import com.example.libraryweek1.occupancy.dto.RoomOccupant;
+
+import java.util.List;
+
+public interface OccupancyService {
+
+    LibraryOccupancyDto getLibraryOccupancy();
+
+    RoomOccupancyDto getRoomOccupancy(Integer roomId);
+
+    /**
+     * Counts the student as today's visitor of the library and, when roomId is not null, of that room.
+     */
+    void recordVisit(Long studentId, Integer roomId);
+
+    /**
+     * Same as {@link #recordVisit} for many students in one Redis round trip.
+     */
+    void recordVisits(List<RoomOccupant> visits);
+
+    /**
+     * Recomputes the per-room counters from the CONFIRMED reservations and the inside-set.
+     */
+    void reconcile();
+}
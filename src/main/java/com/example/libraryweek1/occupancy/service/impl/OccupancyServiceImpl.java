@@ -0,0 +1,288 @@
+package com.example.libraryweek1.occupancy.service.impl;
+
+import com.example.libraryweek1.jobs.service.LeaseService;
+import com.example.libraryweek1.occupancy.dto.LibraryOccupancyDto;
+import com.example.libraryweek1.occupancy.dto.RoomOccupancyDto;
+import com.example.libraryweek1.occupancy.dto.RoomOccupant;
+import com.example.libraryweek1.occupancy.service.OccupancyService;
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.event.DeskPresenceChangedEvent;
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.reservation.service.SlotMaintenanceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Occupancy from pre-aggregated Redis counters: one hash holds CONFIRMED reservations and present
+ * students per room, kept current by check-in and scan events; the inside-set cardinality gives the
+ * library head count and per-day HyperLogLogs give unique visitors. Every read is a single pipelined
+ * round trip. Check-ins and transitions that leave CONFIRMED (completion, cancellation) adjust the
+ * room's counters in place; set-based updates mark the counters dirty for the leased reconcile, which
+ * also runs periodically to correct drift from lost events.
+ */
+@Slf4j
+@Service
+public class OccupancyServiceImpl implements OccupancyService {
+
+    private static final String COUNTERS_KEY = "library:occupancy";
+    private static final String DIRTY_KEY = "library:occupancy:dirty";
+    private static final String USERS_INSIDE_KEY = "library:users:inside";
+    private static final String VISITORS_KEY_PREFIX = "library:visitors:";
+    private static final Duration VISITORS_TTL = Duration.ofDays(2);
+    private static final List<Integer> ROOM_IDS = SlotMaintenanceService.DESK_IDS.stream()
+            .map(deskId -> deskId / 10)
+            .distinct()
+            .sorted()
+            .toList();
+
+    private final StringRedisTemplate redisTemplate;
+    private final ReservationRepository reservationRepository;
+    private final LeaseService leaseService;
+
+    public OccupancyServiceImpl(@Qualifier("activeUsersRedisTemplate") StringRedisTemplate redisTemplate,
+                                ReservationRepository reservationRepository,
+                                LeaseService leaseService) {
+        this.redisTemplate = redisTemplate;
+        this.reservationRepository = reservationRepository;
+        this.leaseService = leaseService;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public LibraryOccupancyDto getLibraryOccupancy() {
+        byte[] countersKey = bytes(COUNTERS_KEY);
+        byte[] insideKey = bytes(USERS_INSIDE_KEY);
+        LocalDate today = LocalDate.now();
+        byte[] visitorsKey = bytes(visitorsKey(today, null));
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hGetAll(countersKey);
+            connection.setCommands().sCard(insideKey);
+            connection.hyperLogLogCommands().pfCount(visitorsKey);
+            // Per-room visitor counts ride along in the same round trip, one PFCOUNT per room
+            for (Integer roomId : ROOM_IDS) {
+                connection.hyperLogLogCommands().pfCount(bytes(visitorsKey(today, roomId)));
+            }
+            return null;
+        });
+        Map<Integer, Long> roomVisitors = new HashMap<>();
+        for (int i = 0; i < ROOM_IDS.size(); i++) {
+            roomVisitors.put(ROOM_IDS.get(i), toLong(results.get(3 + i)));
+        }
+
+        Map<Integer, long[]> roomCounters = new TreeMap<>();
+        ((Map<String, String>) results.get(0)).forEach((field, value) -> {
+            String[] parts = field.split(":");
+            long[] counters = roomCounters.computeIfAbsent(Integer.valueOf(parts[1]), roomId -> new long[2]);
+            counters["active".equals(parts[2]) ? 0 : 1] = Long.parseLong(value);
+        });
+        List<RoomOccupancyDto> rooms = new ArrayList<>();
+        roomCounters.forEach((roomId, counters) -> rooms.add(roomOccupancy(roomId, counters[0], counters[1],
+                roomVisitors.getOrDefault(roomId, 0L))));
+
+        return LibraryOccupancyDto.builder()
+                .inside(toLong(results.get(1)))
+                .activeReservations(rooms.stream().mapToLong(RoomOccupancyDto::getActiveReservations).sum())
+                .present(rooms.stream().mapToLong(RoomOccupancyDto::getPresent).sum())
+                .onBreak(rooms.stream().mapToLong(RoomOccupancyDto::getOnBreak).sum())
+                .uniqueVisitorsToday(toLong(results.get(2)))
+                .rooms(rooms)
+                .build();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public RoomOccupancyDto getRoomOccupancy(Integer roomId) {
+        byte[] countersKey = bytes(COUNTERS_KEY);
+        byte[] activeField = bytes(activeField(roomId));
+        byte[] presentField = bytes(presentField(roomId));
+        byte[] visitorsKey = bytes(visitorsKey(LocalDate.now(), roomId));
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hMGet(countersKey, activeField, presentField);
+            connection.hyperLogLogCommands().pfCount(visitorsKey);
+            return null;
+        });
+
+        List<String> counters = (List<String>) results.get(0);
+        return roomOccupancy(roomId, toLong(counters.get(0)), toLong(counters.get(1)), toLong(results.get(1)));
+    }
+
+    @Override
+    public void recordVisit(Long studentId, Integer roomId) {
+        recordVisits(List.of(new RoomOccupant(roomId, studentId)));
+    }
+
+    @Override
+    public void recordVisits(List<RoomOccupant> visits) {
+        if (visits.isEmpty()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        byte[] libraryKey = bytes(visitorsKey(today, null));
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (RoomOccupant visit : visits) {
+                    byte[] member = bytes(visit.studentId().toString());
+                    connection.hyperLogLogCommands().pfAdd(libraryKey, member);
+                    if (visit.roomId() != null) {
+                        byte[] roomKey = bytes(visitorsKey(today, visit.roomId()));
+                        connection.hyperLogLogCommands().pfAdd(roomKey, member);
+                        connection.keyCommands().expire(roomKey, VISITORS_TTL.toSeconds());
+                    }
+                }
+                connection.keyCommands().expire(libraryKey, VISITORS_TTL.toSeconds());
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Could not record {} visit(s)", visits.size(), e);
+        }
+    }
+
+    @Scheduled(cron = "0 */5 * * * *")
+    public void scheduledReconcile() {
+        leaseService.runIfLeader("occupancy:reconcile", this::reconcile);
+    }
+
+    // The flag lives in Redis, so the node holding the lease sees a set-based update made on any other node
+    @Scheduled(cron = "*/15 * * * * *")
+    public void reconcileIfDirty() {
+        leaseService.runIfLeader("occupancy:reconcile", () -> {
+            // Cleared before the recount, so an update committed during it marks the counters dirty again
+            if (!Boolean.TRUE.equals(redisTemplate.delete(DIRTY_KEY))) {
+                return;
+            }
+            try {
+                reconcile();
+            } catch (DataAccessException e) {
+                log.warn("Could not reconcile occupancy counters, retrying on the next run", e);
+                markDirty();
+            }
+        });
+    }
+
+    @Override
+    public void reconcile() {
+        List<RoomOccupant> occupants = reservationRepository.findConfirmedOccupants();
+        if (occupants.isEmpty()) {
+            redisTemplate.delete(COUNTERS_KEY);
+            return;
+        }
+        Object[] studentIds = occupants.stream().map(occupant -> occupant.studentId().toString()).distinct().toArray();
+        Map<Object, Boolean> inside = redisTemplate.opsForSet().isMember(USERS_INSIDE_KEY, studentIds);
+
+        Map<String, Long> counters = new HashMap<>();
+        for (RoomOccupant occupant : occupants) {
+            counters.merge(activeField(occupant.roomId()), 1L, Long::sum);
+            boolean present = Boolean.TRUE.equals(inside.get(occupant.studentId().toString()));
+            counters.merge(presentField(occupant.roomId()), present ? 1L : 0L, Long::sum);
+        }
+        Map<String, String> values = new HashMap<>();
+        counters.forEach((field, count) -> values.put(field, count.toString()));
+
+        // Build aside and swap in with RENAME, so readers never see a half-written hash
+        String rebuildKey = COUNTERS_KEY + ":rebuild:" + UUID.randomUUID();
+        redisTemplate.opsForHash().putAll(rebuildKey, values);
+        redisTemplate.rename(rebuildKey, COUNTERS_KEY);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeskPresenceChanged(DeskPresenceChangedEvent event) {
+        increment(presentField(event.roomId()), event.present() ? 1 : -1);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationStatusChanged(ReservationStatusChangedEvent event) {
+        if (event.roomId() == null) {
+            // Set-based update, the rooms it touched are unknown: one recount for the whole batch, off this
+            // thread (the committing request or job) and on one node only
+            markDirty();
+            return;
+        }
+        boolean wasConfirmed = event.previousStatus() == ReservationStatus.CONFIRMED;
+        boolean confirmed = event.status() == ReservationStatus.CONFIRMED;
+        if (confirmed && !wasConfirmed) {
+            increment(activeField(event.roomId()), 1);
+        } else if (wasConfirmed && !confirmed) {
+            increment(activeField(event.roomId()), -1);
+            // A student still inside was counted as present in the room; one on break was not
+            if (event.studentId() != null && isInside(event.studentId())) {
+                increment(presentField(event.roomId()), -1);
+            }
+        }
+    }
+
+    // --- Helper Logic ---
+    private void increment(String field, long delta) {
+        try {
+            redisTemplate.opsForHash().increment(COUNTERS_KEY, field, delta);
+        } catch (DataAccessException e) {
+            log.warn("Could not update occupancy counter {}, the next reconcile will correct it", field, e);
+        }
+    }
+
+    private void markDirty() {
+        try {
+            redisTemplate.opsForValue().set(DIRTY_KEY, "1");
+        } catch (DataAccessException e) {
+            log.warn("Could not mark occupancy counters dirty, the next scheduled reconcile will correct them", e);
+        }
+    }
+
+    private boolean isInside(Long studentId) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(USERS_INSIDE_KEY, studentId.toString()));
+        } catch (DataAccessException e) {
+            log.warn("Could not check presence of student {}, the next reconcile will correct the counters", studentId, e);
+            return false;
+        }
+    }
+
+    private static RoomOccupancyDto roomOccupancy(Integer roomId, long active, long present, long uniqueVisitors) {
+        return RoomOccupancyDto.builder()
+                .roomId(roomId)
+                .activeReservations(active)
+                .present(present)
+                .onBreak(Math.max(active - present, 0))
+                .uniqueVisitorsToday(uniqueVisitors)
+                .build();
+    }
+
+    private static String activeField(Integer roomId) {
+        return "room:" + roomId + ":active";
+    }
+
+    private static String presentField(Integer roomId) {
+        return "room:" + roomId + ":present";
+    }
+
+    private static String visitorsKey(LocalDate date, Integer roomId) {
+        return VISITORS_KEY_PREFIX + date + (roomId == null ? "" : ":room:" + roomId);
+    }
+
+    private static long toLong(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
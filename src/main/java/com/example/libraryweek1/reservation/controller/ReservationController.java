@@ -1,16 +1,33 @@
 package com.example.libraryweek1.reservation.controller;
 
+import com.example.libraryweek1.idempotency.service.IdempotencyService;
+import com.example.libraryweek1.reservation.dto.ReservationHistoryPage;
 import com.example.libraryweek1.reservation.dto.ReservationRequest;
 import com.example.libraryweek1.reservation.dto.ReservationResponse;
+import com.example.libraryweek1.reservation.dto.RoomReservationRequest;
 import com.example.libraryweek1.reservation.dto.SlotsDto;
+import com.example.libraryweek1.reservation.service.AvailabilityStreamBus;
+import com.example.libraryweek1.reservation.service.AvailabilityVersionTracker;
 import com.example.libraryweek1.reservation.service.ReservationService;
+import com.example.libraryweek1.reservation.service.RoomGridService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @RestController
 @CrossOrigin(origins = "*", allowedHeaders = "*")
@@ -18,41 +35,136 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ReservationController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final ReservationService reservationService;
+    private final IdempotencyService idempotencyService;
+    private final AvailabilityVersionTracker availabilityVersionTracker;
+    private final AvailabilityStreamBus availabilityStreamBus;
+    private final RoomGridService roomGridService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
-    public ResponseEntity<ReservationResponse> createReservation(@Valid @RequestBody ReservationRequest request) {
-        return ResponseEntity.ok(reservationService.makeReservation(request));
+    public ResponseEntity<ReservationResponse> createReservation(@Valid @RequestBody ReservationRequest request,
+                                                                 @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        // Client retries with the same key get the first response back instead of booking again
+        return ResponseEntity.ok(idempotencyService.execute("reservation:create:" + request.getUserId(), idempotencyKey, request,
+                ReservationResponse.class, () -> reservationService.makeReservation(request)));
+    }
+
+    @PostMapping("/room")
+    public ResponseEntity<ReservationResponse> createRoomReservation(@Valid @RequestBody RoomReservationRequest request,
+                                                                     @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        // Any free desk in the room; the service picks the best fit and falls back on conflicts
+        return ResponseEntity.ok(idempotencyService.execute("reservation:create:" + request.getUserId(), idempotencyKey, request,
+                ReservationResponse.class, () -> reservationService.makeRoomReservation(request)));
     }
 
     @GetMapping("/free-slots/{deskId}")
-    public ResponseEntity<List<SlotsDto>> getFreeSlots(@PathVariable Integer deskId) {
-        return ResponseEntity.ok(reservationService.getFreeSlots(deskId));
+    public ResponseEntity<List<SlotsDto>> getFreeSlots(@PathVariable Integer deskId, WebRequest webRequest) {
+        return versioned(webRequest, availabilityVersionTracker.deskTag(deskId), () -> reservationService.getFreeSlots(deskId));
     }
 
-    @GetMapping("/free-slots/{roomId}")
-    public ResponseEntity<List<SlotsDto>> getFreeSlotsRoom(@PathVariable Integer roomId) {
-        return ResponseEntity.ok(reservationService.getFreeSlotsRoom(roomId));
+    @GetMapping("/free-slots/room/{roomId}")
+    public ResponseEntity<List<SlotsDto>> getFreeSlotsRoom(@PathVariable Integer roomId, WebRequest webRequest) {
+        return versioned(webRequest, availabilityVersionTracker.roomTag(roomId), () -> reservationService.getFreeSlotsRoom(roomId));
     }
 
     @GetMapping("/active/{roomId}")
-    public ResponseEntity<List<SlotsDto>> getActiveReservations(@PathVariable Integer roomId) {
-        return ResponseEntity.ok(reservationService.getActiveReservations(roomId));
+    public ResponseEntity<List<SlotsDto>> getActiveReservations(@PathVariable Integer roomId, WebRequest webRequest) {
+        return versioned(webRequest, availabilityVersionTracker.roomTag(roomId), () -> reservationService.getActiveReservations(roomId));
+    }
+
+    // Every desk of the room with one free-slot bitmask per day, pre-encoded per room version
+    @GetMapping(value = "/grid/{roomId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getRoomGrid(@PathVariable Integer roomId,
+                                              @RequestParam(required = false) Integer days,
+                                              WebRequest webRequest) {
+        RoomGridService.GridKey key = roomGridService.key(roomId, days);
+        return versioned(webRequest, key.etag("json"), () -> roomGridService.json(key));
+    }
+
+    @GetMapping(value = "/grid/{roomId}", produces = {RoomGridService.BINARY_CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<byte[]> getRoomGridBinary(@PathVariable Integer roomId,
+                                                    @RequestParam(required = false) Integer days,
+                                                    WebRequest webRequest) {
+        RoomGridService.GridKey key = roomGridService.key(roomId, days);
+        return versioned(webRequest, key.etag("bin"), () -> roomGridService.binary(key));
+    }
+
+    // Live slot-booked/slot-freed/check-in/check-out deltas for a room, instead of polling the endpoints above
+    @GetMapping(value = "/stream/{roomId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability(@PathVariable Integer roomId) {
+        return availabilityStreamBus.subscribe(roomId);
     }
 
     @PostMapping("/cancel/{reservationId}")
     public ResponseEntity<ReservationResponse> cancelReservation(@PathVariable Long reservationId,
-                                                    @RequestBody String reason) {
-        // Implement cancellation logic here
-        return ResponseEntity.ok(reservationService.cancelReservation(reservationId, reason));
+                                                    @RequestBody String reason,
+                                                    @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return ResponseEntity.ok(idempotencyService.execute("reservation:cancel:" + reservationId, idempotencyKey, reason,
+                ReservationResponse.class, () -> reservationService.cancelReservation(reservationId, reason)));
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<ReservationResponse>> getReservationsByUserId(@PathVariable Long userId) {
-        return ResponseEntity.ok(reservationService.getReservationsByUserId(userId));
+    public ResponseEntity<List<ReservationResponse>> getReservationsByUserId(@PathVariable Long userId,
+                                                                             @RequestParam(defaultValue = "false") boolean includeArchived) {
+        return ResponseEntity.ok(reservationService.getReservationsByUserId(userId, includeArchived));
     }
 
+    @GetMapping("/user/{userId}/history")
+    public ResponseEntity<ReservationHistoryPage> getReservationHistoryByUserId(@PathVariable Long userId,
+                                                                                @RequestParam(required = false) String after,
+                                                                                @RequestParam(defaultValue = "20") int limit,
+                                                                                @RequestParam(defaultValue = "false") boolean includeArchived) {
+        return ResponseEntity.ok(reservationService.getReservationHistoryByUserId(userId, after, limit, includeArchived));
+    }
+
+    @GetMapping("/student/{studentId}/history")
+    public ResponseEntity<ReservationHistoryPage> getReservationHistoryByStudentId(@PathVariable Long studentId,
+                                                                                   @RequestParam(required = false) String after,
+                                                                                   @RequestParam(defaultValue = "20") int limit,
+                                                                                   @RequestParam(defaultValue = "false") boolean includeArchived) {
+        return ResponseEntity.ok(reservationService.getReservationHistoryByStudentId(studentId, after, limit, includeArchived));
+    }
+
+    @GetMapping(value = "/user/{userId}/history/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamReservationHistoryByUserId(@PathVariable Long userId,
+                                                                                  @RequestParam(defaultValue = "false") boolean includeArchived) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> reservationService.streamReservationHistoryByUserId(userId, includeArchived, ndjsonWriter(out)));
+    }
 
+    @GetMapping(value = "/student/{studentId}/history/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamReservationHistoryByStudentId(@PathVariable Long studentId,
+                                                                                     @RequestParam(defaultValue = "false") boolean includeArchived) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> reservationService.streamReservationHistoryByStudentId(studentId, includeArchived, ndjsonWriter(out)));
+    }
 
+    // The tag is taken before the read, so it can only be older than the body it labels; a matching
+    // If-None-Match is answered with 304 without calling the service
+    private <T> ResponseEntity<T> versioned(WebRequest webRequest, String etag, Supplier<T> read) {
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(etag)
+                .body(read.get());
+    }
 
-}
\ No newline at end of file
+    // One JSON document per line, written as rows come off the database cursor
+    private Consumer<ReservationResponse> ndjsonWriter(OutputStream out) {
+        return reservation -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(reservation));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
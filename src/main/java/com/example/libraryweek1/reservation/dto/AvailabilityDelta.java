@@ -0,0 +1,10 @@
+package com.example.libraryweek1.reservation.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One change pushed to room stream subscribers. startTime/endTime are null for check-in/check-out.
+ */
+public record AvailabilityDelta(AvailabilityDeltaType type, Integer roomId, Integer deskId,
+                                LocalDateTime startTime, LocalDateTime endTime) {
+}
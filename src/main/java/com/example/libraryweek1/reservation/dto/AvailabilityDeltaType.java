@@ -0,0 +1,8 @@
+package com.example.libraryweek1.reservation.dto;
+
+public enum AvailabilityDeltaType {
+    SLOT_BOOKED,
+    SLOT_FREED,
+    CHECK_IN,
+    CHECK_OUT
+}
@@ -0,0 +1,15 @@
+package com.example.libraryweek1.reservation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeskGridDto {
+    private Integer deskId;
+    private int[] freeMasks; // One mask per day; bit i set when the slot starting at openingTime + i * slotMinutes is free
+}
@@ -0,0 +1,38 @@
+package com.example.libraryweek1.reservation.dto;
+
+import com.example.libraryweek1.reservation.exception.InvalidCursorException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Keyset position in a history listing ordered by (createdAt DESC, id DESC).
+ * Serialized as {@code <createdAt>,<id>}, e.g. {@code 2024-01-01T10:00:00.123,42}.
+ */
+public record HistoryCursor(LocalDateTime createdAt, Long id) {
+
+    // Sorts before every real row, so the first page uses the same keyset query as the others
+    public static final HistoryCursor FIRST = new HistoryCursor(LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE);
+
+    public static HistoryCursor parse(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        int separator = cursor.lastIndexOf(',');
+        try {
+            return new HistoryCursor(LocalDateTime.parse(cursor.substring(0, separator)),
+                    Long.parseLong(cursor.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid History Cursor");
+        }
+    }
+
+    public static HistoryCursor of(ReservationResponse reservation) {
+        return new HistoryCursor(reservation.getCreatedAt(), reservation.getId());
+    }
+
+    @Override
+    public String toString() {
+        return createdAt + "," + id;
+    }
+}
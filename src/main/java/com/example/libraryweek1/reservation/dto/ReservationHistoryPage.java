@@ -0,0 +1,17 @@
+package com.example.libraryweek1.reservation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationHistoryPage {
+    private List<ReservationResponse> items;
+    private String nextCursor; // null on the last page; pass as ?after= to get the next one
+}
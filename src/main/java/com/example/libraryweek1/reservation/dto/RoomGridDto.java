@@ -0,0 +1,24 @@
+package com.example.libraryweek1.reservation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomGridDto {
+    private Integer roomId;
+    private LocalDate firstDay;
+    private int days;
+    private LocalTime openingTime;
+    private int slotMinutes;
+    private int slotsPerDay;
+    private List<DeskGridDto> desks;
+}
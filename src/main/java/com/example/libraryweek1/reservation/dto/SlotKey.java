@@ -0,0 +1,7 @@
+package com.example.libraryweek1.reservation.dto;
+
+import java.time.LocalDateTime;
+
+// Natural key of a slot row (unique per desk and start), used to diff existing slots during generation
+public record SlotKey(Integer deskId, LocalDateTime slotStart) {
+}
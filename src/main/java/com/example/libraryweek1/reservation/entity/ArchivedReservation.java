@@ -0,0 +1,64 @@
+package com.example.libraryweek1.reservation.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Append-only copy of a finished (COMPLETED/CANCELLED) reservation, moved out of the hot
+ * reservations table by the archival job. Keeps the original id; no foreign keys, no slots.
+ */
+@Entity
+@Table(
+        name = "reservations_archive",
+        indexes = {
+                @Index(name = "reservations_archive_user_idx", columnList = "userId, startTime"),
+                @Index(name = "reservations_archive_user_created_idx", columnList = "userId, createdAt, id")
+        }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedReservation {
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private Integer roomId;
+
+    @Column(nullable = false)
+    private Integer deskId;
+
+    @Column(nullable = false)
+    private LocalDateTime startTime;
+
+    @Column(nullable = false)
+    private LocalDateTime endTime;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ReservationStatus status;
+
+    @Column
+    private String cancellationReason;
+
+    @Column
+    private Long breakTime;
+
+    @Column
+    private LocalDateTime createdAt;
+
+    @Column
+    private LocalDateTime updatedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -14,12 +14,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "reservations")
+@Table(
+        name = "reservations",
+        // Backs the keyset history queries (user_id = ? AND (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC)
+        indexes = @Index(name = "reservations_user_created_idx", columnList = "user_id, createdAt, id")
+)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Reservation {
+    // Reason set when a reservation is cancelled because the student never checked in
+    public static final String NO_SHOW_REASON = "User did not check in on time";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -56,8 +63,8 @@ public class Reservation {
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
-    // 0 at first, if user is on break add every minute on break
-    @Column(nullable = false)
+    // null until the first check-in, if user is on break add every minute on break
+    @Column
     private Long breakTime;
 
     @Column(nullable = false)
@@ -26,8 +26,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class ReservationSlot {
 
+    // Pooled sequence instead of IDENTITY so Hibernate can batch the generated inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_slots_seq")
+    @SequenceGenerator(name = "reservation_slots_seq", sequenceName = "reservation_slots_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
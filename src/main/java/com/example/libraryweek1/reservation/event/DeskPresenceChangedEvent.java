@@ -0,0 +1,7 @@
+package com.example.libraryweek1.reservation.event;
+
+/**
+ * Published when a student with a started reservation enters (present) or leaves the library.
+ */
+public record DeskPresenceChangedEvent(Integer roomId, Integer deskId, boolean present) {
+}
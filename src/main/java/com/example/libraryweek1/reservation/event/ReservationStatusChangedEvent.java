@@ -0,0 +1,17 @@
+package com.example.libraryweek1.reservation.event;
+
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+
+/**
+ * Published when a reservation moves to a new status without its slots changing (check-in, completion).
+ * previousStatus and studentId let listeners apply the transition as a delta. All but status are null
+ * for set-based updates that may touch any room.
+ */
+public record ReservationStatusChangedEvent(Integer roomId, Integer deskId, Long studentId,
+                                            ReservationStatus previousStatus, ReservationStatus status) {
+
+    // Transition whose previous state is unknown, e.g. a set-based update
+    public ReservationStatusChangedEvent(Integer roomId, Integer deskId, ReservationStatus status) {
+        this(roomId, deskId, null, null, status);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.libraryweek1.reservation.event;
+
+import java.time.LocalDate;
+
+/**
+ * Published when slot maintenance generates or removes whole days of slots.
+ */
+public record SlotWindowChangedEvent(LocalDate date) {
+}
@@ -0,0 +1,10 @@
+package com.example.libraryweek1.reservation.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published when a desk's slots in [startTime, endTime) flip between booked and free.
+ */
+public record SlotsChangedEvent(Integer roomId, Integer deskId, LocalDateTime startTime, LocalDateTime endTime,
+                                boolean booked) {
+}
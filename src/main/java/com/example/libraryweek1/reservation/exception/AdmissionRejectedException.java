@@ -0,0 +1,19 @@
+package com.example.libraryweek1.reservation.exception;
+
+import com.example.libraryweek1.config.ApiBaseException;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+public class AdmissionRejectedException extends ApiBaseException {
+    private final Duration retryAfter;
+
+    public AdmissionRejectedException(String message, HttpStatus status, Duration retryAfter) {
+        super(message, status);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.libraryweek1.reservation.exception;
+
+import com.example.libraryweek1.config.ApiBaseException;
+import org.springframework.http.HttpStatus;
+
+public class InvalidCursorException extends ApiBaseException {
+    public InvalidCursorException(String message) {
+        super(message, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.libraryweek1.reservation.exception;
 
-public class ReservationNotAvailableException extends RuntimeException {
+import com.example.libraryweek1.config.ApiBaseException;
+import org.springframework.http.HttpStatus;
+
+public class ReservationNotAvailableException extends ApiBaseException {
     public ReservationNotAvailableException(String message) {
-        super(message);
+        super(message, HttpStatus.CONFLICT);
     }
-} 
\ No newline at end of file
+}
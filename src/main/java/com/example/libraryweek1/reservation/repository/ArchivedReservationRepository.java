@@ -0,0 +1,58 @@
+package com.example.libraryweek1.reservation.repository;
+
+import com.example.libraryweek1.reservation.dto.ReservationResponse;
+import com.example.libraryweek1.reservation.entity.ArchivedReservation;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+@Repository
+public interface ArchivedReservationRepository extends JpaRepository<ArchivedReservation, Long> {
+
+    // Same projection, keyset and order as the history queries of ReservationRepository, so pages can be merged
+    String HISTORY_PROJECTION = "SELECT new com.example.libraryweek1.reservation.dto.ReservationResponse(" +
+            "a.id, a.userId, a.roomId, a.deskId, a.startTime, a.endTime, a.status, a.cancellationReason, " +
+            "a.createdAt, a.updatedAt) FROM ArchivedReservation a ";
+    // The archive keeps no foreign keys, students are resolved through the user id
+    String BY_STUDENT = "JOIN User u ON u.id = a.userId WHERE u.studentId = :studentId ";
+    String AFTER_CURSOR = "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) ";
+    String NEWEST_FIRST = "ORDER BY a.createdAt DESC, a.id DESC";
+
+    List<ArchivedReservation> findByUserIdOrderByStartTimeDesc(Long userId);
+
+    @Query(HISTORY_PROJECTION + "WHERE a.userId = :userId " + AFTER_CURSOR + NEWEST_FIRST)
+    List<ReservationResponse> findHistoryPageByUserId(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") Long id, Limit limit);
+
+    @Query(HISTORY_PROJECTION + BY_STUDENT + AFTER_CURSOR + NEWEST_FIRST)
+    List<ReservationResponse> findHistoryPageByStudentId(@Param("studentId") Long studentId, @Param("createdAt") LocalDateTime createdAt,
+                                                         @Param("id") Long id, Limit limit);
+
+    // Whole archived history as a cursor-backed stream; must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "200"))
+    @Query(HISTORY_PROJECTION + "WHERE a.userId = :userId " + NEWEST_FIRST)
+    Stream<ReservationResponse> streamHistoryByUserId(@Param("userId") Long userId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "200"))
+    @Query(HISTORY_PROJECTION + BY_STUDENT + NEWEST_FIRST)
+    Stream<ReservationResponse> streamHistoryByStudentId(@Param("studentId") Long studentId);
+
+    // Copies one batch of finished reservations in a single INSERT ... SELECT
+    @Modifying
+    @Query("INSERT INTO ArchivedReservation (id, userId, roomId, deskId, startTime, endTime, status, cancellationReason, " +
+            "breakTime, createdAt, updatedAt, archivedAt) " +
+            "SELECT r.id, r.user.id, r.roomId, r.deskId, r.startTime, r.endTime, r.status, r.cancellationReason, " +
+            "r.breakTime, r.createdAt, r.updatedAt, :archivedAt FROM Reservation r WHERE r.id IN :ids")
+    int archiveByIds(@Param("ids") List<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+}
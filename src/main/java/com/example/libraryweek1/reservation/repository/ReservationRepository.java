@@ -1,18 +1,37 @@
 package com.example.libraryweek1.reservation.repository;
 
+import com.example.libraryweek1.occupancy.dto.RoomOccupant;
+import com.example.libraryweek1.reservation.dto.ReservationResponse;
+import com.example.libraryweek1.reservation.dto.SlotsDto;
 import com.example.libraryweek1.reservation.entity.Reservation;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
 
+    // Flat DTO projection for history listings: no entity graph, no slot rows
+    String HISTORY_PROJECTION = "SELECT new com.example.libraryweek1.reservation.dto.ReservationResponse(" +
+            "r.id, r.user.id, r.roomId, r.deskId, r.startTime, r.endTime, r.status, r.cancellationReason, " +
+            "r.createdAt, r.updatedAt) FROM Reservation r ";
+    String AFTER_CURSOR = "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) ";
+    String NEWEST_FIRST = "ORDER BY r.createdAt DESC, r.id DESC";
+
     @Query("SELECT r FROM Reservation r LEFT JOIN FETCH r.slots WHERE r.user.id = :userId ")
     List<Reservation> findByUserId(Long userId);
 
@@ -27,10 +46,19 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     @Query("SELECT r FROM Reservation r LEFT JOIN FETCH r.slots WHERE r.user.studentId = :studentId AND r.status = 'CONFIRMED' ")
     Optional<Reservation> findStartedByStudentId(@Param("studentId") Long studentId);
 
+    // Scan path: the student is resolved to a user id through the user cache, so no join on users is needed
+    @Query("SELECT r FROM Reservation r WHERE r.user.id = :userId AND r.status = 'CONFIRMED' ")
+    Optional<Reservation> findStartedByUserId(@Param("userId") Long userId);
+
     // Find Confirmed reservations by roomId
     @Query("SELECT r FROM Reservation r LEFT JOIN FETCH r.slots WHERE r.roomId = :roomId AND r.status = 'CONFIRMED' ")
     Optional<List<Reservation>> findStartedByRoomId(Integer roomId);
 
+    // Same listing as a flat projection: no slot join, nothing hydrated into the persistence context
+    @Query("SELECT new com.example.libraryweek1.reservation.dto.SlotsDto(r.roomId, r.deskId, r.startTime, r.endTime) " +
+            "FROM Reservation r WHERE r.roomId = :roomId AND r.status = 'CONFIRMED' ")
+    Optional<List<SlotsDto>> findStartedSlotDtosByRoomId(@Param("roomId") Integer roomId);
+
     @Query("SELECT r FROM Reservation r LEFT JOIN FETCH r.slots WHERE r.user.studentId = :studentId AND r.status = 'PENDING' ")
     Optional<Reservation> findPendingByStudentId(@Param("studentId") Long studentId);
 
@@ -41,6 +69,63 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     @Query("SELECT r FROM Reservation r WHERE r.status = 'CONFIRMED'")
     List<Reservation> findActiveReservations(@Param("now") LocalDateTime now);
 
+    // Room and student of every checked-in reservation, for rebuilding the occupancy counters
+    @Query("SELECT new com.example.libraryweek1.occupancy.dto.RoomOccupant(r.roomId, r.user.studentId) " +
+            "FROM Reservation r WHERE r.status = 'CONFIRMED'")
+    List<RoomOccupant> findConfirmedOccupants();
+
+    // Reservations still holding their desk range (range storage mode)
+    @Query("SELECT r FROM Reservation r WHERE r.status IN ('PENDING', 'CONFIRMED') AND r.startTime < :to AND r.endTime > :from")
+    List<Reservation> findHoldingReservationsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Started but not checked in yet (boundary sweep)
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.user WHERE r.status = 'PENDING' AND r.startTime <= :boundary AND r.endTime > :boundary")
+    List<Reservation> findUnconfirmedStartedBy(@Param("boundary") LocalDateTime boundary);
+
+    // The sweep's no-shows that are still PENDING, locked so exactly these are cancelled; a check-in
+    // that committed after the sweep's read is not returned, one still in flight waits for the sweep
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints({ @QueryHint(name = "javax.persistence.lock.timeout", value = "3000") })
+    @Query("SELECT r FROM Reservation r WHERE r.id IN :ids AND r.status = 'PENDING' ORDER BY r.id")
+    List<Reservation> findPendingByIdsForUpdate(@Param("ids") List<Long> ids);
+
+    // Guarded by status so a check-in that lands between the sweep's read and this update wins
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = com.example.libraryweek1.reservation.entity.ReservationStatus.CANCELLED, " +
+            "r.cancellationReason = :reason WHERE r.id IN :ids AND r.status = 'PENDING'")
+    int cancelPendingByIds(@Param("ids") List<Long> ids, @Param("reason") String reason);
+
+    @Modifying
+    @Query("UPDATE Reservation r SET r.status = com.example.libraryweek1.reservation.entity.ReservationStatus.COMPLETED " +
+            "WHERE r.status IN ('PENDING', 'CONFIRMED') AND r.endTime <= :boundary")
+    int completeEndedBy(@Param("boundary") LocalDateTime boundary);
+
+    // Archival: finished reservations past the retention, oldest ids first
+    @Query("SELECT r.id FROM Reservation r WHERE r.status IN ('COMPLETED', 'CANCELLED') AND r.endTime < :cutoff ORDER BY r.id")
+    List<Long> findFinishedIdsEndedBefore(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM Reservation r WHERE r.id IN :ids")
+    int deleteByIds(@Param("ids") List<Long> ids);
+
+    // Keyset pages of a user's / student's history, newest first, starting after (createdAt, id)
+    @Query(HISTORY_PROJECTION + "WHERE r.user.id = :userId " + AFTER_CURSOR + NEWEST_FIRST)
+    List<ReservationResponse> findHistoryPageByUserId(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") Long id, Limit limit);
+
+    @Query(HISTORY_PROJECTION + "WHERE r.user.studentId = :studentId " + AFTER_CURSOR + NEWEST_FIRST)
+    List<ReservationResponse> findHistoryPageByStudentId(@Param("studentId") Long studentId, @Param("createdAt") LocalDateTime createdAt,
+                                                         @Param("id") Long id, Limit limit);
+
+    // Whole history as a cursor-backed stream; must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "200"))
+    @Query(HISTORY_PROJECTION + "WHERE r.user.id = :userId " + NEWEST_FIRST)
+    Stream<ReservationResponse> streamHistoryByUserId(@Param("userId") Long userId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "200"))
+    @Query(HISTORY_PROJECTION + "WHERE r.user.studentId = :studentId " + NEWEST_FIRST)
+    Stream<ReservationResponse> streamHistoryByStudentId(@Param("studentId") Long studentId);
+
 
 
 } 
\ No newline at end of file
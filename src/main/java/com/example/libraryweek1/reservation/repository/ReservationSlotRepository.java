@@ -1,5 +1,7 @@
 package com.example.libraryweek1.reservation.repository;
 
+import com.example.libraryweek1.reservation.dto.SlotKey;
+import com.example.libraryweek1.reservation.dto.SlotsDto;
 import com.example.libraryweek1.reservation.entity.ReservationSlot;
 import io.lettuce.core.dynamic.annotation.Param;
 import jakarta.persistence.LockModeType;
@@ -17,6 +19,11 @@ public interface ReservationSlotRepository extends JpaRepository<ReservationSlot
         // Check if a slot exists to avoid UniqueConstraint violations during generation
         boolean existsByDeskIdAndSlotStart(Integer deskId, LocalDateTime slotStart);
 
+        // All existing slot keys of a day in one query, so generation can skip them without a lookup per slot
+        @Query("SELECT new com.example.libraryweek1.reservation.dto.SlotKey(r.deskId, r.slotStart) FROM ReservationSlot r " +
+                        "WHERE r.slotStart >= :dayStart AND r.slotStart < :dayEnd")
+        List<SlotKey> findSlotKeysBetween(@Param("dayStart") LocalDateTime dayStart, @Param("dayEnd") LocalDateTime dayEnd);
+
         // Efficiently delete old slots
         @Modifying
         @Query("DELETE FROM ReservationSlot s WHERE s.slotEnd < :cutoffTime")
@@ -33,6 +40,16 @@ public interface ReservationSlotRepository extends JpaRepository<ReservationSlot
         @Query("SELECT r FROM ReservationSlot r WHERE r.roomId = :roomId AND r.isBooked = false")
         Optional<List<ReservationSlot>> findSlotsByRoomId(@Param("roomId") Integer DeskId);
 
+        // Read-only listings select straight into the DTO, so no managed slot entities are hydrated
+        String FREE_SLOT_PROJECTION = "SELECT new com.example.libraryweek1.reservation.dto.SlotsDto(" +
+                        "r.roomId, r.deskId, r.slotStart, r.slotEnd) FROM ReservationSlot r ";
+
+        @Query(FREE_SLOT_PROJECTION + "WHERE r.deskId = :deskId AND r.isBooked = false")
+        Optional<List<SlotsDto>> findFreeSlotDtosByDeskId(@Param("deskId") Integer deskId);
+
+        @Query(FREE_SLOT_PROJECTION + "WHERE r.roomId = :roomId AND r.isBooked = false")
+        Optional<List<SlotsDto>> findFreeSlotDtosByRoomId(@Param("roomId") Integer roomId);
+
         @Query("SELECT r FROM ReservationSlot r WHERE r.deskId = :DeskId AND r.isBooked = true")
         Optional<List<ReservationSlot>> findFilledSlotsByDeskId(@Param("deskId") Integer DeskId);
 
@@ -44,12 +61,37 @@ public interface ReservationSlotRepository extends JpaRepository<ReservationSlot
         Optional<List<ReservationSlot>> findSlotsByRangeAndDeskId(@Param("deskId") Integer deskId,
                         @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
 
-        // 2PL finds available slots within a time range for a specific desk
+        // 2PL finds available slots within a time range for a specific desk.
+        // The slotStart bounds on both sides let Postgres prune day partitions when slots are partitioned.
         @Lock(LockModeType.PESSIMISTIC_WRITE)
         @QueryHints({ @QueryHint(name = "javax.persistence.lock.timeout", value = "3000") })
         @Query("SELECT r FROM ReservationSlot r WHERE r.deskId = :deskId AND (r.slotStart >= :startTime AND " +
-                        "r.slotEnd <= :endTime) AND r.isBooked = false")
+                        "r.slotStart < :endTime AND r.slotEnd <= :endTime) AND r.isBooked = false")
         Optional<List<ReservationSlot>> findPessimisticSlotsByRangeAndDeskId(@Param("deskId") Integer deskId,
                         @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
 
-}
\ No newline at end of file
+        // Optimistic claim: flips only still-free slots, the caller compares the row count with the slots it needs
+        @Modifying
+        @Query("UPDATE ReservationSlot r SET r.isBooked = true WHERE r.deskId = :deskId AND (r.slotStart >= :startTime AND " +
+                        "r.slotStart < :endTime AND r.slotEnd <= :endTime) AND r.isBooked = false")
+        int claimSlotsByRangeAndDeskId(@Param("deskId") Integer deskId,
+                        @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
+
+        // Slots claimed by the current transaction that are not linked to a reservation yet
+        @Query("SELECT r FROM ReservationSlot r WHERE r.deskId = :deskId AND (r.slotStart >= :startTime AND " +
+                        "r.slotStart < :endTime AND r.slotEnd <= :endTime) AND r.isBooked = true AND r.reservation IS NULL")
+        List<ReservationSlot> findClaimedSlotsByRangeAndDeskId(@Param("deskId") Integer deskId,
+                        @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime);
+
+        // Gives the slots of cancelled reservations back; only rows still linked to a reservation that is CANCELLED
+        @Modifying
+        @Query("UPDATE ReservationSlot r SET r.isBooked = false, r.reservation = null WHERE r.reservation.id IN " +
+                        "(SELECT res.id FROM Reservation res WHERE res.id IN :reservationIds AND res.status = 'CANCELLED')")
+        int releaseSlotsByReservationIds(@Param("reservationIds") List<Long> reservationIds);
+
+        // Unlinks slots from reservations that are being archived; the slot rows themselves age out with their day
+        @Modifying
+        @Query("UPDATE ReservationSlot r SET r.reservation = null WHERE r.reservation.id IN :reservationIds")
+        int detachSlotsByReservationIds(@Param("reservationIds") List<Long> reservationIds);
+
+}
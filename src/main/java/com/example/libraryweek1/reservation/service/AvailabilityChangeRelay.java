@@ -0,0 +1,126 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.reservation.event.DeskPresenceChangedEvent;
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotWindowChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.UUID;
+
+/**
+ * Keeps the per-node availability state of every node in step. The availability index, the ETag versions
+ * and the room streams only hear the events committed on their own node, so each change is also broadcast
+ * on a Redis pub/sub channel after commit and applied to those three on the other nodes. Shared state in
+ * Redis (occupancy) is not replayed, the node that made the change already updated it. A node that misses
+ * messages while Redis is down serves stale free slots until its next index rebuild.
+ */
+@Slf4j
+@Component
+public class AvailabilityChangeRelay implements MessageListener {
+
+    private static final String CHANNEL = "availability:changes";
+
+    private final DeskAvailabilityIndex availabilityIndex;
+    private final AvailabilityVersionTracker versionTracker;
+    private final AvailabilityStreamBus streamBus;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    // Redis delivers a node's own messages back to it; those changes are applied already
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public AvailabilityChangeRelay(DeskAvailabilityIndex availabilityIndex,
+                                   AvailabilityVersionTracker versionTracker,
+                                   AvailabilityStreamBus streamBus,
+                                   @Qualifier("activeUsersRedisTemplate") StringRedisTemplate redisTemplate,
+                                   ObjectMapper objectMapper,
+                                   RedisMessageListenerContainer listenerContainer) {
+        this.availabilityIndex = availabilityIndex;
+        this.versionTracker = versionTracker;
+        this.streamBus = streamBus;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSlotsChanged(SlotsChangedEvent event) {
+        broadcast(new AvailabilityChange(nodeId, event, null, null, null));
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationStatusChanged(ReservationStatusChangedEvent event) {
+        broadcast(new AvailabilityChange(nodeId, null, event, null, null));
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSlotWindowChanged(SlotWindowChangedEvent event) {
+        broadcast(new AvailabilityChange(nodeId, null, null, event, null));
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeskPresenceChanged(DeskPresenceChangedEvent event) {
+        broadcast(new AvailabilityChange(nodeId, null, null, null, event));
+    }
+
+    // Same order as the local listeners: the index first, so a new ETag never labels stale data
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        AvailabilityChange change;
+        try {
+            change = objectMapper.readValue(message.getBody(), AvailabilityChange.class);
+        } catch (JacksonException e) {
+            log.warn("Ignoring unreadable availability change", e);
+            return;
+        }
+        if (nodeId.equals(change.node())) {
+            return;
+        }
+        if (change.slots() != null) {
+            availabilityIndex.onSlotsChanged(change.slots());
+            versionTracker.onSlotsChanged(change.slots());
+            streamBus.onSlotsChanged(change.slots());
+        }
+        if (change.status() != null) {
+            versionTracker.onReservationStatusChanged(change.status());
+        }
+        if (change.window() != null) {
+            availabilityIndex.onSlotWindowChanged(change.window());
+            versionTracker.onSlotWindowChanged(change.window());
+        }
+        if (change.presence() != null) {
+            streamBus.onDeskPresenceChanged(change.presence());
+        }
+    }
+
+    // --- Helper Logic ---
+    private void broadcast(AvailabilityChange change) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(change));
+        } catch (DataAccessException e) {
+            log.warn("Could not broadcast availability change, other nodes catch up on their next index rebuild", e);
+        }
+    }
+
+    // Exactly one of the events is set
+    record AvailabilityChange(String node, SlotsChangedEvent slots, ReservationStatusChangedEvent status,
+                              SlotWindowChangedEvent window, DeskPresenceChangedEvent presence) {
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.StreamProperties;
+import com.example.libraryweek1.reservation.dto.AvailabilityDelta;
+import com.example.libraryweek1.reservation.dto.AvailabilityDeltaType;
+import com.example.libraryweek1.reservation.event.DeskPresenceChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process fan-out of committed availability changes to per-room SSE connections.
+ * Every connection owns a small bounded queue drained by its own virtual thread, so publishing never
+ * blocks on a client socket. A connection whose queue overflows is dropped; the client reconnects and
+ * refetches the room (cheap with the availability ETags) instead of the bus buffering for it.
+ */
+@Slf4j
+@Component
+public class AvailabilityStreamBus {
+
+    private final StreamProperties streamProperties;
+    private final Map<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Counter droppedCounter;
+
+    public AvailabilityStreamBus(StreamProperties streamProperties, MeterRegistry meterRegistry) {
+        this.streamProperties = streamProperties;
+        this.droppedCounter = Counter.builder("reservation.stream.dropped")
+                .description("SSE connections dropped because they fell behind")
+                .register(meterRegistry);
+        Gauge.builder("reservation.stream.connections", connections, AtomicInteger::get)
+                .description("Open availability SSE connections")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(Integer roomId) {
+        return register(roomId, new SseEmitter(streamProperties.getTimeout().toMillis()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSlotsChanged(SlotsChangedEvent event) {
+        publish(new AvailabilityDelta(event.booked() ? AvailabilityDeltaType.SLOT_BOOKED : AvailabilityDeltaType.SLOT_FREED,
+                event.roomId(), event.deskId(), event.startTime(), event.endTime()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeskPresenceChanged(DeskPresenceChangedEvent event) {
+        publish(new AvailabilityDelta(event.present() ? AvailabilityDeltaType.CHECK_IN : AvailabilityDeltaType.CHECK_OUT,
+                event.roomId(), event.deskId(), null, null));
+    }
+
+    public void publish(AvailabilityDelta delta) {
+        Set<Subscriber> roomSubscribers = subscribers.get(delta.roomId());
+        if (roomSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : roomSubscribers) {
+            if (!subscriber.queue.offer(delta)) {
+                droppedCounter.increment();
+                log.info("Dropping slow availability stream subscriber for room {}", delta.roomId());
+                subscriber.close();
+            }
+        }
+    }
+
+    int subscriberCount(Integer roomId) {
+        Set<Subscriber> roomSubscribers = subscribers.get(roomId);
+        return roomSubscribers == null ? 0 : roomSubscribers.size();
+    }
+
+    // Package-private so tests can hand in an emitter they control
+    SseEmitter register(Integer roomId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(roomId, emitter, new ArrayBlockingQueue<>(streamProperties.getQueueCapacity()));
+        connections.incrementAndGet();
+        // Added inside compute, atomically with close() dropping the room's set once it is empty; adding to a
+        // set fetched with computeIfAbsent could land in one that was just unmapped and never be published to
+        subscribers.compute(roomId, (id, roomSubscribers) -> {
+            Set<Subscriber> room = roomSubscribers == null ? ConcurrentHashMap.newKeySet() : roomSubscribers;
+            room.add(subscriber);
+            return room;
+        });
+        // Wired only once the subscriber is registered, so a callback firing right away still unregisters it
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        subscriber.drainer = Thread.ofVirtual().name("availability-stream-" + roomId).start(subscriber::drain);
+        if (subscriber.closed.get()) {
+            // Closed before the drainer was assigned, so close() could not interrupt it
+            subscriber.drainer.interrupt();
+        }
+        return emitter;
+    }
+
+    // --- Helper Logic ---
+    private final class Subscriber {
+        private final Integer roomId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<AvailabilityDelta> queue;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile Thread drainer;
+
+        private Subscriber(Integer roomId, SseEmitter emitter, BlockingQueue<AvailabilityDelta> queue) {
+            this.roomId = roomId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+
+        private void drain() {
+            long heartbeatMillis = streamProperties.getHeartbeatInterval().toMillis();
+            try {
+                while (!closed.get()) {
+                    AvailabilityDelta delta = queue.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                    if (delta == null) {
+                        emitter.send(SseEmitter.event().comment("keep-alive"));
+                    } else {
+                        emitter.send(SseEmitter.event().name(delta.type().name()).data(delta));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                // Client went away or the emitter already completed
+                log.debug("Availability stream for room {} closed: {}", roomId, e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        private void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            subscribers.computeIfPresent(roomId, (id, roomSubscribers) -> {
+                roomSubscribers.remove(this);
+                return roomSubscribers.isEmpty() ? null : roomSubscribers;
+            });
+            connections.decrementAndGet();
+            queue.clear();
+            Thread thread = drainer;
+            if (thread != null && thread != Thread.currentThread()) {
+                thread.interrupt();
+            }
+            emitter.complete();
+        }
+    }
+}
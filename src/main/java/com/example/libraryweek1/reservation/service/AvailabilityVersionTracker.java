@@ -0,0 +1,77 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotWindowChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic availability versions per desk and per room, used as ETags by the polling endpoints.
+ * A tag is "generation.version": the version moves when a desk/room changes, the generation when
+ * a change can touch every desk (new slot day, set-based completion). The generation starts at the
+ * boot time, so tags issued before a restart never match again.
+ * Bumps run after commit and after the availability index has applied the same event, so a tag is
+ * never handed out for data older than it. Changes committed on other nodes arrive through
+ * {@link AvailabilityChangeRelay}; tags are per node, so a client moving between nodes refetches once.
+ */
+@Component
+public class AvailabilityVersionTracker {
+
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+    private final Map<Integer, AtomicLong> deskVersions = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicLong> roomVersions = new ConcurrentHashMap<>();
+
+    public String deskTag(Integer deskId) {
+        return tag(deskVersions, deskId);
+    }
+
+    public String roomTag(Integer roomId) {
+        return tag(roomVersions, roomId);
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSlotsChanged(SlotsChangedEvent event) {
+        bump(event.roomId(), event.deskId());
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReservationStatusChanged(ReservationStatusChangedEvent event) {
+        if (event.roomId() == null) {
+            generation.incrementAndGet();
+            return;
+        }
+        bump(event.roomId(), event.deskId());
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSlotWindowChanged(SlotWindowChangedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    // --- Helper Logic ---
+    private void bump(Integer roomId, Integer deskId) {
+        if (deskId != null) {
+            deskVersions.computeIfAbsent(deskId, id -> new AtomicLong()).incrementAndGet();
+        }
+        if (roomId != null) {
+            roomVersions.computeIfAbsent(roomId, id -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private String tag(Map<Integer, AtomicLong> versions, Integer id) {
+        // Read the generation first: a concurrent generation bump can only make the tag look older
+        long currentGeneration = generation.get();
+        AtomicLong version = versions.get(id);
+        return currentGeneration + "." + (version == null ? 0 : version.get());
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.AdmissionProperties;
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded admission queue in front of the booking transaction. At most {@code maxConcurrent} bookings
+ * run at once (sized to the connection pool); others wait on a fair semaphore. Requests are shed with 503
+ * when the queue is full and with 429 when no permit frees up within {@code admissionTimeout}.
+ * Bookings are admitted only once they hold their desk in the {@link DeskBookingSequencer}, so requests
+ * piling up on one popular desk never tie up the permits of other desks.
+ * Waiting is cheap because request threads are virtual.
+ */
+@Component
+public class BookingAdmissionQueue {
+
+    private final AdmissionProperties admissionProperties;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter queueFullCounter;
+    private final Counter timedOutCounter;
+
+    public BookingAdmissionQueue(AdmissionProperties admissionProperties, MeterRegistry meterRegistry) {
+        this.admissionProperties = admissionProperties;
+        this.permits = new Semaphore(admissionProperties.getMaxConcurrent(), true);
+        this.waitTimer = Timer.builder("reservation.admission.wait")
+                .description("Time spent waiting for a booking permit")
+                .register(meterRegistry);
+        this.queueFullCounter = Counter.builder("reservation.admission.rejected")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.timedOutCounter = Counter.builder("reservation.admission.rejected")
+                .tag("reason", "timeout")
+                .register(meterRegistry);
+        Gauge.builder("reservation.admission.queue.depth", waiting, AtomicInteger::get)
+                .description("Booking requests waiting for admission")
+                .register(meterRegistry);
+        Gauge.builder("reservation.admission.in.flight", this, queue -> queue.getInFlight())
+                .description("Bookings currently admitted")
+                .register(meterRegistry);
+    }
+
+    public <T> T admit(Supplier<T> booking) {
+        if (waiting.incrementAndGet() > admissionProperties.getMaxWaiting()) {
+            waiting.decrementAndGet();
+            queueFullCounter.increment();
+            throw new AdmissionRejectedException("Booking Queue Is Full, Please Retry",
+                    HttpStatus.SERVICE_UNAVAILABLE, admissionProperties.getRetryAfter());
+        }
+        long waitStart = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(admissionProperties.getAdmissionTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            timedOutCounter.increment();
+            throw new AdmissionRejectedException("Too Many Booking Requests, Please Retry",
+                    HttpStatus.TOO_MANY_REQUESTS, admissionProperties.getRetryAfter());
+        }
+        try {
+            return booking.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public int getInFlight() {
+        return admissionProperties.getMaxConcurrent() - permits.availablePermits();
+    }
+}
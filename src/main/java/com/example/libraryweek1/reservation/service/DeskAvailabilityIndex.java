@@ -0,0 +1,234 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.config.ReservationProperties.StorageMode;
+import com.example.libraryweek1.reservation.dto.SlotsDto;
+import com.example.libraryweek1.reservation.entity.ReservationSlot;
+import com.example.libraryweek1.reservation.event.SlotWindowChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.OPENING_TIME;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.SLOTS_PER_DAY;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.SLOT_DURATION_MINUTES;
+
+/**
+ * In-memory availability index: one 16-bit mask per desk per day, bit i set when the
+ * half-hour slot starting at OPENING_TIME + i * 30min is free.
+ * Built after startup slot population and kept in sync with committed bookings/cancellations,
+ * so free-slot queries are answered without touching Postgres. Changes committed on other nodes
+ * arrive through {@link AvailabilityChangeRelay}.
+ */
+@Slf4j
+@Component
+public class DeskAvailabilityIndex {
+
+    private final ReservationSlotRepository slotRepository;
+    private final RangeReservationStore rangeReservationStore;
+    private final ReservationProperties reservationProperties;
+    private final TransactionTemplate readOnlyTransaction;
+
+    // Updates take the read lock (they are atomic per desk/day), rebuilds take the write lock
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    private volatile Map<Integer, DeskDays> desks = Map.of();
+    private volatile Map<Integer, TreeSet<Integer>> roomDesks = Map.of();
+    private volatile boolean ready = false;
+
+    public DeskAvailabilityIndex(ReservationSlotRepository slotRepository,
+                                 RangeReservationStore rangeReservationStore,
+                                 ReservationProperties reservationProperties,
+                                 PlatformTransactionManager transactionManager) {
+        this.slotRepository = slotRepository;
+        this.rangeReservationStore = rangeReservationStore;
+        this.reservationProperties = reservationProperties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<SlotsDto> getFreeSlots(Integer deskId) {
+        DeskDays deskDays = desks.get(deskId);
+        if (deskDays == null) {
+            return List.of();
+        }
+        List<SlotsDto> freeSlots = new ArrayList<>();
+        deskDays.freeMasks().forEach((date, mask) -> appendFreeSlots(freeSlots, deskDays.roomId(), deskId, date, mask));
+        return freeSlots;
+    }
+
+    public List<SlotsDto> getFreeSlotsRoom(Integer roomId) {
+        TreeSet<Integer> deskIds = roomDesks.get(roomId);
+        if (deskIds == null) {
+            return List.of();
+        }
+        List<SlotsDto> freeSlots = new ArrayList<>();
+        deskIds.forEach(deskId -> freeSlots.addAll(getFreeSlots(deskId)));
+        return freeSlots;
+    }
+
+    /**
+     * Free-slot masks of every desk in the room for {@code days} days from {@code from}, keyed by desk id in
+     * ascending order. Days the index does not hold are 0 (nothing bookable).
+     */
+    public Map<Integer, int[]> getRoomFreeMasks(Integer roomId, LocalDate from, int days) {
+        Map<Integer, int[]> roomMasks = new TreeMap<>();
+        TreeSet<Integer> deskIds = roomDesks.get(roomId);
+        if (deskIds == null) {
+            return roomMasks;
+        }
+        for (Integer deskId : deskIds) {
+            ConcurrentSkipListMap<LocalDate, Integer> freeMasks = desks.get(deskId).freeMasks();
+            int[] deskMasks = new int[days];
+            for (int day = 0; day < days; day++) {
+                deskMasks[day] = freeMasks.getOrDefault(from.plusDays(day), 0);
+            }
+            roomMasks.put(deskId, deskMasks);
+        }
+        return roomMasks;
+    }
+
+    /**
+     * Desks in the room whose free slots fully cover [startTime, endTime), best fit first:
+     * the desk whose enclosing free run is the shortest, so long free runs stay available
+     * for long bookings. Ties go to the lower desk id.
+     */
+    public List<Integer> findCandidateDesks(Integer roomId, LocalDateTime startTime, LocalDateTime endTime) {
+        TreeSet<Integer> deskIds = roomDesks.get(roomId);
+        int bits = rangeMask(startTime, endTime);
+        if (deskIds == null || bits == 0 || !startTime.toLocalDate().equals(endTime.toLocalDate())) {
+            return List.of();
+        }
+        LocalDate date = startTime.toLocalDate();
+        Map<Integer, Integer> runLengths = new HashMap<>();
+        for (Integer deskId : deskIds) {
+            Integer mask = desks.get(deskId).freeMasks().get(date);
+            if (mask != null && (mask & bits) == bits) {
+                runLengths.put(deskId, enclosingRunLength(mask, slotIndex(startTime), slotIndex(endTime)));
+            }
+        }
+        return runLengths.keySet().stream()
+                .sorted(Comparator.comparing((Integer deskId) -> runLengths.get(deskId)).thenComparing(deskId -> deskId))
+                .toList();
+    }
+
+    // Applied before AvailabilityVersionTracker bumps the version, so a new ETag never labels stale data
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSlotsChanged(SlotsChangedEvent event) {
+        DeskDays deskDays = desks.get(event.deskId());
+        if (deskDays == null || event.startTime() == null || event.endTime() == null) {
+            return;
+        }
+        int bits = rangeMask(event.startTime(), event.endTime());
+        rebuildLock.readLock().lock();
+        try {
+            deskDays.freeMasks().computeIfPresent(event.startTime().toLocalDate(),
+                    (date, mask) -> event.booked() ? mask & ~bits : mask | bits);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSlotWindowChanged(SlotWindowChangedEvent event) {
+        rebuild();
+    }
+
+    public void rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            List<ReservationSlot> slots = readOnlyTransaction.execute(status ->
+                    reservationProperties.getStorage() == StorageMode.RANGE
+                            ? rangeReservationStore.findWindowSlots()
+                            : slotRepository.findAll());
+            Map<Integer, DeskDays> newDesks = new HashMap<>();
+            Map<Integer, TreeSet<Integer>> newRoomDesks = new HashMap<>();
+            for (ReservationSlot slot : slots) {
+                DeskDays deskDays = newDesks.computeIfAbsent(slot.getDeskId(),
+                        deskId -> new DeskDays(slot.getRoomId(), new ConcurrentSkipListMap<>()));
+                int bit = slot.isBooked() ? 0 : rangeMask(slot.getSlotStart(), slot.getSlotEnd());
+                deskDays.freeMasks().merge(slot.getSlotStart().toLocalDate(), bit, (a, b) -> a | b);
+                newRoomDesks.computeIfAbsent(slot.getRoomId(), roomId -> new TreeSet<>()).add(slot.getDeskId());
+            }
+            desks = newDesks;
+            roomDesks = newRoomDesks;
+            ready = true;
+            log.info("Availability index rebuilt: {} desks, {} slots", newDesks.size(), slots.size());
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    // --- Helper Logic ---
+    static int slotIndex(LocalDateTime time) {
+        return (int) (Duration.between(OPENING_TIME, time.toLocalTime()).toMinutes() / SLOT_DURATION_MINUTES);
+    }
+
+    static int rangeMask(LocalDateTime startTime, LocalDateTime endTime) {
+        int from = Math.max(slotIndex(startTime), 0);
+        int to = Math.min(slotIndex(endTime), SLOTS_PER_DAY);
+        if (to <= from) {
+            return 0;
+        }
+        return ((1 << (to - from)) - 1) << from;
+    }
+
+    // Length of the run of free bits around [from, to), which the caller knows is free
+    static int enclosingRunLength(int mask, int from, int to) {
+        int runStart = from;
+        while (runStart > 0 && (mask & (1 << (runStart - 1))) != 0) {
+            runStart--;
+        }
+        int runEnd = to;
+        while (runEnd < SLOTS_PER_DAY && (mask & (1 << runEnd)) != 0) {
+            runEnd++;
+        }
+        return runEnd - runStart;
+    }
+
+    private static void appendFreeSlots(List<SlotsDto> target, Integer roomId, Integer deskId, LocalDate date, int mask) {
+        LocalDateTime dayStart = LocalDateTime.of(date, OPENING_TIME);
+        for (int i = 0; i < SLOTS_PER_DAY; i++) {
+            if ((mask & (1 << i)) != 0) {
+                LocalDateTime slotStart = dayStart.plusMinutes((long) i * SLOT_DURATION_MINUTES);
+                target.add(SlotsDto.builder()
+                        .roomId(roomId)
+                        .deskId(deskId)
+                        .startTime(slotStart)
+                        .endTime(slotStart.plusMinutes(SLOT_DURATION_MINUTES))
+                        .build());
+            }
+        }
+    }
+
+    private record DeskDays(Integer roomId, ConcurrentSkipListMap<LocalDate, Integer> freeMasks) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.reservation.exception.ReservationNotAvailableException;
+import com.example.libraryweek1.reservation.exception.ResourceNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.DESK_IDS;
+
+/**
+ * Single-writer sequencer keyed by desk: at most one booking per desk is in flight inside this JVM.
+ * Callers queue on a fair in-memory lock BEFORE opening a transaction, so waiting bookings
+ * do not hold a Hikari connection. Bookings for different desks never contend. Locks exist only for
+ * the known desks, so a request naming an unknown desk is rejected instead of growing the lock set.
+ */
+@Component
+public class DeskBookingSequencer {
+
+    private final ReservationProperties reservationProperties;
+
+    // One lock per known desk, created up front; the desk set is small and fixed
+    private final Map<Integer, ReentrantLock> deskLocks = DESK_IDS.stream()
+            .collect(Collectors.toUnmodifiableMap(Function.identity(), id -> new ReentrantLock(true)));
+
+    public DeskBookingSequencer(ReservationProperties reservationProperties) {
+        this.reservationProperties = reservationProperties;
+    }
+
+    public <T> T runExclusively(Integer deskId, Supplier<T> booking) {
+        ReentrantLock lock = deskId == null ? null : deskLocks.get(deskId);
+        if (lock == null) {
+            throw new ResourceNotFoundException("Desk Not Found");
+        }
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(reservationProperties.getSequencerTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReservationNotAvailableException("Booking Interrupted While Waiting For Desk");
+        }
+        if (!acquired) {
+            throw new ReservationNotAvailableException("Desk Is Busy, Please Retry");
+        }
+        try {
+            return booking.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueLength(Integer deskId) {
+        ReentrantLock lock = deskId == null ? null : deskLocks.get(deskId);
+        return lock == null ? 0 : lock.getQueueLength();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.config.ReservationProperties.StorageMode;
+import com.example.libraryweek1.reservation.entity.Reservation;
+import com.example.libraryweek1.reservation.entity.ReservationSlot;
+import com.example.libraryweek1.reservation.exception.ReservationNotAvailableException;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.CLOSING_TIME;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.DAYS_TO_PREGENERATE;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.DESK_IDS;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.OPENING_TIME;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.SLOT_DURATION_MINUTES;
+
+/**
+ * Range storage mode: a booking is a single reservations row whose [start_time, end_time) range
+ * is guarded by a GiST exclusion constraint per desk, so Postgres rejects overlaps on insert.
+ * There is no slot table to pregenerate, lock or clean up.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RangeReservationStore {
+
+    // Postgres SQLState for exclusion_violation
+    private static final String EXCLUSION_VIOLATION = "23P01";
+
+    private final ReservationRepository reservationRepository;
+    private final ReservationProperties reservationProperties;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds the range column and the exclusion constraint on top of the Hibernate-generated table.
+     * Only reservations that still hold the desk (PENDING/CONFIRMED) take part in the constraint.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void createRangeConstraint() {
+        if (reservationProperties.getStorage() != StorageMode.RANGE) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS btree_gist");
+        jdbcTemplate.execute("ALTER TABLE reservations ADD COLUMN IF NOT EXISTS booked_range tsrange " +
+                "GENERATED ALWAYS AS (tsrange(start_time, end_time, '[)')) STORED");
+        jdbcTemplate.execute("ALTER TABLE reservations DROP CONSTRAINT IF EXISTS reservations_desk_range_excl");
+        jdbcTemplate.execute("ALTER TABLE reservations ADD CONSTRAINT reservations_desk_range_excl " +
+                "EXCLUDE USING gist (desk_id WITH =, booked_range WITH &&) " +
+                "WHERE (status IN ('PENDING', 'CONFIRMED'))");
+        log.info("Range storage mode: exclusion constraint on reservations(desk_id, booked_range) is in place.");
+    }
+
+    /**
+     * Inserts the reservation; an overlapping active booking on the same desk makes the insert fail.
+     */
+    public Reservation book(Reservation reservation) {
+        validateRange(reservation.getStartTime(), reservation.getEndTime());
+        try {
+            return reservationRepository.saveAndFlush(reservation);
+        } catch (DataIntegrityViolationException e) {
+            Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+            if (cause instanceof SQLException sqlException && EXCLUSION_VIOLATION.equals(sqlException.getSQLState())) {
+                throw new ReservationNotAvailableException("Requested Slots Are No Longer Available");
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Expands the bookable window into slot-shaped values (not persisted), marking the ones
+     * covered by an active reservation as booked.
+     */
+    public List<ReservationSlot> findWindowSlots() {
+        LocalDate today = LocalDate.now();
+        LocalDateTime windowStart = LocalDateTime.of(today, OPENING_TIME);
+        LocalDateTime windowEnd = LocalDateTime.of(today.plusDays(DAYS_TO_PREGENERATE - 1), CLOSING_TIME);
+        Map<Integer, List<Reservation>> holdingByDesk = reservationRepository
+                .findHoldingReservationsBetween(windowStart, windowEnd).stream()
+                .collect(Collectors.groupingBy(Reservation::getDeskId));
+
+        List<ReservationSlot> slots = new ArrayList<>();
+        for (int day = 0; day < DAYS_TO_PREGENERATE; day++) {
+            LocalDate date = today.plusDays(day);
+            for (Integer deskId : DESK_IDS) {
+                LocalDateTime slotStart = LocalDateTime.of(date, OPENING_TIME);
+                while (slotStart.isBefore(LocalDateTime.of(date, CLOSING_TIME))) {
+                    LocalDateTime slotEnd = slotStart.plusMinutes(SLOT_DURATION_MINUTES);
+                    slots.add(ReservationSlot.builder()
+                            .deskId(deskId)
+                            .roomId(deskId / 10)
+                            .slotStart(slotStart)
+                            .slotEnd(slotEnd)
+                            .isBooked(isHeld(holdingByDesk.getOrDefault(deskId, List.of()), slotStart, slotEnd))
+                            .build());
+                    slotStart = slotEnd;
+                }
+            }
+        }
+        return slots;
+    }
+
+    // --- Helper Logic ---
+    private void validateRange(LocalDateTime startTime, LocalDateTime endTime) {
+        LocalDate today = LocalDate.now();
+        boolean aligned = startTime.getMinute() % SLOT_DURATION_MINUTES == 0 && endTime.getMinute() % SLOT_DURATION_MINUTES == 0
+                && startTime.getSecond() == 0 && endTime.getSecond() == 0;
+        boolean withinDay = startTime.toLocalDate().equals(endTime.toLocalDate())
+                && !startTime.toLocalTime().isBefore(OPENING_TIME) && !endTime.toLocalTime().isAfter(CLOSING_TIME);
+        boolean withinWindow = !startTime.toLocalDate().isBefore(today)
+                && startTime.toLocalDate().isBefore(today.plusDays(DAYS_TO_PREGENERATE));
+        if (!startTime.isBefore(endTime) || !aligned || !withinDay || !withinWindow) {
+            throw new ReservationNotAvailableException("Requested Range Is Outside Bookable Slots");
+        }
+    }
+
+    private static boolean isHeld(List<Reservation> holding, LocalDateTime slotStart, LocalDateTime slotEnd) {
+        return holding.stream().anyMatch(reservation ->
+                reservation.getStartTime().isBefore(slotEnd) && reservation.getEndTime().isAfter(slotStart));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.ArchivalProperties;
+import com.example.libraryweek1.jobs.service.LeaseService;
+import com.example.libraryweek1.reservation.repository.ArchivedReservationRepository;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves finished reservations older than the retention into reservations_archive, so the hot
+ * reservations table (and the history queries that JOIN FETCH it) only holds recent rows.
+ * Works in bounded batches, each one its own transaction: copy, unlink slots, delete.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationArchivalService {
+
+    private final ReservationRepository reservationRepository;
+    private final ReservationSlotRepository slotRepository;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final ArchivalProperties archivalProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final LeaseService leaseService;
+
+    @Scheduled(cron = "0 30 3 * * *") // Off-peak, away from the midnight booking rush
+    public void archiveFinishedReservations() {
+        if (!archivalProperties.isEnabled()) {
+            return;
+        }
+        leaseService.runIfLeader("reservations:archive", this::archiveUntilExhausted);
+    }
+
+    // --- Helper Logic ---
+    private void archiveUntilExhausted() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(archivalProperties.getRetention());
+        int total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            total += moved;
+        } while (moved == archivalProperties.getBatchSize());
+        log.info("Archived {} finished reservations that ended before {}.", total, cutoff);
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Long> ids = reservationRepository.findFinishedIdsEndedBefore(cutoff, Limit.of(archivalProperties.getBatchSize()));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        archivedReservationRepository.archiveByIds(ids, LocalDateTime.now());
+        slotRepository.detachSlotsByReservationIds(ids);
+        reservationRepository.deleteByIds(ids);
+        return ids.size();
+    }
+}
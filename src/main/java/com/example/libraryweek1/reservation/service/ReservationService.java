@@ -1,10 +1,13 @@
 package com.example.libraryweek1.reservation.service;
 
+import com.example.libraryweek1.reservation.dto.ReservationHistoryPage;
 import com.example.libraryweek1.reservation.dto.ReservationRequest;
 import com.example.libraryweek1.reservation.dto.ReservationResponse;
+import com.example.libraryweek1.reservation.dto.RoomReservationRequest;
 import com.example.libraryweek1.reservation.dto.SlotsDto;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ReservationService {
     List<SlotsDto> getFreeSlots(Integer deskId);
@@ -15,9 +18,21 @@ public interface ReservationService {
 
     List<ReservationResponse> getReservationsByUserId(Long userId);
 
+    List<ReservationResponse> getReservationsByUserId(Long userId, boolean includeArchived);
+
+    ReservationHistoryPage getReservationHistoryByUserId(Long userId, String after, int limit, boolean includeArchived);
+
+    ReservationHistoryPage getReservationHistoryByStudentId(Long studentId, String after, int limit, boolean includeArchived);
+
+    void streamReservationHistoryByUserId(Long userId, boolean includeArchived, Consumer<ReservationResponse> sink);
+
+    void streamReservationHistoryByStudentId(Long studentId, boolean includeArchived, Consumer<ReservationResponse> sink);
+
     ReservationResponse cancelReservation(Long reservationId, String reason);
 
     void completeReservation(Long reservationId);
 
     ReservationResponse makeReservation(ReservationRequest reservationRequest);
+
+    ReservationResponse makeRoomReservation(RoomReservationRequest roomReservationRequest);
 }
@@ -0,0 +1,145 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.reservation.dto.DeskGridDto;
+import com.example.libraryweek1.reservation.dto.RoomGridDto;
+import com.example.libraryweek1.reservation.dto.SlotsDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.DAYS_TO_PREGENERATE;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.DESK_IDS;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.OPENING_TIME;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.SLOTS_PER_DAY;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.SLOT_DURATION_MINUTES;
+
+/**
+ * Room grid for the booking UI: every desk of a room with one free-slot bitmask per day, in the same
+ * layout as the availability index. Responses are encoded once per room version and served from a small
+ * cache, so repeated polls of an unchanged room cost a map lookup.
+ * <p>
+ * Binary layout (big-endian): format version (byte), room id (int), epoch day of the first day (int),
+ * days (byte), slots per day (byte), desk count (short), then per desk its id (int) followed by one mask
+ * per day of (slotsPerDay + 7) / 8 bytes.
+ */
+@Component
+public class RoomGridService {
+
+    public static final String BINARY_CONTENT_TYPE = "application/vnd.library.room-grid";
+    static final byte BINARY_FORMAT_VERSION = 1;
+    static final int MASK_BYTES = (SLOTS_PER_DAY + 7) / 8;
+    static final int HEADER_BYTES = 13;
+    private static final int CACHED_GRIDS = 256;
+
+    private final DeskAvailabilityIndex availabilityIndex;
+    private final ReservationService reservationService;
+    private final AvailabilityVersionTracker availabilityVersionTracker;
+    private final ObjectMapper objectMapper;
+    // Keyed by room version, so a change never needs an eviction; superseded grids age out
+    private final Cache<GridKey, EncodedGrid> grids = Caffeine.newBuilder().maximumSize(CACHED_GRIDS).build();
+
+    public RoomGridService(DeskAvailabilityIndex availabilityIndex,
+                           ReservationService reservationService,
+                           AvailabilityVersionTracker availabilityVersionTracker,
+                           ObjectMapper objectMapper) {
+        this.availabilityIndex = availabilityIndex;
+        this.reservationService = reservationService;
+        this.availabilityVersionTracker = availabilityVersionTracker;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Identifies the grid a request asks for, including the current room version. Cheap, so callers
+     * can answer If-None-Match from it before anything is encoded.
+     */
+    public GridKey key(Integer roomId, Integer days) {
+        int clampedDays = days == null ? DAYS_TO_PREGENERATE : Math.clamp(days, 1, DAYS_TO_PREGENERATE);
+        return new GridKey(roomId, LocalDate.now(), clampedDays, availabilityVersionTracker.roomTag(roomId));
+    }
+
+    public byte[] json(GridKey key) {
+        return grid(key).json();
+    }
+
+    public byte[] binary(GridKey key) {
+        return grid(key).binary();
+    }
+
+    public record GridKey(Integer roomId, LocalDate firstDay, int days, String version) {
+        public String etag(String representation) {
+            return version + "." + firstDay + "." + days + "." + representation;
+        }
+    }
+
+    // --- Helper Logic ---
+    private EncodedGrid grid(GridKey key) {
+        return grids.get(key, this::encode);
+    }
+
+    private EncodedGrid encode(GridKey key) {
+        Map<Integer, int[]> masks = availabilityIndex.isReady()
+                ? availabilityIndex.getRoomFreeMasks(key.roomId(), key.firstDay(), key.days())
+                : masksFromSlots(key);
+
+        List<DeskGridDto> desks = new ArrayList<>(masks.size());
+        masks.forEach((deskId, deskMasks) -> desks.add(new DeskGridDto(deskId, deskMasks)));
+        RoomGridDto dto = RoomGridDto.builder()
+                .roomId(key.roomId())
+                .firstDay(key.firstDay())
+                .days(key.days())
+                .openingTime(OPENING_TIME)
+                .slotMinutes(SLOT_DURATION_MINUTES)
+                .slotsPerDay(SLOTS_PER_DAY)
+                .desks(desks)
+                .build();
+        return new EncodedGrid(objectMapper.writeValueAsBytes(dto), encodeBinary(key, masks));
+    }
+
+    // Index not built yet: fold the room's free slots into masks, desks without free slots stay at 0
+    private Map<Integer, int[]> masksFromSlots(GridKey key) {
+        Map<Integer, int[]> masks = new TreeMap<>();
+        DESK_IDS.stream()
+                .filter(deskId -> deskId / 10 == key.roomId())
+                .forEach(deskId -> masks.put(deskId, new int[key.days()]));
+        for (SlotsDto slot : reservationService.getFreeSlotsRoom(key.roomId())) {
+            long day = ChronoUnit.DAYS.between(key.firstDay(), slot.getStartTime().toLocalDate());
+            if (day < 0 || day >= key.days()) {
+                continue;
+            }
+            masks.computeIfAbsent(slot.getDeskId(), deskId -> new int[key.days()])[(int) day]
+                    |= DeskAvailabilityIndex.rangeMask(slot.getStartTime(), slot.getEndTime());
+        }
+        return masks;
+    }
+
+    private static byte[] encodeBinary(GridKey key, Map<Integer, int[]> masks) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + masks.size() * (4 + key.days() * MASK_BYTES));
+        buffer.put(BINARY_FORMAT_VERSION)
+                .putInt(key.roomId())
+                .putInt((int) key.firstDay().toEpochDay())
+                .put((byte) key.days())
+                .put((byte) SLOTS_PER_DAY)
+                .putShort((short) masks.size());
+        masks.forEach((deskId, deskMasks) -> {
+            buffer.putInt(deskId);
+            for (int mask : deskMasks) {
+                for (int b = MASK_BYTES - 1; b >= 0; b--) {
+                    buffer.put((byte) (mask >>> (8 * b)));
+                }
+            }
+        });
+        return buffer.array();
+    }
+
+    private record EncodedGrid(byte[] json, byte[] binary) {
+    }
+}
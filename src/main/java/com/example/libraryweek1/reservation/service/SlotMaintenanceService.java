@@ -1,20 +1,33 @@
 package com.example.libraryweek1.reservation.service;
 
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.config.ReservationProperties.StorageMode;
+import com.example.libraryweek1.jobs.service.LeaseService;
+import com.example.libraryweek1.reservation.dto.SlotKey;
 import com.example.libraryweek1.reservation.entity.ReservationSlot;
+import com.example.libraryweek1.reservation.event.SlotWindowChangedEvent;
 import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 @RequiredArgsConstructor
@@ -22,13 +35,23 @@ import java.util.List;
 public class SlotMaintenanceService {
 
     private final ReservationSlotRepository slotRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReservationProperties reservationProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final SlotPartitionManager slotPartitionManager;
+    private final LeaseService leaseService;
+
+    // Startup population and the midnight run write the same slots, so they share one lease
+    private static final String GENERATE_LEASE = "slots:generate";
 
     // CONFIGURATION (Ideally move these to application.properties)
-    private static final int DAYS_TO_PREGENERATE = 5;
-    private static final LocalTime OPENING_TIME = LocalTime.of(9, 0);
-    private static final LocalTime CLOSING_TIME = LocalTime.of(17, 0);
-    private static final int SLOT_DURATION_MINUTES = 30;
-    private static final List<Integer> DESK_IDS = List.of(11, 12, 13, 14, 21, 22, 23, 24, 31, 32, 33, 34); // Example
+    public static final int DAYS_TO_PREGENERATE = 5;
+    public static final LocalTime OPENING_TIME = LocalTime.of(9, 0);
+    public static final LocalTime CLOSING_TIME = LocalTime.of(17, 0);
+    public static final int SLOT_DURATION_MINUTES = 30;
+    public static final int SLOTS_PER_DAY = (CLOSING_TIME.toSecondOfDay() - OPENING_TIME.toSecondOfDay()) / 60
+            / SLOT_DURATION_MINUTES; // 16 half-hour slots
+    public static final List<Integer> DESK_IDS = List.of(11, 12, 13, 14, 21, 22, 23, 24, 31, 32, 33, 34); // Example
                                                                                                            // desks
 
     /**
@@ -36,14 +59,18 @@ public class SlotMaintenanceService {
      * Generates slots for the next 5 days (Today + 4 days).
      */
     @EventListener(ApplicationReadyEvent.class)
-    @Transactional
     public void onStartup() {
         log.info("Application started. Checking and populating slots for the next {} days...", DAYS_TO_PREGENERATE);
 
         LocalDate today = LocalDate.now();
-        for (int i = 0; i < DAYS_TO_PREGENERATE; i++) {
-            generateSlotsForDate(today.plusDays(i));
+        if (usesSlotTable()) {
+            List<LocalDate> dates = windowFrom(today);
+            // Nodes starting together (or during the midnight run) wait for each other; the later ones find
+            // the window already filled
+            leaseService.runExclusively(GENERATE_LEASE, () -> generateSlotsForDates(dates));
         }
+        // Generation has committed (one transaction per room), the availability index can be rebuilt
+        eventPublisher.publishEvent(new SlotWindowChangedEvent(today));
 
         log.info("Startup slot population finished.");
     }
@@ -53,7 +80,6 @@ public class SlotMaintenanceService {
      * Populates the 5th day out (maintaining the sliding window).
      */
     @Scheduled(cron = "0 0 0 * * *") // Seconds Minutes Hours Day Month Year
-    @Transactional
     public void generateNewDaySlots() {
         // If today is Monday, we already have slots up to Friday.
         // We need to generate slots for Saturday (Today + 5 days logic depends on how
@@ -63,8 +89,17 @@ public class SlotMaintenanceService {
         // Strategy: Always ensure the day at index "DAYS_TO_PREGENERATE" exists.
         LocalDate targetDate = LocalDate.now().plusDays(DAYS_TO_PREGENERATE - 1); // e.g. Day 5
 
-        log.info("Midnight Worker: Generating slots for {}", targetDate);
-        generateSlotsForDate(targetDate);
+        if (usesSlotTable()) {
+            leaseService.runIfLeader(GENERATE_LEASE, () -> {
+                log.info("Midnight Worker: Generating slots for {}", targetDate);
+                if (slotPartitionManager.isEnabled()) {
+                    slotPartitionManager.ensurePartitions(LocalDate.now());
+                }
+                // The whole window, not just the new day: a room-day that failed earlier is filled in now
+                generateSlotsForDates(windowFrom(LocalDate.now()));
+            });
+        }
+        eventPublisher.publishEvent(new SlotWindowChangedEvent(targetDate));
     }
 
     /**
@@ -72,19 +107,83 @@ public class SlotMaintenanceService {
      * Deletes slots that ended before now.
      */
     @Scheduled(cron = "0 0 0 * * *")
-    @Transactional
     public void cleanupOldSlots() {
-        log.info("Midnight Worker: Cleaning up old slots...");
-
-        // Delete anything that ended before Now
-        slotRepository.deleteBySlotEndBefore(LocalDateTime.now());
+        // Only one node cleans up; the lease is taken before any transaction is opened
+        leaseService.runIfLeader("slots:cleanup", () -> transactionTemplate.executeWithoutResult(status -> {
+            log.info("Midnight Worker: Cleaning up old slots...");
+
+            if (slotPartitionManager.isEnabled()) {
+                // Whole days go away with their partition, no row deletes
+                int dropped = slotPartitionManager.dropPartitionsBefore(LocalDate.now());
+                log.info("Dropped {} expired slot partitions.", dropped);
+            } else if (usesSlotTable()) {
+                // Delete anything that ended before Now
+                slotRepository.deleteBySlotEndBefore(LocalDateTime.now());
+            }
+        }));
+        eventPublisher.publishEvent(new SlotWindowChangedEvent(LocalDate.now()));
 
         log.info("Old slots deleted.");
     }
 
     // --- Helper Logic ---
-    private void generateSlotsForDate(LocalDate date) {
-        List<ReservationSlot> slotsBatch = new ArrayList<>();
+    // Range storage keeps no slot rows; the window still slides, so the events above are published anyway
+    private boolean usesSlotTable() {
+        return reservationProperties.getStorage() != StorageMode.RANGE;
+    }
+
+    private static List<LocalDate> windowFrom(LocalDate today) {
+        List<LocalDate> dates = new ArrayList<>();
+        for (int i = 0; i < DAYS_TO_PREGENERATE; i++) {
+            dates.add(today.plusDays(i));
+        }
+        return dates;
+    }
+
+    /**
+     * One existence query per day, then the missing slots of each room and day are inserted in their
+     * own transaction on a virtual thread. Slot ids come from a pooled sequence, so the inserts go out
+     * in JDBC batches. A room-day that another instance filled concurrently fails on the unique
+     * constraint and rolls back on its own, without taking the room's other days with it.
+     */
+    private void generateSlotsForDates(List<LocalDate> dates) {
+        Map<LocalDate, Map<Integer, List<ReservationSlot>>> missing = new TreeMap<>();
+        for (LocalDate date : dates) {
+            Set<SlotKey> existing = new HashSet<>(slotRepository.findSlotKeysBetween(
+                    date.atStartOfDay(), date.plusDays(1).atStartOfDay()));
+            for (ReservationSlot slot : buildSlotsForDate(date)) {
+                if (!existing.contains(new SlotKey(slot.getDeskId(), slot.getSlotStart()))) {
+                    missing.computeIfAbsent(date, day -> new TreeMap<>())
+                            .computeIfAbsent(slot.getRoomId(), roomId -> new ArrayList<>())
+                            .add(slot);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            log.info("Slots for {} already exist. Skipping.", dates);
+            return;
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            missing.forEach((date, missingByRoom) -> missingByRoom.forEach((roomId, slots) ->
+                    executor.submit(() -> saveRoomSlots(roomId, date, slots))));
+        }
+    }
+
+    private void saveRoomSlots(Integer roomId, LocalDate date, List<ReservationSlot> slots) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> slotRepository.saveAll(slots));
+            log.info("Generated {} slots for room {} on {}", slots.size(), roomId, date);
+        } catch (DataIntegrityViolationException e) {
+            // Usually another instance filling the same day; the next startup or midnight run fills any gap
+            log.warn("Slots for room {} on {} were not saved: {}", roomId, date, e.getMostSpecificCause().getMessage());
+        } catch (RuntimeException e) {
+            log.error("Slot generation failed for room {} on {}", roomId, date, e);
+        }
+    }
+
+    private List<ReservationSlot> buildSlotsForDate(LocalDate date) {
+        List<ReservationSlot> slots = new ArrayList<>();
         LocalDateTime startTime = LocalDateTime.of(date, OPENING_TIME);
         LocalDateTime endTime = LocalDateTime.of(date, CLOSING_TIME);
 
@@ -95,34 +194,17 @@ public class SlotMaintenanceService {
             // Loop through time blocks (9:00 -> 17:00)
             while (currentSlotStart.isBefore(endTime)) {
                 LocalDateTime currentSlotEnd = currentSlotStart.plusMinutes(SLOT_DURATION_MINUTES);
-
-                // 1. Check if slot already exists (Idempotency)
-                // This prevents crashing if you restart the app multiple times in one day
-                if (!slotRepository.existsByDeskIdAndSlotStart(deskId, currentSlotStart)) {
-
-                    int roomId = deskId / 10;
-                    ReservationSlot newSlot = ReservationSlot.builder()
-                            .deskId(deskId)
-                            .roomId(roomId)
-                            .slotStart(currentSlotStart)
-                            .slotEnd(currentSlotEnd)
-                            .isBooked(false)
-                            .reservation(null) // Empty slot
-                            .build();
-
-                    slotsBatch.add(newSlot);
-                }
-
+                slots.add(ReservationSlot.builder()
+                        .deskId(deskId)
+                        .roomId(deskId / 10)
+                        .slotStart(currentSlotStart)
+                        .slotEnd(currentSlotEnd)
+                        .isBooked(false)
+                        .reservation(null) // Empty slot
+                        .build());
                 currentSlotStart = currentSlotEnd;
             }
         }
-
-        // Batch save for performance
-        if (!slotsBatch.isEmpty()) {
-            slotRepository.saveAll(slotsBatch);
-            log.info("Generated {} slots for date {}", slotsBatch.size(), date);
-        } else {
-            log.info("Slots for {} already exist. Skipping.", date);
-        }
+        return slots;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.config.ReservationProperties.StorageMode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.DAYS_TO_PREGENERATE;
+
+/**
+ * Day partitioning of reservation_slots (RANGE on slot_start, one partition per day).
+ * Expired days are detached and dropped instead of deleted row by row, so cleanup
+ * leaves no dead tuples or index bloat behind.
+ * Partitions are created one day ahead of the bookable window.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SlotPartitionManager {
+
+    private static final String TABLE = "reservation_slots";
+    private static final String LEGACY_TABLE = "reservation_slots_unpartitioned";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final ReservationProperties reservationProperties;
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isEnabled() {
+        return reservationProperties.isSlotPartitioning() && reservationProperties.getStorage() == StorageMode.SLOTS;
+    }
+
+    /**
+     * Replaces the Hibernate-generated table with a partitioned one on first start.
+     * The primary key has to contain the partition key, so it becomes (id, slot_start);
+     * the (desk_id, slot_end) unique constraint cannot be kept, (desk_id, slot_start) still guards duplicates.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void convertToPartitionedTable() {
+        if (!isEnabled()) {
+            return;
+        }
+        if (isPartitioned()) {
+            ensurePartitions(LocalDate.now());
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_TABLE);
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_TABLE + " INCLUDING DEFAULTS) " +
+                "PARTITION BY RANGE (slot_start)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, slot_start)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT reservation_slots_desk_start_uk " +
+                "UNIQUE (desk_id, slot_start)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT reservation_slots_reservation_fk " +
+                "FOREIGN KEY (reservation_id) REFERENCES reservations (id)");
+        ensurePartitions(LocalDate.now());
+        // Only rows of the current window are carried over, older days would be dropped at midnight anyway
+        int moved = jdbcTemplate.update("INSERT INTO " + TABLE + " SELECT * FROM " + LEGACY_TABLE +
+                " WHERE slot_start >= ?", LocalDate.now().atStartOfDay());
+        jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+        log.info("reservation_slots converted to a day-partitioned table, {} rows carried over.", moved);
+    }
+
+    /**
+     * Creates the partitions of the bookable window starting at {@code from}, plus one spare day.
+     */
+    public void ensurePartitions(LocalDate from) {
+        for (int day = 0; day <= DAYS_TO_PREGENERATE; day++) {
+            LocalDate date = from.plusDays(day);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(date) + " PARTITION OF " + TABLE +
+                    " FOR VALUES FROM ('" + date.atStartOfDay() + "') TO ('" + date.plusDays(1).atStartOfDay() + "')");
+        }
+    }
+
+    /**
+     * Detaches and drops every day partition before {@code cutoff}.
+     */
+    public int dropPartitionsBefore(LocalDate cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ?", String.class, TABLE);
+        int dropped = 0;
+        for (String partition : partitions) {
+            LocalDate date = partitionDate(partition);
+            if (date != null && date.isBefore(cutoff)) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    // --- Helper Logic ---
+    private boolean isPartitioned() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE relname = ? AND relnamespace = 'public'::regnamespace",
+                String.class, TABLE);
+        return kinds.contains("p");
+    }
+
+    static String partitionName(LocalDate date) {
+        return TABLE + "_p" + date.format(SUFFIX);
+    }
+
+    static LocalDate partitionDate(String partitionName) {
+        String prefix = TABLE + "_p";
+        if (!partitionName.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partitionName.substring(prefix.length()), SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
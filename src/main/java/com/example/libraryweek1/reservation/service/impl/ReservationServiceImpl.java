@@ -1,68 +1,116 @@
 package com.example.libraryweek1.reservation.service.impl;
 
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.config.ReservationProperties.BookingMode;
+import com.example.libraryweek1.config.ReservationProperties.JobsMode;
+import com.example.libraryweek1.config.ReservationProperties.StorageMode;
 import com.example.libraryweek1.jobs.service.JobService;
+import com.example.libraryweek1.reservation.dto.HistoryCursor;
+import com.example.libraryweek1.reservation.dto.ReservationHistoryPage;
 import com.example.libraryweek1.reservation.dto.ReservationRequest;
 import com.example.libraryweek1.reservation.dto.ReservationResponse;
+import com.example.libraryweek1.reservation.dto.RoomReservationRequest;
 import com.example.libraryweek1.reservation.dto.SlotsDto;
 import com.example.libraryweek1.reservation.entity.Reservation;
 import com.example.libraryweek1.reservation.entity.ReservationSlot;
 import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
 import com.example.libraryweek1.reservation.exception.NotConsecutiveSlotsException;
+import com.example.libraryweek1.reservation.exception.ReservationNotAvailableException;
 import com.example.libraryweek1.reservation.exception.ResourceNotFoundException;
 import com.example.libraryweek1.mapper.DataMapper;
+import com.example.libraryweek1.reservation.repository.ArchivedReservationRepository;
 import com.example.libraryweek1.reservation.repository.ReservationRepository;
 import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import com.example.libraryweek1.reservation.service.BookingAdmissionQueue;
+import com.example.libraryweek1.reservation.service.DeskAvailabilityIndex;
+import com.example.libraryweek1.reservation.service.DeskBookingSequencer;
+import com.example.libraryweek1.reservation.service.RangeReservationStore;
 import com.example.libraryweek1.reservation.service.ReservationService;
+import com.example.libraryweek1.reservation.service.SlotMaintenanceService;
 import com.example.libraryweek1.user.entity.User;
-import com.example.libraryweek1.user.repository.UserRepository;
+import com.example.libraryweek1.user.service.UserLookupService;
+import com.example.libraryweek1.utilization.service.UtilizationService;
 import lombok.RequiredArgsConstructor;
 import org.jobrunr.scheduling.JobScheduler;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class ReservationServiceImpl implements ReservationService {
 
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    // ORDER BY createdAt DESC, id DESC as Postgres sorts it (nulls first when descending)
+    private static final Comparator<ReservationResponse> HISTORY_ORDER = Comparator
+            .comparing(ReservationResponse::getCreatedAt, Comparator.nullsLast(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(ReservationResponse::getId)
+            .reversed();
+
     private final ReservationRepository reservationRepository;
     private final ReservationSlotRepository reservationSlotRepository;
     private final DataMapper dataMapper;
-    private final UserRepository userRepository;
+    private final UserLookupService userLookupService;
     private final JobScheduler jobScheduler;
     private final JobService jobService;
+    private final DeskAvailabilityIndex availabilityIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReservationProperties reservationProperties;
+    private final DeskBookingSequencer bookingSequencer;
+    private final BookingAdmissionQueue bookingAdmissionQueue;
+    private final TransactionTemplate transactionTemplate;
+    private final RangeReservationStore rangeReservationStore;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final UtilizationService utilizationService;
 
     @Override
+    @Transactional(readOnly = true)
     public List<SlotsDto> getFreeSlots(Integer deskId){
-        List<ReservationSlot> freeSlots = reservationSlotRepository.findSlotsByDeskId(deskId)
+        if (availabilityIndex.isReady()) {
+            return availabilityIndex.getFreeSlots(deskId);
+        }
+        if (reservationProperties.getStorage() == StorageMode.RANGE) {
+            return freeWindowSlots(slot -> deskId.equals(slot.getDeskId()));
+        }
+        return reservationSlotRepository.findFreeSlotDtosByDeskId(deskId)
                 .orElseThrow(() -> new ResourceNotFoundException("No Available Slots"));
-
-        return freeSlots.stream()
-                .map((slot) -> dataMapper.toSlotsDto(slot))
-                .toList(); // Converts the stream back to a List
     }
 
 
     @Override
+    @Transactional(readOnly = true)
     public List<SlotsDto> getFreeSlotsRoom(Integer roomId) {
-        List<ReservationSlot> freeSlots = reservationSlotRepository.findSlotsByRoomId(roomId)
+        if (availabilityIndex.isReady()) {
+            return availabilityIndex.getFreeSlotsRoom(roomId);
+        }
+        if (reservationProperties.getStorage() == StorageMode.RANGE) {
+            return freeWindowSlots(slot -> roomId.equals(slot.getRoomId()));
+        }
+        return reservationSlotRepository.findFreeSlotDtosByRoomId(roomId)
                 .orElseThrow(() -> new ResourceNotFoundException("No Available Slots"));
-
-        return freeSlots.stream()
-                .map((slot) -> dataMapper.toSlotsDto(slot))
-                .toList(); // Converts the stream back to a List
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<SlotsDto> getActiveReservations(Integer roomId) {
-        List<Reservation> activeSlots = reservationRepository.findStartedByRoomId(roomId)
+        return reservationRepository.findStartedSlotDtosByRoomId(roomId)
                 .orElseThrow(() -> new ResourceNotFoundException("No Active Reservations"));
-
-        return activeSlots.stream()
-                .map((reservation) -> dataMapper.toSlotsDto(reservation))
-                .toList(); // Converts the stream back to a List
     }
 
     @Override
@@ -71,9 +119,30 @@ public class ReservationServiceImpl implements ReservationService {
         Reservation reservation = reservationRepository.findById(reservationId)
                 .orElseThrow(() -> new ResourceNotFoundException("Reservation Not Found"));
 
+        boolean alreadyCancelled = reservation.getStatus() == ReservationStatus.CANCELLED;
+        boolean checkedIn = reservation.getStatus() == ReservationStatus.CONFIRMED;
+        boolean holding = reservation.getStatus() == ReservationStatus.PENDING || checkedIn;
         reservation.setStatus(ReservationStatus.CANCELLED);
         reservation.setCancellationReason(reason);
+        // Give the slots back so they can be booked again
+        reservation.getSlots().forEach(slot -> {
+            slot.setBooked(false);
+            slot.setReservation(null);
+        });
+        reservation.getSlots().clear();
         Reservation updatedReservation = reservationRepository.save(reservation);
+        if (holding) {
+            utilizationService.recordCancellation(reservation.getRoomId(), reservation.getStartTime(),
+                    reservation.getEndTime(), Reservation.NO_SHOW_REASON.equals(reason));
+        }
+        if (!alreadyCancelled) {
+            eventPublisher.publishEvent(new SlotsChangedEvent(reservation.getRoomId(), reservation.getDeskId(),
+                    reservation.getStartTime(), reservation.getEndTime(), false));
+        }
+        if (checkedIn) {
+            eventPublisher.publishEvent(new ReservationStatusChangedEvent(reservation.getRoomId(), reservation.getDeskId(),
+                    studentIdOf(reservation), ReservationStatus.CONFIRMED, ReservationStatus.CANCELLED));
+        }
 
         return dataMapper.toReservationResponse(updatedReservation);
     }
@@ -84,8 +153,16 @@ public class ReservationServiceImpl implements ReservationService {
         Reservation reservation = reservationRepository.findById(reservationId)
                 .orElseThrow(() -> new ResourceNotFoundException("Reservation Not Found"));
 
+        ReservationStatus previousStatus = reservation.getStatus();
+        boolean holding = previousStatus == ReservationStatus.PENDING || previousStatus == ReservationStatus.CONFIRMED;
         reservation.setStatus(ReservationStatus.COMPLETED);
         Reservation updatedReservation = reservationRepository.save(reservation);
+        if (holding) {
+            utilizationService.recordCompletion(reservation.getRoomId(), reservation.getStartTime(), reservation.getEndTime());
+        }
+        eventPublisher.publishEvent(new ReservationStatusChangedEvent(reservation.getRoomId(), reservation.getDeskId(),
+                previousStatus == ReservationStatus.CONFIRMED ? studentIdOf(reservation) : null, previousStatus,
+                ReservationStatus.COMPLETED));
 
         dataMapper.toReservationResponse(updatedReservation);
     }
@@ -98,17 +175,154 @@ public class ReservationServiceImpl implements ReservationService {
                 .toList();
     }
 
+    @Override
+    public List<ReservationResponse> getReservationsByUserId(Long userId, boolean includeArchived) {
+        List<ReservationResponse> reservations = getReservationsByUserId(userId);
+        if (!includeArchived) {
+            return reservations;
+        }
+        // Older history lives in the archive table, only read when the caller asks for it
+        List<ReservationResponse> history = new ArrayList<>(reservations);
+        archivedReservationRepository.findByUserIdOrderByStartTimeDesc(userId).stream()
+                .map(dataMapper::toReservationResponse)
+                .forEach(history::add);
+        return history;
+    }
+
+
+    // With includeArchived, history spans the live table and the archive: both are read with the same keyset
+    // and merged. The live table is always read first, so a row archived in between shows up in both reads
+    // (and is dropped from the archive side) rather than in neither.
+    @Override
+    public ReservationHistoryPage getReservationHistoryByUserId(Long userId, String after, int limit, boolean includeArchived) {
+        HistoryCursor cursor = HistoryCursor.parse(after);
+        int pageSize = Math.clamp(limit, 1, MAX_HISTORY_PAGE_SIZE);
+        List<ReservationResponse> live = reservationRepository.findHistoryPageByUserId(
+                userId, cursor.createdAt(), cursor.id(), Limit.of(pageSize));
+        if (!includeArchived) {
+            return toHistoryPage(live, pageSize);
+        }
+        List<ReservationResponse> archived = archivedReservationRepository.findHistoryPageByUserId(
+                userId, cursor.createdAt(), cursor.id(), Limit.of(pageSize));
+        return toHistoryPage(mergeHistory(live, archived, pageSize), pageSize);
+    }
+
+    @Override
+    public ReservationHistoryPage getReservationHistoryByStudentId(Long studentId, String after, int limit, boolean includeArchived) {
+        HistoryCursor cursor = HistoryCursor.parse(after);
+        int pageSize = Math.clamp(limit, 1, MAX_HISTORY_PAGE_SIZE);
+        List<ReservationResponse> live = reservationRepository.findHistoryPageByStudentId(
+                studentId, cursor.createdAt(), cursor.id(), Limit.of(pageSize));
+        if (!includeArchived) {
+            return toHistoryPage(live, pageSize);
+        }
+        List<ReservationResponse> archived = archivedReservationRepository.findHistoryPageByStudentId(
+                studentId, cursor.createdAt(), cursor.id(), Limit.of(pageSize));
+        return toHistoryPage(mergeHistory(live, archived, pageSize), pageSize);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamReservationHistoryByUserId(Long userId, boolean includeArchived, Consumer<ReservationResponse> sink) {
+        try (Stream<ReservationResponse> live = reservationRepository.streamHistoryByUserId(userId)) {
+            if (!includeArchived) {
+                live.forEach(sink);
+                return;
+            }
+            try (Stream<ReservationResponse> archived = archivedReservationRepository.streamHistoryByUserId(userId)) {
+                mergeHistory(live, archived, sink);
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamReservationHistoryByStudentId(Long studentId, boolean includeArchived, Consumer<ReservationResponse> sink) {
+        try (Stream<ReservationResponse> live = reservationRepository.streamHistoryByStudentId(studentId)) {
+            if (!includeArchived) {
+                live.forEach(sink);
+                return;
+            }
+            try (Stream<ReservationResponse> archived = archivedReservationRepository.streamHistoryByStudentId(studentId)) {
+                mergeHistory(live, archived, sink);
+            }
+        }
+    }
 
     @Override
-    @Transactional
     public ReservationResponse makeReservation(ReservationRequest reservationRequest){
-        User user = userRepository.findById(reservationRequest.getUserId())
+        User user = userLookupService.findById(reservationRequest.getUserId())
                 .orElseThrow(() -> new ResourceNotFoundException("User Not Found"));
 
-        List<ReservationSlot> freeSlots = reservationSlotRepository.findPessimisticSlotsByRangeAndDeskId(
-                reservationRequest.getDeskId(), reservationRequest.getStartTime(), reservationRequest.getEndTime()
-                )
-                .orElseThrow(() -> new ResourceNotFoundException("No Available Slots"));
+        return bookDesk(reservationRequest, user);
+    }
+
+    @Override
+    public ReservationResponse makeRoomReservation(RoomReservationRequest roomReservationRequest) {
+        User user = userLookupService.findById(roomReservationRequest.getUserId())
+                .orElseThrow(() -> new ResourceNotFoundException("User Not Found"));
+
+        for (Integer deskId : candidateDesks(roomReservationRequest)) {
+            ReservationRequest reservationRequest = ReservationRequest.builder()
+                    .userId(roomReservationRequest.getUserId())
+                    .roomId(roomReservationRequest.getRoomId())
+                    .deskId(deskId)
+                    .startTime(roomReservationRequest.getStartTime())
+                    .endTime(roomReservationRequest.getEndTime())
+                    .build();
+            try {
+                return bookDesk(reservationRequest, user);
+            } catch (ReservationNotAvailableException | ResourceNotFoundException | NotConsecutiveSlotsException e) {
+                // Lost the race for this desk (or the index was stale), try the next best fit
+            }
+        }
+        throw new ReservationNotAvailableException("No Desk In Room Is Free For The Requested Range");
+    }
+
+    private ReservationResponse bookDesk(ReservationRequest reservationRequest, User user) {
+        // Wait for the desk in memory first, only then take an admission permit and open the transaction
+        // (and take a connection); a request queued behind a busy desk must not hold a permit other desks need
+        return bookingSequencer.runExclusively(reservationRequest.getDeskId(),
+                () -> bookingAdmissionQueue.admit(
+                        () -> transactionTemplate.execute(status -> bookSlots(reservationRequest, user))));
+    }
+
+    private List<Integer> candidateDesks(RoomReservationRequest roomReservationRequest) {
+        if (availabilityIndex.isReady()) {
+            return availabilityIndex.findCandidateDesks(roomReservationRequest.getRoomId(),
+                    roomReservationRequest.getStartTime(), roomReservationRequest.getEndTime());
+        }
+        // Index not built yet: try every desk of the room and let the booking itself decide
+        return SlotMaintenanceService.DESK_IDS.stream()
+                .filter(deskId -> deskId / 10 == roomReservationRequest.getRoomId())
+                .toList();
+    }
+
+    private ReservationResponse bookSlots(ReservationRequest reservationRequest, User user) {
+        // Range storage: the insert itself is the claim, Postgres rejects overlapping ranges
+        Reservation savedReservation = reservationProperties.getStorage() == StorageMode.RANGE
+                ? rangeReservationStore.book(dataMapper.toReservation(new ArrayList<>(), reservationRequest, user))
+                : bookSlotRows(reservationRequest, user);
+        utilizationService.recordBooking(reservationRequest.getRoomId(), reservationRequest.getStartTime(),
+                reservationRequest.getEndTime());
+        eventPublisher.publishEvent(new SlotsChangedEvent(reservationRequest.getRoomId(), reservationRequest.getDeskId(),
+                reservationRequest.getStartTime(), reservationRequest.getEndTime(), true));
+        // In batch mode the boundary sweep handles check-in and completion for every reservation
+        if (reservationProperties.getJobs() == JobsMode.PER_RESERVATION) {
+            jobScheduler.schedule(
+                    reservationRequest.getStartTime(),
+                    () -> jobService.checkUserCheckIn(savedReservation.getId(), user.getStudentId().toString())
+            );
+            jobScheduler.schedule(
+                    reservationRequest.getEndTime(),
+                    () -> jobService.checkUserCompleted(savedReservation.getId())
+            );
+        }
+        return dataMapper.toReservationResponse(savedReservation);
+    }
+
+    private Reservation bookSlotRows(ReservationRequest reservationRequest, User user) {
+        List<ReservationSlot> freeSlots = claimSlots(reservationRequest);
         if(!validateReservation(freeSlots)){
             throw new NotConsecutiveSlotsException("Reservation Slots Are Not Consecutive");
         }
@@ -119,16 +333,101 @@ public class ReservationServiceImpl implements ReservationService {
             slot.setReservation(savedReservation);
         });
         reservationSlotRepository.saveAll(freeSlots);
-        jobScheduler.schedule(
-                reservationRequest.getStartTime(),
-                () -> jobService.checkUserCheckIn(savedReservation.getId(), user.getStudentId().toString())
-        );
-        jobScheduler.schedule(
-                reservationRequest.getEndTime(),
-                () -> jobService.checkUserCompleted(savedReservation.getId())
-        );
-        return dataMapper.toReservationResponse(savedReservation);
+        return savedReservation;
+    }
+
+    private List<ReservationSlot> claimSlots(ReservationRequest reservationRequest) {
+        if (reservationProperties.getBookingMode() == BookingMode.OPTIMISTIC) {
+            return claimSlotsOptimistically(reservationRequest);
+        }
+        // 2PL: rows stay locked until the booking transaction commits
+        List<ReservationSlot> freeSlots = reservationSlotRepository.findPessimisticSlotsByRangeAndDeskId(
+                reservationRequest.getDeskId(), reservationRequest.getStartTime(), reservationRequest.getEndTime()
+                )
+                .filter(slots -> !slots.isEmpty())
+                .orElseThrow(() -> new ResourceNotFoundException("No Available Slots"));
+        long requiredSlots = requiredSlots(reservationRequest);
+        if (requiredSlots <= 0 || freeSlots.size() != requiredSlots) {
+            // Part of the range is taken (e.g. by another node, the index here was stale); never book a remainder
+            throw new ReservationNotAvailableException("Requested Slots Are No Longer Available");
+        }
+        return freeSlots;
+    }
+
+    private List<ReservationSlot> claimSlotsOptimistically(ReservationRequest reservationRequest) {
+        long requiredSlots = requiredSlots(reservationRequest);
+        int claimedSlots = reservationSlotRepository.claimSlotsByRangeAndDeskId(
+                reservationRequest.getDeskId(), reservationRequest.getStartTime(), reservationRequest.getEndTime());
+        if (requiredSlots <= 0 || claimedSlots != requiredSlots) {
+            // Someone else got (part of) the range first; throwing rolls back our partial claim
+            throw new ReservationNotAvailableException("Requested Slots Are No Longer Available");
+        }
+        return reservationSlotRepository.findClaimedSlotsByRangeAndDeskId(
+                reservationRequest.getDeskId(), reservationRequest.getStartTime(), reservationRequest.getEndTime());
+    }
+
+    private static Long studentIdOf(Reservation reservation) {
+        return reservation.getUser() == null ? null : reservation.getUser().getStudentId();
+    }
+
+    private static long requiredSlots(ReservationRequest reservationRequest) {
+        return Duration.between(reservationRequest.getStartTime(), reservationRequest.getEndTime())
+                .toMinutes() / SlotMaintenanceService.SLOT_DURATION_MINUTES;
+    }
+
+    // Both inputs are newest first; the first pageSize rows of the union are among the first pageSize of each
+    private static List<ReservationResponse> mergeHistory(List<ReservationResponse> live, List<ReservationResponse> archived,
+                                                          int pageSize) {
+        Set<Long> seen = new HashSet<>();
+        return Stream.concat(live.stream(), archived.stream())
+                .sorted(HISTORY_ORDER)
+                .filter(reservation -> seen.add(reservation.getId()))
+                .limit(pageSize)
+                .toList();
     }
+
+    // Streaming merge of two newest-first cursors. Only the ids emitted from the live side are kept: an archived
+    // row already sent from the live table is dropped, wherever its copy sorts in the archive
+    private static void mergeHistory(Stream<ReservationResponse> live, Stream<ReservationResponse> archived,
+                                     Consumer<ReservationResponse> sink) {
+        Set<Long> emittedLive = new HashSet<>();
+        Iterator<ReservationResponse> liveRows = live.iterator();
+        Iterator<ReservationResponse> archivedRows = archived.iterator();
+        ReservationResponse nextLive = liveRows.hasNext() ? liveRows.next() : null;
+        ReservationResponse nextArchived = archivedRows.hasNext() ? archivedRows.next() : null;
+        while (nextLive != null || nextArchived != null) {
+            if (nextArchived != null && emittedLive.contains(nextArchived.getId())) {
+                nextArchived = archivedRows.hasNext() ? archivedRows.next() : null;
+                continue;
+            }
+            if (nextArchived == null || (nextLive != null && HISTORY_ORDER.compare(nextLive, nextArchived) <= 0)) {
+                sink.accept(nextLive);
+                emittedLive.add(nextLive.getId());
+                nextLive = liveRows.hasNext() ? liveRows.next() : null;
+            } else {
+                sink.accept(nextArchived);
+                nextArchived = archivedRows.hasNext() ? archivedRows.next() : null;
+            }
+        }
+    }
+
+    private ReservationHistoryPage toHistoryPage(List<ReservationResponse> items, int pageSize) {
+        // A full page may have more behind it; a short one is the last
+        String nextCursor = items.size() == pageSize ? HistoryCursor.of(items.getLast()).toString() : null;
+        return ReservationHistoryPage.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private List<SlotsDto> freeWindowSlots(Predicate<ReservationSlot> filter) {
+        return rangeReservationStore.findWindowSlots().stream()
+                .filter(slot -> !slot.isBooked())
+                .filter(filter)
+                .map(dataMapper::toSlotsDto)
+                .toList();
+    }
+
     public boolean validateReservation(List<ReservationSlot> freeSlots) {
         // Sort the slots by slotStart
         freeSlots.sort(Comparator.comparing(ReservationSlot::getSlotStart));
@@ -0,0 +1,35 @@
+package com.example.libraryweek1.user.dto;
+
+import com.example.libraryweek1.user.entity.Role;
+import com.example.libraryweek1.user.entity.User;
+
+import java.time.LocalDateTime;
+
+// Cacheable copy of a user row; the password hash is deliberately left out
+public record CachedUser(Long id, String email, Long studentId, Integer libraryScore, Integer successfulCompletionsStreak,
+                         Integer noShowStreak, Integer breakViolationStreak, LocalDateTime createdAt,
+                         LocalDateTime updatedAt, Role role, boolean enabled) {
+
+    public static CachedUser of(User user) {
+        return new CachedUser(user.getId(), user.getEmail(), user.getStudentId(), user.getLibraryScore(),
+                user.getSuccessfulCompletionsStreak(), user.getNoShowStreak(), user.getBreakViolationStreak(),
+                user.getCreatedAt(), user.getUpdatedAt(), user.getRole(), user.isEnabled());
+    }
+
+    // Detached snapshot: fine as an association reference, never to be saved back
+    public User toUser() {
+        return User.builder()
+                .id(id)
+                .email(email)
+                .studentId(studentId)
+                .libraryScore(libraryScore)
+                .successfulCompletionsStreak(successfulCompletionsStreak)
+                .noShowStreak(noShowStreak)
+                .breakViolationStreak(breakViolationStreak)
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .role(role)
+                .enabled(enabled)
+                .build();
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.libraryweek1.user.entity;
 
+import com.example.libraryweek1.user.event.UserChangeListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -12,6 +15,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserChangeListener.class)
 @Data
 @Builder
 @NoArgsConstructor
@@ -59,4 +63,18 @@ public class User {
     @Column(nullable = false)
     @Builder.Default
     private boolean enabled = false;
+
+    // studentId as last read from or written to the database, so a change can evict the cache entry of the old one
+    @Transient
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Long loadedStudentId;
+
+    // Runs after UserChangeListener (entity listeners first), which still sees the previous value
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void snapshotStudentId() {
+        this.loadedStudentId = studentId;
+    }
 } 
\ No newline at end of file
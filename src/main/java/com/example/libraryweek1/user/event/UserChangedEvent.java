@@ -0,0 +1,8 @@
+package com.example.libraryweek1.user.event;
+
+/**
+ * Published when a user row is updated or deleted. previousStudentId is the studentId the row had
+ * when it was loaded; it differs from studentId when the update changed it.
+ */
+public record UserChangedEvent(Long id, Long studentId, Long previousStudentId) {
+}
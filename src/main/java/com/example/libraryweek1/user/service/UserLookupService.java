@@ -0,0 +1,18 @@
+package com.example.libraryweek1.user.service;
+
+import com.example.libraryweek1.user.entity.User;
+
+import java.util.Optional;
+
+public interface UserLookupService {
+
+    /**
+     * Cached lookup by id. The returned user is a detached snapshot without the password hash.
+     */
+    Optional<User> findById(Long id);
+
+    /**
+     * Cached lookup by studentId. The returned user is a detached snapshot without the password hash.
+     */
+    Optional<User> findByStudentId(Long studentId);
+}
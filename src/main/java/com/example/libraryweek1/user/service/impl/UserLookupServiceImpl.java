@@ -0,0 +1,145 @@
+package com.example.libraryweek1.user.service.impl;
+
+import com.example.libraryweek1.config.UserCacheProperties;
+import com.example.libraryweek1.user.dto.CachedUser;
+import com.example.libraryweek1.user.entity.User;
+import com.example.libraryweek1.user.event.UserChangedEvent;
+import com.example.libraryweek1.user.repository.UserRepository;
+import com.example.libraryweek1.user.service.UserLookupService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Two-tier cache in front of UserRepository: a bounded Caffeine (W-TinyLFU) cache per node backed by Redis.
+ * User changes delete the Redis entries after commit and are broadcast on a pub/sub channel so every node
+ * drops its local copy. The local TTL bounds staleness if a message is missed.
+ */
+@Slf4j
+@Service
+public class UserLookupServiceImpl implements UserLookupService, MessageListener {
+
+    private static final String KEY_PREFIX = "users:";
+    private static final String INVALIDATION_CHANNEL = "users:invalidate";
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final UserCacheProperties properties;
+    private final Cache<String, CachedUser> localCache;
+    private final Counter redisHitCounter;
+    private final Counter redisMissCounter;
+    private final Timer loadTimer;
+
+    public UserLookupServiceImpl(UserRepository userRepository,
+                                 @Qualifier("userCacheRedisTemplate") StringRedisTemplate redisTemplate,
+                                 ObjectMapper objectMapper,
+                                 UserCacheProperties properties,
+                                 RedisMessageListenerContainer listenerContainer,
+                                 MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxSize())
+                .expireAfterWrite(properties.getLocalTtl())
+                .recordStats()
+                .build();
+        // Hit ratio, evictions and local load time (users.local.cache.*)
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "users.local");
+        this.redisHitCounter = Counter.builder("users.cache.redis").tag("result", "hit").register(meterRegistry);
+        this.redisMissCounter = Counter.builder("users.cache.redis").tag("result", "miss").register(meterRegistry);
+        this.loadTimer = Timer.builder("users.cache.load")
+                .description("Time to load a user from Postgres on a miss in both tiers")
+                .register(meterRegistry);
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return lookup("id:" + id, () -> userRepository.findById(id));
+    }
+
+    @Override
+    public Optional<User> findByStudentId(Long studentId) {
+        return lookup("student:" + studentId, () -> userRepository.findByStudentId(studentId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        evictLocal(event.id());
+        List<String> keys = new ArrayList<>(List.of(KEY_PREFIX + "id:" + event.id(), KEY_PREFIX + "student:" + event.studentId()));
+        if (event.previousStudentId() != null && !event.previousStudentId().equals(event.studentId())) {
+            // The old studentId would otherwise keep resolving to this user until the entry expires
+            keys.add(KEY_PREFIX + "student:" + event.previousStudentId());
+        }
+        try {
+            redisTemplate.delete(keys);
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, event.id().toString());
+        } catch (DataAccessException e) {
+            log.warn("Could not invalidate cached user {} in Redis, it expires after {}", event.id(), properties.getRedisTtl(), e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evictLocal(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8)));
+    }
+
+    // --- Helper Logic ---
+    private Optional<User> lookup(String key, Supplier<Optional<User>> loader) {
+        // Misses are not cached (Caffeine skips null), so a user created afterwards is found right away
+        CachedUser cached = localCache.get(key, k -> loadShared(k, loader));
+        return Optional.ofNullable(cached).map(CachedUser::toUser);
+    }
+
+    private CachedUser loadShared(String key, Supplier<Optional<User>> loader) {
+        String redisKey = KEY_PREFIX + key;
+        try {
+            String json = redisTemplate.opsForValue().get(redisKey);
+            if (json != null) {
+                redisHitCounter.increment();
+                return objectMapper.readValue(json, CachedUser.class);
+            }
+            redisMissCounter.increment();
+        } catch (DataAccessException e) {
+            log.warn("User cache in Redis unavailable, loading {} from the database", key, e);
+        }
+
+        CachedUser loaded = loadTimer.record(() -> loader.get().map(CachedUser::of).orElse(null));
+        if (loaded != null) {
+            try {
+                redisTemplate.opsForValue().set(redisKey, objectMapper.writeValueAsString(loaded), properties.getRedisTtl());
+            } catch (DataAccessException e) {
+                log.warn("Could not store user {} in Redis", key, e);
+            }
+        }
+        return loaded;
+    }
+
+    // A user can be cached under its id and its studentId (possibly an old one), so evict every entry of that user
+    private void evictLocal(Long userId) {
+        localCache.asMap().values().removeIf(cached -> cached.id().equals(userId));
+    }
+}
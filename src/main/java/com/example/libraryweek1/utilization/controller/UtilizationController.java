@@ -0,0 +1,46 @@
+package com.example.libraryweek1.utilization.controller;
+
+import com.example.libraryweek1.reservation.service.SlotMaintenanceService;
+import com.example.libraryweek1.utilization.dto.UtilizationHeatmapDto;
+import com.example.libraryweek1.utilization.service.UtilizationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+@RequestMapping("/api/utilization")
+@RequiredArgsConstructor
+public class UtilizationController {
+
+    private final UtilizationService utilizationService;
+
+    // Per date and hour; defaults to the bookable window
+    @GetMapping("/heatmap")
+    public ResponseEntity<UtilizationHeatmapDto> getHeatmap(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate start = from == null ? LocalDate.now() : from;
+        LocalDate end = to == null ? start.plusDays(SlotMaintenanceService.DAYS_TO_PREGENERATE - 1) : to;
+        return ResponseEntity.ok(utilizationService.getHeatmap(start, end));
+    }
+
+    // Per hour of day over a long range, e.g. the past semester
+    @GetMapping("/heatmap/hourly")
+    public ResponseEntity<UtilizationHeatmapDto> getHourlyProfile(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(utilizationService.getHourlyProfile(from, to));
+    }
+
+    // Recomputes the counters of the range from the reservation tables, e.g. after a bulk data fix
+    @PostMapping("/rebuild")
+    public ResponseEntity<Integer> rebuild(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(utilizationService.rebuild(from, to));
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.libraryweek1.utilization.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapCellDto {
+    private LocalDate date; // null in the hour-of-day profile
+    private int hour;
+    private double bookedRatio; // Booked desk-slots over available desk-slots
+    private double freeRatio;
+    private double noShowRatio; // No-shows over all bookings made for the hour
+}
@@ -0,0 +1,18 @@
+package com.example.libraryweek1.utilization.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomHeatmapDto {
+    private Integer roomId;
+    private int desks;
+    private List<HeatmapCellDto> cells;
+}
@@ -0,0 +1,6 @@
+package com.example.libraryweek1.utilization.dto;
+
+// Counters of one room slot summed over a date range
+public record SlotUtilizationTotals(Integer roomId, Integer slotIndex, Long booked, Long completed,
+                                    Long cancelled, Long noShows) {
+}
@@ -0,0 +1,19 @@
+package com.example.libraryweek1.utilization.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UtilizationHeatmapDto {
+    private LocalDate from;
+    private LocalDate to;
+    private List<RoomHeatmapDto> rooms;
+}
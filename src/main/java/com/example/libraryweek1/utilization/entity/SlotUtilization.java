@@ -0,0 +1,51 @@
+package com.example.libraryweek1.utilization.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Pre-aggregated booking counters of one half-hour slot of a room on one day. Maintained by upserts in the
+ * same transaction as the booking, cancellation or completion that changes them, so the heatmap never
+ * has to group the reservation tables.
+ */
+@Entity
+@Table(
+        name = "slot_utilization",
+        uniqueConstraints = @UniqueConstraint(name = "slot_utilization_room_day_slot_uk",
+                columnNames = {"roomId", "slotDate", "slotIndex"})
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotUtilization {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Integer roomId;
+
+    @Column(nullable = false)
+    private LocalDate slotDate;
+
+    @Column(nullable = false)
+    private Integer slotIndex; // Slot starting at OPENING_TIME + slotIndex * 30min
+
+    @Column(nullable = false)
+    private long booked; // Desk reservations holding the slot (pending, checked in or completed)
+
+    @Column(nullable = false)
+    private long completed;
+
+    @Column(nullable = false)
+    private long cancelled; // Cancelled by the student or staff
+
+    @Column(nullable = false)
+    private long noShows; // Cancelled because the student never checked in
+}
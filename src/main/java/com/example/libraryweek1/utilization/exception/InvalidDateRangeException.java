@@ -0,0 +1,10 @@
+package com.example.libraryweek1.utilization.exception;
+
+import com.example.libraryweek1.config.ApiBaseException;
+import org.springframework.http.HttpStatus;
+
+public class InvalidDateRangeException extends ApiBaseException {
+    public InvalidDateRangeException(String message) {
+        super(message, HttpStatus.BAD_REQUEST);
+    }
+}
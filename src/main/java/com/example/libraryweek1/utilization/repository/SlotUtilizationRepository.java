@@ -0,0 +1,23 @@
+package com.example.libraryweek1.utilization.repository;
+
+import com.example.libraryweek1.utilization.dto.SlotUtilizationTotals;
+import com.example.libraryweek1.utilization.entity.SlotUtilization;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SlotUtilizationRepository extends JpaRepository<SlotUtilization, Long> {
+
+    List<SlotUtilization> findBySlotDateBetween(LocalDate from, LocalDate to);
+
+    // Hour-of-day profile over a long range (e.g. a semester): summed in Postgres, one row per room slot
+    @Query("SELECT new com.example.libraryweek1.utilization.dto.SlotUtilizationTotals(u.roomId, u.slotIndex, " +
+            "SUM(u.booked), SUM(u.completed), SUM(u.cancelled), SUM(u.noShows)) " +
+            "FROM SlotUtilization u WHERE u.slotDate BETWEEN :from AND :to GROUP BY u.roomId, u.slotIndex")
+    List<SlotUtilizationTotals> sumBySlotBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
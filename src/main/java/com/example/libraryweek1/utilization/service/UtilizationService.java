@@ -0,0 +1,47 @@
+package com.example.libraryweek1.utilization.service;
+
+import com.example.libraryweek1.utilization.dto.UtilizationHeatmapDto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UtilizationService {
+
+    /**
+     * Per room, per date and hour ratios, read from the counters only.
+     */
+    UtilizationHeatmapDto getHeatmap(LocalDate from, LocalDate to);
+
+    /**
+     * Per room and hour of day ratios over the whole range (e.g. a semester), read from the counters only.
+     */
+    UtilizationHeatmapDto getHourlyProfile(LocalDate from, LocalDate to);
+
+    // The record methods must run inside the transaction that changes the reservation
+
+    void recordBooking(Integer roomId, LocalDateTime startTime, LocalDateTime endTime);
+
+    void recordCancellation(Integer roomId, LocalDateTime startTime, LocalDateTime endTime, boolean noShow);
+
+    void recordCompletion(Integer roomId, LocalDateTime startTime, LocalDateTime endTime);
+
+    /**
+     * Counts the completion of every reservation the boundary sweep is about to complete; call right before
+     * the set-based update.
+     */
+    void recordCompletionsEndedBy(LocalDateTime boundary);
+
+    /**
+     * Counts the still pending reservations among {@code reservationIds} as no-shows; call right before
+     * they are cancelled.
+     */
+    void recordNoShows(List<Long> reservationIds);
+
+    /**
+     * Recomputes the counters of the date range from the reservations and the archive.
+     *
+     * @return the number of counter rows written
+     */
+    int rebuild(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,234 @@
+package com.example.libraryweek1.utilization.service.impl;
+
+import com.example.libraryweek1.reservation.entity.Reservation;
+import com.example.libraryweek1.reservation.service.SlotMaintenanceService;
+import com.example.libraryweek1.utilization.dto.HeatmapCellDto;
+import com.example.libraryweek1.utilization.dto.RoomHeatmapDto;
+import com.example.libraryweek1.utilization.dto.SlotUtilizationTotals;
+import com.example.libraryweek1.utilization.dto.UtilizationHeatmapDto;
+import com.example.libraryweek1.utilization.entity.SlotUtilization;
+import com.example.libraryweek1.utilization.exception.InvalidDateRangeException;
+import com.example.libraryweek1.utilization.repository.SlotUtilizationRepository;
+import com.example.libraryweek1.utilization.service.UtilizationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.OPENING_TIME;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.SLOTS_PER_DAY;
+import static com.example.libraryweek1.reservation.service.SlotMaintenanceService.SLOT_DURATION_MINUTES;
+
+/**
+ * Utilization heatmap from counters keyed by (room, date, slot). Every booking, cancellation and completion
+ * adds its delta with one upsert inside its own transaction, so the counters commit or roll back together
+ * with the reservation and the heatmap reads only slot_utilization. The set-based sweep updates count the
+ * rows they are about to change with the same upsert, locking them first so the two statements agree.
+ * A rebuild recomputes a date range from reservations and the archive.
+ */
+@Slf4j
+@Service
+public class UtilizationServiceImpl implements UtilizationService {
+
+    private static final int SLOTS_PER_HOUR = 60 / SLOT_DURATION_MINUTES;
+    private static final Map<Integer, Integer> ROOM_DESKS = SlotMaintenanceService.DESK_IDS.stream()
+            .collect(Collectors.groupingBy(deskId -> deskId / 10, TreeMap::new, Collectors.summingInt(deskId -> 1)));
+    private static final List<Integer> HOURS = IntStream.range(0, SLOTS_PER_DAY)
+            .map(UtilizationServiceImpl::hourOf).distinct().boxed().toList();
+
+    // Adds the deltas of every reservation row of the source to the slots it covers
+    private static final String UPSERT_FROM_RESERVATIONS =
+            "INSERT INTO slot_utilization (room_id, slot_date, slot_index, booked, completed, cancelled, no_shows) " +
+            "SELECT r.room_id, CAST(r.start_time AS date), s.slot_index, " +
+            "SUM(r.booked), SUM(r.completed), SUM(r.cancelled), SUM(r.no_shows) " +
+            "FROM (%s) r " +
+            "CROSS JOIN LATERAL generate_series(" + slotIndexSql("r.start_time") + ", " +
+            slotIndexSql("r.end_time") + " - 1) AS s(slot_index) " +
+            "GROUP BY r.room_id, CAST(r.start_time AS date), s.slot_index " +
+            "ON CONFLICT (room_id, slot_date, slot_index) DO UPDATE SET " +
+            "booked = slot_utilization.booked + EXCLUDED.booked, " +
+            "completed = slot_utilization.completed + EXCLUDED.completed, " +
+            "cancelled = slot_utilization.cancelled + EXCLUDED.cancelled, " +
+            "no_shows = slot_utilization.no_shows + EXCLUDED.no_shows";
+
+    private static final String SINGLE_RESERVATION =
+            "SELECT CAST(? AS integer) AS room_id, CAST(? AS timestamp) AS start_time, CAST(? AS timestamp) AS end_time, " +
+            "CAST(? AS integer) AS booked, CAST(? AS integer) AS completed, " +
+            "CAST(? AS integer) AS cancelled, CAST(? AS integer) AS no_shows";
+
+    // Same predicate as ReservationRepository.completeEndedBy
+    private static final String ENDED_RESERVATIONS =
+            "SELECT room_id, start_time, end_time, 0 AS booked, 1 AS completed, 0 AS cancelled, 0 AS no_shows " +
+            "FROM reservations WHERE status IN ('PENDING', 'CONFIRMED') AND end_time <= ? FOR UPDATE";
+
+    // Same predicate as ReservationRepository.cancelPendingByIds
+    private static final String NO_SHOW_RESERVATIONS =
+            "SELECT room_id, start_time, end_time, -1 AS booked, 0 AS completed, 0 AS cancelled, 1 AS no_shows " +
+            "FROM reservations WHERE status = 'PENDING' AND id = ANY(?) FOR UPDATE";
+
+    private static final String RECOUNT_COLUMNS =
+            "SELECT room_id, start_time, end_time, " +
+            "CASE WHEN status = 'CANCELLED' THEN 0 ELSE 1 END AS booked, " +
+            "CASE WHEN status = 'COMPLETED' THEN 1 ELSE 0 END AS completed, " +
+            "CASE WHEN status = 'CANCELLED' AND cancellation_reason IS DISTINCT FROM ? THEN 1 ELSE 0 END AS cancelled, " +
+            "CASE WHEN status = 'CANCELLED' AND cancellation_reason = ? THEN 1 ELSE 0 END AS no_shows ";
+
+    private static final String RESERVATIONS_BETWEEN =
+            RECOUNT_COLUMNS + "FROM reservations WHERE start_time >= ? AND start_time < ? " +
+            "UNION ALL " +
+            RECOUNT_COLUMNS + "FROM reservations_archive WHERE start_time >= ? AND start_time < ?";
+
+    private final SlotUtilizationRepository slotUtilizationRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public UtilizationServiceImpl(SlotUtilizationRepository slotUtilizationRepository, JdbcTemplate jdbcTemplate) {
+        this.slotUtilizationRepository = slotUtilizationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UtilizationHeatmapDto getHeatmap(LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        Map<CellKey, long[]> counters = new HashMap<>();
+        for (SlotUtilization slot : slotUtilizationRepository.findBySlotDateBetween(from, to)) {
+            accumulate(counters, new CellKey(slot.getRoomId(), slot.getSlotDate(), hourOf(slot.getSlotIndex())),
+                    slot.getBooked(), slot.getCancelled(), slot.getNoShows());
+        }
+        return heatmap(from, to, from.datesUntil(to.plusDays(1)).toList(), 1, counters);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UtilizationHeatmapDto getHourlyProfile(LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        Map<CellKey, long[]> counters = new HashMap<>();
+        for (SlotUtilizationTotals totals : slotUtilizationRepository.sumBySlotBetween(from, to)) {
+            accumulate(counters, new CellKey(totals.roomId(), null, hourOf(totals.slotIndex())),
+                    totals.booked(), totals.cancelled(), totals.noShows());
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        return heatmap(from, to, Arrays.asList((LocalDate) null), days, counters);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBooking(Integer roomId, LocalDateTime startTime, LocalDateTime endTime) {
+        upsert(roomId, startTime, endTime, 1, 0, 0, 0);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCancellation(Integer roomId, LocalDateTime startTime, LocalDateTime endTime, boolean noShow) {
+        upsert(roomId, startTime, endTime, -1, 0, noShow ? 0 : 1, noShow ? 1 : 0);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCompletion(Integer roomId, LocalDateTime startTime, LocalDateTime endTime) {
+        upsert(roomId, startTime, endTime, 0, 1, 0, 0);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCompletionsEndedBy(LocalDateTime boundary) {
+        jdbcTemplate.update(UPSERT_FROM_RESERVATIONS.formatted(ENDED_RESERVATIONS), boundary);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordNoShows(List<Long> reservationIds) {
+        jdbcTemplate.update(UPSERT_FROM_RESERVATIONS.formatted(NO_SHOW_RESERVATIONS), (Object) reservationIds.toArray(Long[]::new));
+    }
+
+    @Override
+    @Transactional
+    public int rebuild(LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        // Bookings upsert the counters inside their own transactions: holding the table until the rebuild
+        // commits means each one is either already in the base tables we read or applied on top afterwards
+        jdbcTemplate.execute("LOCK TABLE slot_utilization IN EXCLUSIVE MODE");
+        int deleted = jdbcTemplate.update("DELETE FROM slot_utilization WHERE slot_date BETWEEN ? AND ?", from, to);
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        int written = jdbcTemplate.update(UPSERT_FROM_RESERVATIONS.formatted(RESERVATIONS_BETWEEN),
+                Reservation.NO_SHOW_REASON, Reservation.NO_SHOW_REASON, start, end,
+                Reservation.NO_SHOW_REASON, Reservation.NO_SHOW_REASON, start, end);
+        log.info("Utilization counters {} to {} rebuilt: {} rows replaced by {}.", from, to, deleted, written);
+        return written;
+    }
+
+    // --- Helper Logic ---
+    private void upsert(Integer roomId, LocalDateTime startTime, LocalDateTime endTime,
+                        int booked, int completed, int cancelled, int noShows) {
+        jdbcTemplate.update(UPSERT_FROM_RESERVATIONS.formatted(SINGLE_RESERVATION),
+                roomId, startTime, endTime, booked, completed, cancelled, noShows);
+    }
+
+    private static UtilizationHeatmapDto heatmap(LocalDate from, LocalDate to, List<LocalDate> dates, long days,
+                                                 Map<CellKey, long[]> counters) {
+        List<RoomHeatmapDto> rooms = new ArrayList<>();
+        ROOM_DESKS.forEach((roomId, desks) -> {
+            long capacity = (long) desks * SLOTS_PER_HOUR * days;
+            List<HeatmapCellDto> cells = new ArrayList<>();
+            for (LocalDate date : dates) {
+                for (Integer hour : HOURS) {
+                    cells.add(cell(date, hour, counters.getOrDefault(new CellKey(roomId, date, hour), new long[3]), capacity));
+                }
+            }
+            rooms.add(RoomHeatmapDto.builder().roomId(roomId).desks(desks).cells(cells).build());
+        });
+        return UtilizationHeatmapDto.builder().from(from).to(to).rooms(rooms).build();
+    }
+
+    private static HeatmapCellDto cell(LocalDate date, int hour, long[] counters, long capacity) {
+        long booked = counters[0];
+        long bookingsMade = booked + counters[1] + counters[2];
+        double bookedRatio = Math.clamp((double) booked / capacity, 0.0, 1.0);
+        return HeatmapCellDto.builder()
+                .date(date)
+                .hour(hour)
+                .bookedRatio(bookedRatio)
+                .freeRatio(1.0 - bookedRatio)
+                .noShowRatio(bookingsMade == 0 ? 0.0 : (double) counters[2] / bookingsMade)
+                .build();
+    }
+
+    private static void accumulate(Map<CellKey, long[]> counters, CellKey key, long booked, long cancelled, long noShows) {
+        long[] cell = counters.computeIfAbsent(key, k -> new long[3]);
+        cell[0] += booked;
+        cell[1] += cancelled;
+        cell[2] += noShows;
+    }
+
+    private static void validateRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new InvalidDateRangeException("Range End Is Before Its Start");
+        }
+    }
+
+    private static int hourOf(int slotIndex) {
+        return OPENING_TIME.plusMinutes((long) slotIndex * SLOT_DURATION_MINUTES).getHour();
+    }
+
+    private static String slotIndexSql(String timestampColumn) {
+        return "CAST(FLOOR((EXTRACT(EPOCH FROM CAST(" + timestampColumn + " AS time)) - " + OPENING_TIME.toSecondOfDay() +
+                ") / " + SLOT_DURATION_MINUTES * 60 + ") AS integer)";
+    }
+
+    private record CellKey(Integer roomId, LocalDate date, int hour) {
+    }
+}
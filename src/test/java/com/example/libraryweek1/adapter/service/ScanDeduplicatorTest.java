@@ -0,0 +1,131 @@
+package com.example.libraryweek1.adapter.service;
+
+import com.example.libraryweek1.adapter.dto.LibraryScanDto;
+import com.example.libraryweek1.adapter.dto.LibraryScanResponseDto;
+import com.example.libraryweek1.adapter.dto.ScanType;
+import com.example.libraryweek1.config.ScanProperties;
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ScanDeduplicatorTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ScanDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        ScanProperties scanProperties = new ScanProperties();
+        scanProperties.setDedupWindow(Duration.ofSeconds(1));
+        deduplicator = new ScanDeduplicator(redisTemplate, scanProperties, meterRegistry);
+    }
+
+    @Test
+    void deduplicate_shouldProcessRepeatsWithinTheWindowOnce() {
+        AtomicInteger processed = new AtomicInteger();
+        CompletableFuture<LibraryScanResponseDto> pending = new CompletableFuture<>();
+
+        CompletableFuture<LibraryScanResponseDto> first = deduplicator.deduplicate(scan(ScanType.ENTER, NOW), () -> {
+            processed.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<LibraryScanResponseDto> repeat = deduplicator.deduplicate(scan(ScanType.ENTER, NOW.plusNanos(300_000_000)), () -> {
+            processed.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<LibraryScanResponseDto> exit = deduplicator.deduplicate(scan(ScanType.EXIT, NOW),
+                () -> CompletableFuture.completedFuture(new LibraryScanResponseDto(25L, "Checked in")));
+        pending.complete(new LibraryScanResponseDto(30L, "Checked in"));
+
+        assertThat(processed.get()).isEqualTo(1);
+        assertThat(repeat.join()).isSameAs(first.join());
+        assertThat(exit.join().getRemainingBreakMinutes()).isEqualTo(25L);
+        assertThat(meterRegistry.get("library.scan.duplicates").tag("tier", "local").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deduplicate_shouldLetTheRetryThrough_whenTheFirstScanWasNotProcessed() {
+        CompletableFuture<LibraryScanResponseDto> shed = deduplicator.deduplicate(scan(ScanType.ENTER, NOW),
+                () -> CompletableFuture.failedFuture(new IllegalStateException("Scan Queue Is Full")));
+        CompletableFuture<LibraryScanResponseDto> retry = deduplicator.deduplicate(scan(ScanType.ENTER, NOW),
+                () -> CompletableFuture.completedFuture(new LibraryScanResponseDto(30L, "Checked in")));
+
+        assertThat(shed).isCompletedExceptionally();
+        assertThat(retry.join().getRemainingBreakMinutes()).isEqualTo(30L);
+    }
+
+    @Test
+    void claim_shouldReturnTheStoredResponse_whenAnotherNodeHandledTheScan() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), eq("pending"), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(anyString())).thenReturn("30:Checked in");
+
+        Optional<LibraryScanResponseDto> previous = deduplicator.claim(scan(ScanType.ENTER, NOW));
+
+        assertThat(previous).hasValueSatisfying(response -> {
+            assertThat(response.getRemainingBreakMinutes()).isEqualTo(30L);
+            assertThat(response.getMessage()).isEqualTo("Checked in");
+        });
+        assertThat(meterRegistry.get("library.scan.duplicates").tag("tier", "redis").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void claim_shouldAskForRetry_whenAnotherNodeIsStillProcessingTheScan() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), eq("pending"), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(anyString())).thenReturn("pending");
+
+        assertThatThrownBy(() -> deduplicator.claim(scan(ScanType.ENTER, NOW)))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, ex -> {
+                    assertThat(ex.getStatus()).isEqualTo(HttpStatus.CONFLICT);
+                    assertThat(ex.getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+                });
+    }
+
+    @Test
+    void claim_shouldClaimWithSetNxPx_andFailOpen_whenRedisIsDown() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), eq("pending"), any(Duration.class)))
+                .thenReturn(true)
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThat(deduplicator.claim(scan(ScanType.ENTER, NOW))).isEmpty();
+        assertThat(deduplicator.claim(scan(ScanType.EXIT, NOW))).isEmpty();
+        verify(valueOperations, times(2)).setIfAbsent(anyString(), eq("pending"), eq(Duration.ofSeconds(2)));
+    }
+
+    private static LibraryScanDto scan(ScanType scanType, LocalDateTime timestamp) {
+        return new LibraryScanDto(1001L, scanType, timestamp);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.libraryweek1.adapter.service;
+
+import com.example.libraryweek1.config.ScanProperties;
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScanExecutionEngineTest {
+
+    private final ScanProperties scanProperties = new ScanProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ScanExecutionEngine engine;
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void submit_shouldCapConcurrentScansOnVirtualThreads() {
+        scanProperties.setMaxConcurrent(3);
+        engine = new ScanExecutionEngine(scanProperties, meterRegistry);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger platformThreads = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> scans = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            scans.add(engine.submit(() -> {
+                if (!Thread.currentThread().isVirtual()) {
+                    platformThreads.incrementAndGet();
+                }
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                sleep(2);
+                return inFlight.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(scans.toArray(CompletableFuture[]::new)).join();
+
+        assertThat(maxInFlight.get()).isEqualTo(3);
+        assertThat(platformThreads.get()).isZero();
+        assertThat(meterRegistry.get("library.scan.queue").timer().count()).isEqualTo(100);
+        assertThat(meterRegistry.get("library.scan.duration").timer().count()).isEqualTo(100);
+    }
+
+    @Test
+    void submit_shouldFailWith503_whenQueueIsFull() throws Exception {
+        scanProperties.setMaxConcurrent(1);
+        scanProperties.setMaxQueued(1);
+        engine = new ScanExecutionEngine(scanProperties, meterRegistry);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = engine.submit(() -> {
+            held.countDown();
+            await(release);
+            return "running";
+        });
+        held.await();
+        CompletableFuture<String> queued = engine.submit(() -> "queued");
+        CompletableFuture<String> rejected = engine.submit(() -> "rejected");
+
+        assertThat(rejected).failsWithin(Duration.ZERO)
+                .withThrowableOfType(ExecutionException.class)
+                .havingCause()
+                .isInstanceOfSatisfying(AdmissionRejectedException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        release.countDown();
+        assertThat(running.join()).isEqualTo("running");
+        assertThat(queued.join()).isEqualTo("queued");
+        assertThat(engine.getQueued()).isZero();
+        assertThat(meterRegistry.get("library.scan.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void stage_shouldRecordATimerPerStage() {
+        engine = new ScanExecutionEngine(scanProperties, meterRegistry);
+
+        engine.submit(() -> engine.stage("lookup", () -> "reservation")).join();
+        engine.submit(() -> engine.stage("lookup", () -> "reservation")).join();
+        engine.submit(() -> engine.stage("check-in", () -> 30L)).join();
+
+        assertThat(meterRegistry.get("library.scan.stage").tag("stage", "lookup").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("library.scan.stage").tag("stage", "check-in").timer().count()).isEqualTo(1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
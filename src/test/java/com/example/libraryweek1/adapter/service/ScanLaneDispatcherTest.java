@@ -0,0 +1,127 @@
+package com.example.libraryweek1.adapter.service;
+
+import com.example.libraryweek1.config.ScanProperties;
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScanLaneDispatcherTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private final ScanProperties scanProperties = new ScanProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ScanExecutionEngine engine;
+    private ScanLaneDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        scanProperties.setLanes(4);
+        scanProperties.setLaneCapacity(2);
+        engine = new ScanExecutionEngine(scanProperties, meterRegistry);
+        dispatcher = new ScanLaneDispatcher(engine, scanProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+        engine.shutdown();
+    }
+
+    @Test
+    void dispatch_shouldRunAStudentsQueuedScansInTimestampOrder() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<String> first = dispatcher.dispatch(1001L, NOW, () -> {
+            held.countDown();
+            await(release);
+            order.add("first");
+            return "first";
+        });
+        held.await();
+        // Arrived out of order behind a running scan: the earlier timestamp still goes first
+        CompletableFuture<String> exit = dispatcher.dispatch(1001L, NOW.plusSeconds(2), () -> {
+            order.add("exit");
+            return "exit";
+        });
+        CompletableFuture<String> enter = dispatcher.dispatch(1001L, NOW.plusSeconds(1), () -> {
+            order.add("enter");
+            return "enter";
+        });
+        assertThat(dispatcher.getDepth(dispatcher.laneOf(1001L))).isEqualTo(2);
+        release.countDown();
+
+        CompletableFuture.allOf(first, exit, enter).join();
+        assertThat(order).containsExactly("first", "enter", "exit");
+        assertThat(dispatcher.getDepth(dispatcher.laneOf(1001L))).isZero();
+    }
+
+    @Test
+    void dispatch_shouldRunOtherStudentsInParallel() throws Exception {
+        assertThat(dispatcher.laneOf(1001L)).isNotEqualTo(dispatcher.laneOf(1002L));
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> blocked = dispatcher.dispatch(1001L, NOW, () -> {
+            await(release);
+            return "blocked";
+        });
+        CompletableFuture<String> other = dispatcher.dispatch(1002L, NOW, () -> "other");
+
+        assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo("other");
+        assertThat(blocked).isNotDone();
+        release.countDown();
+        assertThat(blocked.join()).isEqualTo("blocked");
+    }
+
+    @Test
+    void dispatch_shouldFailWith503_whenLaneIsFull() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = dispatcher.dispatch(1001L, NOW, () -> {
+            held.countDown();
+            await(release);
+            return "running";
+        });
+        held.await();
+        dispatcher.dispatch(1001L, NOW, () -> "queued");
+        // Same lane as 1001 with four lanes
+        dispatcher.dispatch(1005L, NOW, () -> "queued");
+
+        CompletableFuture<String> rejected = dispatcher.dispatch(1009L, NOW, () -> "rejected");
+
+        assertThat(rejected).failsWithin(Duration.ZERO)
+                .withThrowableOfType(ExecutionException.class)
+                .havingCause()
+                .isInstanceOfSatisfying(AdmissionRejectedException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(meterRegistry.get("library.scan.lane.depth").tag("lane", String.valueOf(dispatcher.laneOf(1001L)))
+                .gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("library.scan.lane.rejected").counter().count()).isEqualTo(1);
+        release.countDown();
+        assertThat(running.join()).isEqualTo("running");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
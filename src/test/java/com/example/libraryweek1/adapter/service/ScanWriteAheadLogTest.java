@@ -0,0 +1,235 @@
+package com.example.libraryweek1.adapter.service;
+
+import com.example.libraryweek1.adapter.dto.LibraryScanDto;
+import com.example.libraryweek1.adapter.dto.ScanType;
+import com.example.libraryweek1.adapter.service.ScanWriteAheadLog.ApplyResult;
+import com.example.libraryweek1.config.ScanWalProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScanWriteAheadLogTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 10, 0, 0, 123_456_789);
+
+    @TempDir
+    Path directory;
+
+    private final ScanWalProperties properties = new ScanWalProperties();
+    private ScanWriteAheadLog scanLog;
+
+    @BeforeEach
+    void setUp() {
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setRetryBackoff(Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (scanLog != null) {
+            scanLog.shutdown();
+        }
+    }
+
+    @Test
+    void append_shouldAcknowledgeDurableScansAndApplyThemInOrder() throws IOException {
+        scanLog = open();
+        List<LibraryScanDto> applied = new CopyOnWriteArrayList<>();
+
+        List<CompletableFuture<Long>> sequences = List.of(
+                scanLog.append(scan(1001L, ScanType.ENTER, 0)),
+                scanLog.append(scan(1002L, ScanType.ENTER, 1)),
+                scanLog.append(scan(1001L, ScanType.EXIT, 2)));
+        assertThat(sequences).extracting(CompletableFuture::join).containsExactly(1L, 2L, 3L);
+        scanLog.startConsumer(scan -> {
+            applied.add(scan);
+            return CompletableFuture.completedFuture(ApplyResult.APPLIED);
+        });
+
+        await(() -> scanLog.getCheckpoint() == 3);
+        assertThat(applied).containsExactly(
+                scan(1001L, ScanType.ENTER, 0), scan(1002L, ScanType.ENTER, 1), scan(1001L, ScanType.EXIT, 2));
+        assertThat(scanLog.getLag()).isZero();
+    }
+
+    @Test
+    void restart_shouldReplayScansAfterTheCheckpoint() throws Exception {
+        properties.setApplyBatchSize(1);
+        scanLog = open();
+        for (int i = 0; i < 3; i++) {
+            scanLog.append(scan(1001L + i, ScanType.ENTER, i)).join();
+        }
+        // Postgres goes down while the third scan is applied
+        scanLog.startConsumer(scan -> CompletableFuture.completedFuture(scan.getStudentId() != 1003L ? ApplyResult.APPLIED : ApplyResult.RETRY));
+        await(() -> scanLog.getCheckpoint() == 2);
+        scanLog.shutdown();
+
+        List<LibraryScanDto> replayed = new CopyOnWriteArrayList<>();
+        scanLog = open();
+        assertThat(scanLog.getCheckpoint()).isEqualTo(2);
+        assertThat(scanLog.append(scan(1004L, ScanType.ENTER, 3)).join()).isEqualTo(4L);
+        scanLog.startConsumer(scan -> {
+            replayed.add(scan);
+            return CompletableFuture.completedFuture(ApplyResult.APPLIED);
+        });
+
+        await(() -> scanLog.getCheckpoint() == 4);
+        assertThat(replayed).extracting(LibraryScanDto::getStudentId).containsExactly(1003L, 1004L);
+    }
+
+    @Test
+    void restart_shouldNotReplayAnEnterAppliedBeforeTheCheckpointWasWritten() throws Exception {
+        scanLog = open();
+        scanLog.append(scan(1001L, ScanType.ENTER, 0)).join();
+        scanLog.append(scan(1002L, ScanType.ENTER, 1)).join();
+        // 1001 checks in, then the node stops while 1002 still waits for Postgres: no checkpoint for the batch
+        List<LibraryScanDto> applied = new CopyOnWriteArrayList<>();
+        scanLog.startConsumer(scan -> {
+            if (scan.getStudentId() == 1002L) {
+                return CompletableFuture.completedFuture(ApplyResult.RETRY);
+            }
+            applied.add(scan);
+            return CompletableFuture.completedFuture(ApplyResult.APPLIED);
+        });
+        await(() -> applied.size() == 1);
+        scanLog.shutdown();
+
+        List<LibraryScanDto> replayed = new CopyOnWriteArrayList<>();
+        scanLog = open();
+        assertThat(scanLog.getCheckpoint()).isZero();
+        scanLog.startConsumer(scan -> {
+            replayed.add(scan);
+            return CompletableFuture.completedFuture(ApplyResult.APPLIED);
+        });
+
+        // Replaying 1001's ENTER would take the confirmed reservation for a break that ran out and cancel it
+        await(() -> scanLog.getCheckpoint() == 2);
+        assertThat(replayed).extracting(LibraryScanDto::getStudentId).containsExactly(1002L);
+    }
+
+    @Test
+    void consumer_shouldKeepAStudentsLaterScansBehindOneThatIsRetried() throws IOException {
+        scanLog = open();
+        scanLog.append(scan(1001L, ScanType.ENTER, 0)).join();
+        scanLog.append(scan(1002L, ScanType.ENTER, 1)).join();
+        scanLog.append(scan(1001L, ScanType.EXIT, 2)).join();
+        List<String> attempts = new CopyOnWriteArrayList<>();
+        AtomicInteger enterFailures = new AtomicInteger(2);
+
+        scanLog.startConsumer(scan -> {
+            attempts.add(scan.getStudentId() + " " + scan.getScanType());
+            boolean retry = scan.getStudentId() == 1001L && scan.getScanType() == ScanType.ENTER
+                    && enterFailures.getAndDecrement() > 0;
+            return CompletableFuture.completedFuture(retry ? ApplyResult.RETRY : ApplyResult.APPLIED);
+        });
+
+        await(() -> scanLog.getCheckpoint() == 3);
+        // 1002 is not held up by 1001, and 1001's EXIT only goes once its ENTER is through
+        assertThat(attempts).containsExactly("1001 ENTER", "1002 ENTER", "1001 ENTER", "1001 ENTER", "1001 EXIT");
+    }
+
+    @Test
+    void consumer_shouldDeadLetterRejectedScansAndScansOutOfAttempts() throws IOException {
+        properties.setMaxApplyAttempts(3);
+        scanLog = open();
+        scanLog.append(scan(1001L, ScanType.ENTER, 0)).join();
+        scanLog.append(scan(1002L, ScanType.ENTER, 1)).join();
+        scanLog.append(scan(1001L, ScanType.EXIT, 2)).join();
+        AtomicInteger stuckAttempts = new AtomicInteger();
+
+        scanLog.startConsumer(scan -> {
+            if (scan.getStudentId() == 1002L) {
+                stuckAttempts.incrementAndGet();
+                return CompletableFuture.completedFuture(ApplyResult.RETRY);
+            }
+            return CompletableFuture.completedFuture(scan.getScanType() == ScanType.ENTER ? ApplyResult.REJECTED : ApplyResult.APPLIED);
+        });
+
+        await(() -> scanLog.getCheckpoint() == 3);
+        assertThat(stuckAttempts.get()).isEqualTo(3);
+        assertThat(Files.readAllLines(directory.resolve("dead-letter")))
+                .containsExactlyInAnyOrder("1,1001,ENTER,2024-01-01T10:00:00.123456789,rejected",
+                        "2,1002,ENTER,2024-01-01T10:00:01.123456789,failed 3 times");
+    }
+
+    @Test
+    void append_shouldRollSegmentsAndDeleteAppliedOnes() throws IOException {
+        properties.setSegmentSize(DataSize.ofBytes(2L * ScanWriteAheadLog.RECORD_BYTES));
+        scanLog = open();
+        for (int i = 0; i < 5; i++) {
+            scanLog.append(scan(1001L, i % 2 == 0 ? ScanType.ENTER : ScanType.EXIT, i)).join();
+        }
+        assertThat(segmentFiles()).hasSize(3);
+
+        scanLog.startConsumer(scan -> CompletableFuture.completedFuture(ApplyResult.APPLIED));
+
+        await(() -> scanLog.getCheckpoint() == 5);
+        assertThat(segmentFiles()).containsExactly("00000000000000000005.wal");
+    }
+
+    @Test
+    void recovery_shouldDropATornRecordAtTheTail() throws Exception {
+        scanLog = open();
+        scanLog.append(scan(1001L, ScanType.ENTER, 0)).join();
+        scanLog.append(scan(1002L, ScanType.ENTER, 1)).join();
+        scanLog.shutdown();
+        // Corrupt the payload of the second record, as a crash in the middle of writing it would
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("00000000000000000001.wal").toFile(), "rw")) {
+            file.seek(ScanWriteAheadLog.RECORD_BYTES + 14);
+            file.write(0x7f);
+        }
+
+        List<LibraryScanDto> applied = new CopyOnWriteArrayList<>();
+        scanLog = open();
+        assertThat(scanLog.append(scan(1003L, ScanType.ENTER, 2)).join()).isEqualTo(2L);
+        scanLog.startConsumer(scan -> {
+            applied.add(scan);
+            return CompletableFuture.completedFuture(ApplyResult.APPLIED);
+        });
+
+        await(() -> scanLog.getCheckpoint() == 2);
+        assertThat(applied).extracting(LibraryScanDto::getStudentId).containsExactly(1001L, 1003L);
+    }
+
+    private ScanWriteAheadLog open() throws IOException {
+        return new ScanWriteAheadLog(properties, new SimpleMeterRegistry());
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).filter(name -> name.endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    private static LibraryScanDto scan(Long studentId, ScanType scanType, int secondsAfter) {
+        return new LibraryScanDto(studentId, scanType, NOW.plusSeconds(secondsAfter));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.libraryweek1.adapter.service.impl;
+
+import com.example.libraryweek1.adapter.dto.LibraryScanDto;
+import com.example.libraryweek1.adapter.dto.LibraryScanResponseDto;
+import com.example.libraryweek1.adapter.dto.ScanType;
+import com.example.libraryweek1.adapter.service.ScanDeduplicator;
+import com.example.libraryweek1.adapter.service.ScanExecutionEngine;
+import com.example.libraryweek1.adapter.service.ScanLaneDispatcher;
+import com.example.libraryweek1.adapter.service.ScanWriteAheadLog;
+import com.example.libraryweek1.adapter.service.ScanWriteAheadLog.ApplyResult;
+import com.example.libraryweek1.config.ScanProperties;
+import com.example.libraryweek1.jobs.service.BreakManagementService;
+import com.example.libraryweek1.occupancy.service.OccupancyService;
+import com.example.libraryweek1.reservation.entity.Reservation;
+import com.example.libraryweek1.reservation.event.DeskPresenceChangedEvent;
+import com.example.libraryweek1.reservation.exception.ResourceNotFoundException;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.reservation.service.ReservationService;
+import com.example.libraryweek1.user.entity.User;
+import com.example.libraryweek1.user.service.UserLookupService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryScanAdapterServiceImplTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    @Mock
+    private ReservationRepository reservationRepository;
+    @Mock
+    private BreakManagementService breakManagementService;
+    @Mock
+    private ReservationService reservationService;
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private SetOperations<String, String> setOperations;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private OccupancyService occupancyService;
+    @Mock
+    private UserLookupService userLookupService;
+    @Mock
+    private ScanDeduplicator scanDeduplicator;
+    @Mock
+    private ScanWriteAheadLog scanWriteAheadLog;
+
+    private final ScanProperties scanProperties = new ScanProperties();
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private ScanExecutionEngine engine;
+    private ScanLaneDispatcher dispatcher;
+    private LibraryScanAdapterServiceImpl scanAdapterService;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        engine = new ScanExecutionEngine(scanProperties, meterRegistry);
+        dispatcher = new ScanLaneDispatcher(engine, scanProperties, meterRegistry);
+        scanAdapterService = new LibraryScanAdapterServiceImpl(reservationRepository, breakManagementService,
+                reservationService, redisTemplate, eventPublisher, occupancyService, userLookupService, engine,
+                dispatcher, scanDeduplicator, scanWriteAheadLog, scanProperties, validatorFactory.getValidator());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+        engine.shutdown();
+        validatorFactory.close();
+    }
+
+    @Test
+    void processLibraryScans_shouldProcessEachScanLikeALiveOneAndAnswerInOrder() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.add("library:users:inside", "1001")).thenReturn(1L);
+        when(setOperations.remove("library:users:inside", "1001")).thenReturn(1L);
+        stubStarted(reservation(7L, 1001L, 1, 11));
+        when(breakManagementService.handleCheckIn(7L, NOW)).thenReturn(30L);
+        when(breakManagementService.handleCheckOut(7L, NOW.plusMinutes(5))).thenReturn(25L);
+
+        List<LibraryScanResponseDto> responses = scanAdapterService.processLibraryScans(List.of(
+                scan(1001L, ScanType.ENTER, NOW),
+                scan(2002L, ScanType.ENTER, NOW),
+                new LibraryScanDto(null, ScanType.EXIT, NOW),
+                scan(1001L, ScanType.EXIT, NOW.plusMinutes(5)))).join();
+
+        assertThat(responses).extracting(LibraryScanResponseDto::getMessage)
+                .containsExactly("Checked in", "No reservation", "Invalid scan: Student ID is required", "Checked in");
+        assertThat(responses).extracting(LibraryScanResponseDto::getRemainingBreakMinutes)
+                .containsExactly(30L, 0L, 0L, 25L);
+        verify(setOperations).add("library:users:inside", "1001");
+        verify(setOperations).add("library:users:inside", "2002");
+        verify(setOperations).remove("library:users:inside", "1001");
+        verify(occupancyService).recordVisit(1001L, 1);
+        verify(occupancyService).recordVisit(2002L, null);
+        verify(eventPublisher).publishEvent(new DeskPresenceChangedEvent(1, 11, true));
+        verify(eventPublisher).publishEvent(new DeskPresenceChangedEvent(1, 11, false));
+    }
+
+    @Test
+    void processLibraryScans_shouldLookUpTheReservationAgainForEveryScanOfAStudent() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        Reservation reservation = reservation(7L, 1001L, 1, 11);
+        when(userLookupService.findByStudentId(1001L)).thenReturn(Optional.of(reservation.getUser()));
+        // The check-out ends the reservation, so the second ENTER of the batch no longer finds it
+        when(reservationRepository.findStartedByUserId(7L))
+                .thenReturn(Optional.of(reservation), Optional.of(reservation), Optional.empty());
+        when(breakManagementService.handleCheckIn(7L, NOW)).thenReturn(30L);
+        when(breakManagementService.handleCheckOut(7L, NOW.plusMinutes(5))).thenReturn(0L);
+
+        List<LibraryScanResponseDto> responses = scanAdapterService.processLibraryScans(List.of(
+                scan(1001L, ScanType.ENTER, NOW),
+                scan(1001L, ScanType.EXIT, NOW.plusMinutes(5)),
+                scan(1001L, ScanType.ENTER, NOW.plusMinutes(10)))).join();
+
+        assertThat(responses).extracting(LibraryScanResponseDto::getMessage)
+                .containsExactly("Checked in", "Checked in", "No reservation");
+        verify(reservationRepository, times(3)).findStartedByUserId(7L);
+        // Presence and check-in/check-out of one scan run together, before the next scan of the student
+        InOrder inOrder = inOrder(setOperations, breakManagementService);
+        inOrder.verify(setOperations).add("library:users:inside", "1001");
+        inOrder.verify(breakManagementService).handleCheckIn(7L, NOW);
+        inOrder.verify(setOperations).remove("library:users:inside", "1001");
+        inOrder.verify(breakManagementService).handleCheckOut(7L, NOW.plusMinutes(5));
+        inOrder.verify(setOperations).add("library:users:inside", "1001");
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void processLibraryScans_shouldSplitLargeBatchesIntoChunks() {
+        scanProperties.setMaxBatchSize(2);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        List<LibraryScanDto> scans = new ArrayList<>();
+        for (long studentId = 1; studentId <= 5; studentId++) {
+            scans.add(scan(studentId, ScanType.ENTER, NOW));
+        }
+
+        List<LibraryScanResponseDto> responses = scanAdapterService.processLibraryScans(scans).join();
+
+        assertThat(responses).hasSize(5).allMatch(response -> "No reservation".equals(response.getMessage()));
+        for (long studentId = 1; studentId <= 5; studentId++) {
+            verify(userLookupService).findByStudentId(studentId);
+        }
+    }
+
+    @Test
+    void processLibraryScans_shouldReportErrorPerScan_whenCheckInFails() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        stubStarted(reservation(7L, 1001L, 1, 11));
+        when(breakManagementService.handleCheckIn(eq(7L), any())).thenThrow(new IllegalStateException("boom"));
+
+        List<LibraryScanResponseDto> responses = scanAdapterService.processLibraryScans(List.of(
+                scan(1001L, ScanType.ENTER, NOW),
+                scan(2002L, ScanType.EXIT, NOW))).join();
+
+        assertThat(responses).extracting(LibraryScanResponseDto::getMessage)
+                .containsExactly("Error: boom", "No reservation");
+        verify(eventPublisher, never()).publishEvent(any(DeskPresenceChangedEvent.class));
+        verify(scanDeduplicator).release(scan(1001L, ScanType.ENTER, NOW));
+    }
+
+    @Test
+    void processLibraryScans_shouldApplyAStudentsScansInTimestampOrder_whenSentOutOfOrder() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        stubStarted(reservation(7L, 1001L, 1, 11));
+        when(breakManagementService.handleCheckIn(7L, NOW)).thenReturn(30L);
+        when(breakManagementService.handleCheckOut(7L, NOW.plusMinutes(5))).thenReturn(25L);
+
+        List<LibraryScanResponseDto> responses = scanAdapterService.processLibraryScans(List.of(
+                scan(1001L, ScanType.EXIT, NOW.plusMinutes(5)),
+                scan(1001L, ScanType.ENTER, NOW))).join();
+
+        // Answered in request order, applied in timestamp order
+        assertThat(responses).extracting(LibraryScanResponseDto::getRemainingBreakMinutes).containsExactly(25L, 30L);
+        InOrder inOrder = inOrder(setOperations, breakManagementService);
+        inOrder.verify(setOperations).add("library:users:inside", "1001");
+        inOrder.verify(breakManagementService).handleCheckIn(7L, NOW);
+        inOrder.verify(setOperations).remove("library:users:inside", "1001");
+        inOrder.verify(breakManagementService).handleCheckOut(7L, NOW.plusMinutes(5));
+    }
+
+    @Test
+    void processLibraryScans_shouldApplyScansOnTheStudentsLane() {
+        scanProperties.setLaneCapacity(0);
+
+        List<LibraryScanResponseDto> responses = scanAdapterService.processLibraryScans(List.of(
+                scan(1001L, ScanType.ENTER, NOW),
+                new LibraryScanDto(null, ScanType.EXIT, NOW))).join();
+
+        // A full lane sheds the scan like a live one, reported per scan so only it is resent
+        assertThat(responses).extracting(LibraryScanResponseDto::getMessage)
+                .containsExactly("Error: Scan Queue Is Full, Please Retry", "Invalid scan: Student ID is required");
+        verifyNoInteractions(userLookupService, redisTemplate, breakManagementService);
+    }
+
+    @Test
+    void processLibraryScans_shouldAnswerRepeatedScansFromTheDeduplicator_withoutApplyingThemAgain() {
+        LibraryScanDto enter = scan(1001L, ScanType.ENTER, NOW);
+        LibraryScanDto repeat = scan(1001L, ScanType.ENTER, NOW.plusSeconds(5));
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.add("library:users:inside", "1001")).thenReturn(1L);
+        stubStarted(reservation(7L, 1001L, 1, 11));
+        when(scanDeduplicator.claim(enter)).thenReturn(Optional.empty());
+        when(scanDeduplicator.claim(repeat)).thenReturn(Optional.of(new LibraryScanResponseDto(30L, "Checked in")));
+        when(breakManagementService.handleCheckIn(7L, NOW)).thenReturn(30L);
+
+        List<LibraryScanResponseDto> responses = scanAdapterService.processLibraryScans(List.of(enter, repeat)).join();
+
+        assertThat(responses).extracting(LibraryScanResponseDto::getRemainingBreakMinutes).containsExactly(30L, 30L);
+        verify(breakManagementService, times(1)).handleCheckIn(any(), any());
+        verify(eventPublisher, times(1)).publishEvent(any(DeskPresenceChangedEvent.class));
+        verify(scanDeduplicator).remember(enter, responses.get(0));
+        verify(scanDeduplicator, never()).remember(eq(repeat), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processLibraryScan_shouldCheckInWithoutPublishingPresence_whenStudentIsAlreadyInside() {
+        LibraryScanDto scan = scan(1001L, ScanType.ENTER, NOW);
+        when(scanDeduplicator.deduplicate(eq(scan), any()))
+                .thenAnswer(invocation -> ((Supplier<CompletableFuture<LibraryScanResponseDto>>) invocation.getArgument(1)).get());
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        // A second ENTER without an EXIT in between (missed exit scan, gate double-fire past the window)
+        when(setOperations.add("library:users:inside", "1001")).thenReturn(0L);
+        stubStarted(reservation(7L, 1001L, 1, 11));
+        when(breakManagementService.handleCheckIn(7L, NOW)).thenReturn(30L);
+
+        LibraryScanResponseDto response = scanAdapterService.processLibraryScan(scan).join();
+
+        assertThat(response.getRemainingBreakMinutes()).isEqualTo(30L);
+        verify(eventPublisher, never()).publishEvent(any(DeskPresenceChangedEvent.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processLibraryScan_shouldAnswerRepeatWithStoredResponse_withoutProcessingIt() {
+        LibraryScanDto scan = scan(1001L, ScanType.ENTER, NOW);
+        when(scanDeduplicator.deduplicate(eq(scan), any()))
+                .thenAnswer(invocation -> ((Supplier<CompletableFuture<LibraryScanResponseDto>>) invocation.getArgument(1)).get());
+        when(scanDeduplicator.claim(scan)).thenReturn(Optional.of(new LibraryScanResponseDto(30L, "Checked in")));
+
+        LibraryScanResponseDto response = scanAdapterService.processLibraryScan(scan).join();
+
+        assertThat(response.getRemainingBreakMinutes()).isEqualTo(30L);
+        verifyNoInteractions(userLookupService, reservationRepository, breakManagementService, redisTemplate);
+        verify(scanDeduplicator, never()).remember(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processLibraryScan_shouldReleaseClaim_whenScanFails() {
+        LibraryScanDto scan = scan(1001L, ScanType.ENTER, NOW);
+        when(scanDeduplicator.deduplicate(eq(scan), any()))
+                .thenAnswer(invocation -> ((Supplier<CompletableFuture<LibraryScanResponseDto>>) invocation.getArgument(1)).get());
+        when(scanDeduplicator.claim(scan)).thenReturn(Optional.empty());
+        when(userLookupService.findByStudentId(1001L)).thenThrow(new IllegalStateException("boom"));
+
+        LibraryScanResponseDto response = scanAdapterService.processLibraryScan(scan).join();
+
+        assertThat(response.getMessage()).isEqualTo("Error: boom");
+        verify(scanDeduplicator).release(scan);
+        verify(scanDeduplicator, never()).remember(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processLibraryScan_shouldAcknowledgeOnceLogged_whenWriteAheadLogIsEnabled() {
+        LibraryScanDto scan = scan(1001L, ScanType.ENTER, NOW);
+        when(scanWriteAheadLog.isEnabled()).thenReturn(true);
+        when(scanWriteAheadLog.append(scan)).thenReturn(CompletableFuture.completedFuture(1L));
+        when(scanDeduplicator.deduplicate(eq(scan), any()))
+                .thenAnswer(invocation -> ((Supplier<CompletableFuture<LibraryScanResponseDto>>) invocation.getArgument(1)).get());
+
+        LibraryScanResponseDto response = scanAdapterService.processLibraryScan(scan).join();
+
+        assertThat(response.getMessage()).isEqualTo("Accepted");
+        verifyNoInteractions(userLookupService, reservationRepository, breakManagementService, redisTemplate);
+    }
+
+    @Test
+    void processLibraryScans_shouldLogValidScansAndAnswerInOrder_whenWriteAheadLogIsEnabled() {
+        LibraryScanDto enter = scan(1001L, ScanType.ENTER, NOW);
+        LibraryScanDto exit = scan(1001L, ScanType.EXIT, NOW.plusMinutes(5));
+        when(scanWriteAheadLog.isEnabled()).thenReturn(true);
+        when(scanWriteAheadLog.append(enter)).thenReturn(CompletableFuture.completedFuture(1L));
+        when(scanWriteAheadLog.append(exit)).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("disk full")));
+
+        List<LibraryScanResponseDto> responses = scanAdapterService.processLibraryScans(
+                List.of(enter, new LibraryScanDto(1002L, null, NOW), exit)).join();
+
+        assertThat(responses).extracting(LibraryScanResponseDto::getMessage)
+                .containsExactly("Accepted", "Invalid scan: Scan type is required", "Error: disk full");
+        verifyNoInteractions(reservationRepository, redisTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loggedScans_shouldBeRetriedOnlyWhenTheFailureCanPass() {
+        LibraryScanDto down = scan(1001L, ScanType.ENTER, NOW);
+        LibraryScanDto unknown = scan(2002L, ScanType.ENTER, NOW);
+        when(scanWriteAheadLog.isEnabled()).thenReturn(true);
+        when(scanDeduplicator.claim(any())).thenReturn(Optional.empty());
+        when(userLookupService.findByStudentId(1001L)).thenThrow(new RedisConnectionFailureException("down"));
+        when(userLookupService.findByStudentId(2002L)).thenThrow(new ResourceNotFoundException("Reservation Not Found"));
+        scanAdapterService.startScanLogConsumer();
+        ArgumentCaptor<Function<LibraryScanDto, CompletableFuture<ApplyResult>>> applier = ArgumentCaptor.forClass(Function.class);
+        verify(scanWriteAheadLog).startConsumer(applier.capture());
+
+        assertThat(applier.getValue().apply(down).join()).isEqualTo(ApplyResult.RETRY);
+        assertThat(applier.getValue().apply(unknown).join()).isEqualTo(ApplyResult.REJECTED);
+        verify(scanDeduplicator).release(down);
+        verify(scanDeduplicator).release(unknown);
+    }
+
+    private static LibraryScanDto scan(Long studentId, ScanType scanType, LocalDateTime timestamp) {
+        return new LibraryScanDto(studentId, scanType, timestamp);
+    }
+
+    // Lenient: other students of the same batch are looked up too and find no user
+    private void stubStarted(Reservation reservation) {
+        lenient().when(userLookupService.findByStudentId(reservation.getUser().getStudentId())).thenReturn(Optional.of(reservation.getUser()));
+        when(reservationRepository.findStartedByUserId(reservation.getUser().getId())).thenReturn(Optional.of(reservation));
+    }
+
+    private static Reservation reservation(Long id, Long studentId, Integer roomId, Integer deskId) {
+        return Reservation.builder()
+                .id(id)
+                .roomId(roomId)
+                .deskId(deskId)
+                .user(User.builder().id(id).studentId(studentId).build())
+                .build();
+    }
+}
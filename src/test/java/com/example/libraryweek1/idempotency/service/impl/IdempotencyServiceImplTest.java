@@ -0,0 +1,221 @@
+package com.example.libraryweek1.idempotency.service.impl;
+
+import com.example.libraryweek1.config.IdempotencyProperties;
+import com.example.libraryweek1.idempotency.exception.IdempotencyConflictException;
+import com.example.libraryweek1.idempotency.exception.IdempotencyKeyMismatchException;
+import com.example.libraryweek1.reservation.dto.ReservationResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTest {
+
+    private static final String KEY = "idempotency:reservation:create:1:abc";
+    private static final Map<String, Object> REQUEST = Map.of("userId", 1, "deskId", 11);
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final IdempotencyProperties properties = new IdempotencyProperties();
+    private final JsonMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private IdempotencyServiceImpl idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        properties.setWaitTimeout(Duration.ofMillis(100));
+        properties.setPollInterval(Duration.ofMillis(10));
+        idempotencyService = new IdempotencyServiceImpl(redisTemplate, objectMapper, properties);
+    }
+
+    @Test
+    void execute_shouldRunActionDirectly_whenNoKeyGiven() {
+        String result = idempotencyService.execute("reservation:create:1", null, REQUEST, String.class, () -> "booked");
+
+        assertThat(result).isEqualTo("booked");
+    }
+
+    @Test
+    void execute_shouldStoreFirstResponseAndReplayItLocally() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+        AtomicInteger executions = new AtomicInteger();
+
+        ReservationResponse first = idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().id((long) executions.incrementAndGet()).build());
+        ReservationResponse second = idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().id((long) executions.incrementAndGet()).build());
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(second.getId()).isEqualTo(first.getId());
+        verify(valueOperations).set(eq(KEY), anyString(), eq(properties.getTtl()));
+    }
+
+    @Test
+    void execute_shouldReturnStoredResponse_whenKeyAlreadyCompletedOnAnotherNode() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(KEY)).thenReturn(fingerprint(REQUEST) + ":{\"id\":7}");
+
+        ReservationResponse result = idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> {
+                    throw new IllegalStateException("must not run");
+                });
+
+        assertThat(result.getId()).isEqualTo(7L);
+    }
+
+    @Test
+    void execute_shouldThrowConflict_whenFirstRequestStillInProgress() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(KEY)).thenReturn("__in_progress__:" + fingerprint(REQUEST));
+
+        assertThatThrownBy(() -> idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().build()))
+                .isInstanceOf(IdempotencyConflictException.class);
+    }
+
+    @Test
+    void execute_shouldForgetKey_whenActionFails() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertThatThrownBy(() -> idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> {
+                    throw new IllegalStateException("booking failed");
+                }))
+                .isInstanceOf(IllegalStateException.class);
+        verify(redisTemplate).delete(KEY);
+    }
+
+    @Test
+    void execute_shouldReturnResponse_whenStoringItFails() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+        doThrow(new RedisConnectionFailureException("down")).when(valueOperations).set(eq(KEY), anyString(), any(Duration.class));
+        AtomicInteger executions = new AtomicInteger();
+
+        ReservationResponse first = idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().id((long) executions.incrementAndGet()).build());
+        ReservationResponse retry = idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().id((long) executions.incrementAndGet()).build());
+
+        // The booking happened, so the client gets it; a retry on this node replays it instead of booking again
+        assertThat(first.getId()).isEqualTo(1L);
+        assertThat(retry.getId()).isEqualTo(1L);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_shouldRetryTheStore_whenRedisFailsOnce() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+        doThrow(new RedisConnectionFailureException("blip")).doNothing()
+                .when(valueOperations).set(eq(KEY), anyString(), any(Duration.class));
+
+        idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().id(1L).build());
+
+        verify(valueOperations, times(2)).set(eq(KEY), startsWith(fingerprint(REQUEST) + ":{"), eq(properties.getTtl()));
+        verify(valueOperations, never()).set(eq(KEY), startsWith("__completed__"), any(Duration.class));
+    }
+
+    @Test
+    void execute_shouldMarkKeyCompleted_whenTheResponseCannotBeStored() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+        doThrow(new RedisConnectionFailureException("timeout"))
+                .when(valueOperations).set(eq(KEY), startsWith(fingerprint(REQUEST) + ":{"), any(Duration.class));
+
+        idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().id(1L).build());
+
+        verify(valueOperations, times(properties.getStoreAttempts()))
+                .set(eq(KEY), startsWith(fingerprint(REQUEST) + ":{"), eq(properties.getTtl()));
+        verify(valueOperations).set(KEY, "__completed__:" + fingerprint(REQUEST), properties.getTtl());
+    }
+
+    @Test
+    void execute_shouldThrowConflictWithoutRunningAgain_whenKeyCompletedWithoutResponse() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(KEY)).thenReturn("__completed__:" + fingerprint(REQUEST));
+        AtomicInteger executions = new AtomicInteger();
+
+        assertThatThrownBy(() -> idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().id((long) executions.incrementAndGet()).build()))
+                .isInstanceOf(IdempotencyConflictException.class)
+                .hasMessageContaining("Already Completed");
+        assertThat(executions.get()).isZero();
+    }
+
+    @Test
+    void execute_shouldRejectKeyReusedForDifferentRequest_whenStoredOnAnotherNode() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(KEY)).thenReturn(fingerprint(Map.of("userId", 1, "deskId", 12)) + ":{\"id\":7}");
+
+        assertThatThrownBy(() -> idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().build()))
+                .isInstanceOf(IdempotencyKeyMismatchException.class);
+    }
+
+    @Test
+    void execute_shouldRejectKeyReusedForDifferentRequest_whenReplayingLocally() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(true);
+        idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().id(1L).build());
+
+        assertThatThrownBy(() -> idempotencyService.execute("reservation:create:1", "abc", Map.of("userId", 1, "deskId", 12),
+                ReservationResponse.class, () -> ReservationResponse.builder().id(2L).build()))
+                .isInstanceOf(IdempotencyKeyMismatchException.class);
+    }
+
+    @Test
+    void execute_shouldRejectKeyReusedForDifferentRequest_whileFirstStillInProgress() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(KEY)).thenReturn("__in_progress__:" + fingerprint(Map.of("userId", 1, "deskId", 12)));
+
+        assertThatThrownBy(() -> idempotencyService.execute("reservation:create:1", "abc", REQUEST, ReservationResponse.class,
+                () -> ReservationResponse.builder().build()))
+                .isInstanceOf(IdempotencyKeyMismatchException.class);
+    }
+
+    // --- Helper Logic ---
+    private String fingerprint(Object request) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.libraryweek1.jobs.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalLeaseServiceTest {
+
+    private final LocalLeaseService leaseService = new LocalLeaseService();
+
+    @Test
+    void runIfLeader_shouldSkip_whileAnotherRunHoldsTheLease() throws Exception {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Boolean> leader = executor.submit(() -> leaseService.runIfLeader("slots:cleanup", () -> {
+                held.countDown();
+                await(release);
+            }));
+            held.await();
+
+            AtomicBoolean ran = new AtomicBoolean();
+            assertThat(leaseService.runIfLeader("slots:cleanup", () -> ran.set(true))).isFalse();
+            assertThat(ran).isFalse();
+            // Other tasks are not affected
+            assertThat(leaseService.runIfLeader("slots:generate", () -> ran.set(true))).isTrue();
+
+            release.countDown();
+            assertThat(leader.get(1, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(leaseService.runIfLeader("slots:cleanup", () -> { })).isTrue();
+    }
+
+    @Test
+    void runIfLeader_shouldReleaseLease_whenWorkFails() {
+        try {
+            leaseService.runIfLeader("slots:cleanup", () -> {
+                throw new IllegalStateException("boom");
+            });
+        } catch (IllegalStateException expected) {
+            // the failed holder must not keep the lease
+        }
+
+        assertThat(leaseService.runIfLeader("slots:cleanup", () -> { })).isTrue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
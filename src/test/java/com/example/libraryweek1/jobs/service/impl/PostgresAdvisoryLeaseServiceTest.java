@@ -0,0 +1,90 @@
+package com.example.libraryweek1.jobs.service.impl;
+
+import com.example.libraryweek1.AbstractIntegrationTest;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostgresAdvisoryLeaseServiceTest extends AbstractIntegrationTest {
+
+    private static final int LOCK_NAMESPACE = 0x4C494252;
+
+    @Autowired
+    private PostgresAdvisoryLeaseService leaseService;
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void runIfLeader_shouldSkip_whenAnotherSessionHoldsTheLock() throws Exception {
+        AtomicBoolean ran = new AtomicBoolean();
+        // Another "node": a separate session holding the same advisory lock
+        try (Connection otherNode = dataSource.getConnection()) {
+            execute(otherNode, "SELECT pg_advisory_lock(?, hashtext(?))", "slots:cleanup");
+
+            assertThat(leaseService.runIfLeader("slots:cleanup", () -> ran.set(true))).isFalse();
+            assertThat(ran).isFalse();
+
+            execute(otherNode, "SELECT pg_advisory_unlock(?, hashtext(?))", "slots:cleanup");
+        }
+
+        assertThat(leaseService.runIfLeader("slots:cleanup", () -> ran.set(true))).isTrue();
+        assertThat(ran).isTrue();
+    }
+
+    @Test
+    void runIfLeader_shouldFailOver_whenHolderSessionDies() throws Exception {
+        try (Connection deadNode = dataSource.getConnection()) {
+            execute(deadNode, "SELECT pg_advisory_lock(?, hashtext(?))", "slots:generate");
+            // Simulates the holder crashing: the physical session ends without unlocking
+            deadNode.unwrap(Connection.class).close();
+        }
+
+        assertThat(leaseService.runIfLeader("slots:generate", () -> { })).isTrue();
+    }
+
+    @Test
+    void runIfLeader_shouldLeaveTheWholeApplicationPoolToTheWork() throws Exception {
+        int poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        List<Connection> taken = new ArrayList<>();
+
+        // The work can take every application connection while the lease connection stays held
+        boolean ran = leaseService.runIfLeader("occupancy:reconcile", () -> {
+            try {
+                for (int i = 0; i < poolSize; i++) {
+                    taken.add(dataSource.getConnection());
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                taken.forEach(connection -> {
+                    try {
+                        connection.close();
+                    } catch (SQLException ignored) {
+                        // Returned to the pool or already gone
+                    }
+                });
+            }
+        });
+
+        assertThat(ran).isTrue();
+        assertThat(taken).hasSize(poolSize);
+    }
+
+    private static void execute(Connection connection, String sql, String task) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, LOCK_NAMESPACE);
+            statement.setString(2, task);
+            statement.executeQuery();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.libraryweek1.jobs.service.impl;
+
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.reservation.entity.Reservation;
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import com.example.libraryweek1.user.entity.User;
+import com.example.libraryweek1.utilization.service.UtilizationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationSweepServiceImplTest {
+
+    private static final LocalDateTime BOUNDARY = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    @Mock
+    private ReservationRepository reservationRepository;
+    @Mock
+    private ReservationSlotRepository reservationSlotRepository;
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private SetOperations<String, String> setOperations;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private UtilizationService utilizationService;
+
+    private ReservationSweepServiceImpl sweepService;
+
+    @BeforeEach
+    void setUp() {
+        sweepService = new ReservationSweepServiceImpl(reservationRepository, reservationSlotRepository, redisTemplate,
+                eventPublisher, new ReservationProperties(), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new LocalLeaseService(), utilizationService);
+    }
+
+    @Test
+    void sweepBoundary_shouldCancelOnlyStudentsNotInside() {
+        Reservation inside = pending(1L, 100L, 11);
+        Reservation noShow = pending(2L, 200L, 12);
+        when(reservationRepository.findUnconfirmedStartedBy(BOUNDARY)).thenReturn(List.of(inside, noShow));
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.isMember("library:users:inside", "100", "200"))
+                .thenReturn(Map.of("100", true, "200", false));
+        when(reservationRepository.findPendingByIdsForUpdate(List.of(2L))).thenReturn(List.of(noShow));
+        when(reservationRepository.cancelPendingByIds(List.of(2L), "User did not check in on time")).thenReturn(1);
+
+        sweepService.sweepBoundary(BOUNDARY);
+
+        verify(utilizationService).recordCompletionsEndedBy(BOUNDARY);
+        verify(reservationRepository).completeEndedBy(BOUNDARY);
+        verify(utilizationService).recordNoShows(List.of(2L));
+        verify(reservationSlotRepository).releaseSlotsByReservationIds(List.of(2L));
+        verify(eventPublisher).publishEvent(new SlotsChangedEvent(1, 12, BOUNDARY, BOUNDARY.plusHours(1), false));
+    }
+
+    @Test
+    void sweepBoundary_shouldOnlyComplete_whenNothingUnconfirmed() {
+        when(reservationRepository.findUnconfirmedStartedBy(BOUNDARY)).thenReturn(List.of());
+
+        sweepService.sweepBoundary(BOUNDARY);
+
+        verify(reservationRepository).completeEndedBy(BOUNDARY);
+        verify(reservationRepository, never()).cancelPendingByIds(anyList(), anyString());
+        verifyNoInteractions(redisTemplate, reservationSlotRepository, eventPublisher);
+    }
+
+    @Test
+    void sweepBoundary_shouldInvalidateAllAvailabilityVersions_whenReservationsCompleted() {
+        when(reservationRepository.completeEndedBy(BOUNDARY)).thenReturn(3);
+        when(reservationRepository.findUnconfirmedStartedBy(BOUNDARY)).thenReturn(List.of());
+
+        sweepService.sweepBoundary(BOUNDARY);
+
+        verify(eventPublisher).publishEvent(new ReservationStatusChangedEvent(null, null, ReservationStatus.COMPLETED));
+    }
+
+    @Test
+    void sweepBoundary_shouldNotReleaseSlots_whenStudentCheckedInMeanwhile() {
+        Reservation noShow = pending(2L, 200L, 12);
+        when(reservationRepository.findUnconfirmedStartedBy(BOUNDARY)).thenReturn(List.of(noShow));
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.isMember("library:users:inside", new Object[]{"200"})).thenReturn(Map.of("200", false));
+        when(reservationRepository.findPendingByIdsForUpdate(List.of(2L))).thenReturn(List.of());
+
+        sweepService.sweepBoundary(BOUNDARY);
+
+        verify(reservationRepository, never()).cancelPendingByIds(anyList(), anyString());
+        verify(utilizationService, never()).recordNoShows(anyList());
+        verifyNoInteractions(reservationSlotRepository, eventPublisher);
+    }
+
+    @Test
+    void sweepBoundary_shouldCountAndPublishOnlyCancelledNoShows_whenOneCheckedInMeanwhile() {
+        Reservation checkedIn = pending(1L, 100L, 11);
+        Reservation noShow = pending(2L, 200L, 12);
+        when(reservationRepository.findUnconfirmedStartedBy(BOUNDARY)).thenReturn(List.of(checkedIn, noShow));
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.isMember("library:users:inside", "100", "200"))
+                .thenReturn(Map.of("100", false, "200", false));
+        // Reservation 1 was confirmed between the read and the cancellation
+        when(reservationRepository.findPendingByIdsForUpdate(List.of(1L, 2L))).thenReturn(List.of(noShow));
+        when(reservationRepository.cancelPendingByIds(List.of(2L), "User did not check in on time")).thenReturn(1);
+
+        sweepService.sweepBoundary(BOUNDARY);
+
+        verify(utilizationService).recordNoShows(List.of(2L));
+        verify(reservationSlotRepository).releaseSlotsByReservationIds(List.of(2L));
+        verify(eventPublisher).publishEvent(new SlotsChangedEvent(1, 12, BOUNDARY, BOUNDARY.plusHours(1), false));
+        verify(eventPublisher, never()).publishEvent(new SlotsChangedEvent(1, 11, BOUNDARY, BOUNDARY.plusHours(1), false));
+    }
+
+    private static Reservation pending(Long id, Long studentId, Integer deskId) {
+        User user = new User();
+        user.setStudentId(studentId);
+        return Reservation.builder()
+                .id(id)
+                .user(user)
+                .roomId(deskId / 10)
+                .deskId(deskId)
+                .startTime(BOUNDARY)
+                .endTime(BOUNDARY.plusHours(1))
+                .status(ReservationStatus.PENDING)
+                .build();
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.libraryweek1.occupancy.service.impl;
+
+import com.example.libraryweek1.jobs.service.impl.LocalLeaseService;
+import com.example.libraryweek1.occupancy.dto.LibraryOccupancyDto;
+import com.example.libraryweek1.occupancy.dto.RoomOccupancyDto;
+import com.example.libraryweek1.occupancy.dto.RoomOccupant;
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.event.DeskPresenceChangedEvent;
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OccupancyServiceImplTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+    @Mock
+    private SetOperations<String, String> setOperations;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    private OccupancyServiceImpl occupancyService;
+
+    @BeforeEach
+    void setUp() {
+        occupancyService = new OccupancyServiceImpl(redisTemplate, reservationRepository, new LocalLeaseService());
+    }
+
+    @Test
+    void getRoomOccupancy_shouldReadCountersInOnePipeline() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(List.of(Arrays.asList("4", "3"), 9L));
+
+        RoomOccupancyDto occupancy = occupancyService.getRoomOccupancy(1);
+
+        assertThat(occupancy.getActiveReservations()).isEqualTo(4);
+        assertThat(occupancy.getPresent()).isEqualTo(3);
+        assertThat(occupancy.getOnBreak()).isEqualTo(1);
+        assertThat(occupancy.getUniqueVisitorsToday()).isEqualTo(9);
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void getLibraryOccupancy_shouldSumRoomCounters() {
+        Map<String, String> counters = Map.of(
+                "room:1:active", "4", "room:1:present", "3",
+                "room:2:active", "2", "room:2:present", "2");
+        // Hash, head count, library visitors, then the visitors of rooms 1, 2 and 3
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(counters, 12L, 30L, 20L, 10L, 0L));
+
+        LibraryOccupancyDto occupancy = occupancyService.getLibraryOccupancy();
+
+        assertThat(occupancy.getInside()).isEqualTo(12);
+        assertThat(occupancy.getActiveReservations()).isEqualTo(6);
+        assertThat(occupancy.getPresent()).isEqualTo(5);
+        assertThat(occupancy.getOnBreak()).isEqualTo(1);
+        assertThat(occupancy.getUniqueVisitorsToday()).isEqualTo(30);
+        assertThat(occupancy.getRooms()).extracting(RoomOccupancyDto::getRoomId).containsExactly(1, 2);
+        assertThat(occupancy.getRooms()).extracting(RoomOccupancyDto::getUniqueVisitorsToday).containsExactly(20L, 10L);
+    }
+
+    @Test
+    void events_shouldIncrementCounters_onCheckInAndScans() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+
+        occupancyService.onReservationStatusChanged(new ReservationStatusChangedEvent(1, 11, ReservationStatus.CONFIRMED));
+        occupancyService.onDeskPresenceChanged(new DeskPresenceChangedEvent(1, 11, true));
+        occupancyService.onDeskPresenceChanged(new DeskPresenceChangedEvent(1, 11, false));
+
+        verify(hashOperations).increment("library:occupancy", "room:1:active", 1L);
+        verify(hashOperations).increment("library:occupancy", "room:1:present", 1L);
+        verify(hashOperations).increment("library:occupancy", "room:1:present", -1L);
+    }
+
+    @Test
+    void leavingConfirmed_shouldDecrementRoomCounters_withoutRecount() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.isMember("library:users:inside", "100")).thenReturn(true);
+        when(setOperations.isMember("library:users:inside", "200")).thenReturn(false);
+
+        occupancyService.onReservationStatusChanged(new ReservationStatusChangedEvent(1, 11, 100L,
+                ReservationStatus.CONFIRMED, ReservationStatus.COMPLETED));
+        occupancyService.onReservationStatusChanged(new ReservationStatusChangedEvent(2, 21, 200L,
+                ReservationStatus.CONFIRMED, ReservationStatus.CANCELLED));
+
+        verify(hashOperations).increment("library:occupancy", "room:1:active", -1L);
+        verify(hashOperations).increment("library:occupancy", "room:1:present", -1L);
+        verify(hashOperations).increment("library:occupancy", "room:2:active", -1L);
+        verify(hashOperations, never()).increment("library:occupancy", "room:2:present", -1L);
+        verify(reservationRepository, never()).findConfirmedOccupants();
+    }
+
+    @Test
+    void transitionsNotInvolvingConfirmed_shouldLeaveCountersAlone() {
+        occupancyService.onReservationStatusChanged(new ReservationStatusChangedEvent(1, 11, null,
+                ReservationStatus.PENDING, ReservationStatus.COMPLETED));
+        occupancyService.onReservationStatusChanged(new ReservationStatusChangedEvent(1, 11, 100L,
+                ReservationStatus.CONFIRMED, ReservationStatus.CONFIRMED));
+
+        verifyNoInteractions(redisTemplate, reservationRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reconcile_shouldRebuildCountersFromConfirmedReservations() {
+        when(reservationRepository.findConfirmedOccupants()).thenReturn(List.of(
+                new RoomOccupant(1, 100L), new RoomOccupant(1, 200L), new RoomOccupant(2, 300L)));
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.isMember("library:users:inside", "100", "200", "300"))
+                .thenReturn(Map.of("100", true, "200", false, "300", true));
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.delete("library:occupancy:dirty")).thenReturn(true);
+
+        occupancyService.onReservationStatusChanged(new ReservationStatusChangedEvent(null, null, ReservationStatus.COMPLETED));
+        // Only marked dirty in the listener; the recount runs on the scheduled, leased check
+        verify(valueOperations).set("library:occupancy:dirty", "1");
+        verify(reservationRepository, never()).findConfirmedOccupants();
+        occupancyService.reconcileIfDirty();
+
+        ArgumentCaptor<String> rebuildKey = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<String, String>> values = ArgumentCaptor.forClass(Map.class);
+        verify(hashOperations).putAll(rebuildKey.capture(), values.capture());
+        assertThat(values.getValue()).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "room:1:active", "2", "room:1:present", "1",
+                "room:2:active", "1", "room:2:present", "1"));
+        verify(redisTemplate).rename(rebuildKey.getValue(), "library:occupancy");
+    }
+
+    @Test
+    void reconcileIfDirty_shouldSkipTheRecount_whenNoSetBasedUpdateHappened() {
+        when(redisTemplate.delete("library:occupancy:dirty")).thenReturn(false);
+
+        occupancyService.reconcileIfDirty();
+
+        verifyNoInteractions(reservationRepository);
+    }
+}
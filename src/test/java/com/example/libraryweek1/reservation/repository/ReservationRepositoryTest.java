@@ -1,6 +1,9 @@
 package com.example.libraryweek1.reservation.repository;
 
 import com.example.libraryweek1.AbstractIntegrationTest;
+import com.example.libraryweek1.reservation.dto.HistoryCursor;
+import com.example.libraryweek1.reservation.dto.ReservationResponse;
+import com.example.libraryweek1.reservation.entity.ArchivedReservation;
 import com.example.libraryweek1.reservation.entity.Reservation;
 import com.example.libraryweek1.reservation.entity.ReservationStatus;
 import com.example.libraryweek1.user.entity.User;
@@ -8,11 +11,13 @@ import com.example.libraryweek1.user.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -22,6 +27,9 @@ class ReservationRepositoryTest extends AbstractIntegrationTest {
     @Autowired
     private ReservationRepository reservationRepository;
 
+    @Autowired
+    private ArchivedReservationRepository archivedReservationRepository;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -82,6 +90,13 @@ class ReservationRepositoryTest extends AbstractIntegrationTest {
         assertThat(found.get().getStatus()).isEqualTo(ReservationStatus.CONFIRMED);
     }
 
+    @Test
+    void findStartedByUserId_shouldReturnConfirmedReservation() {
+        Optional<Reservation> found = reservationRepository.findStartedByUserId(testUser.getId());
+        assertThat(found).isPresent();
+        assertThat(found.get().getId()).isEqualTo(testReservation.getId());
+    }
+
     @Test
     void findStartedByRoomId_shouldReturnConfirmedReservations() {
         Optional<List<Reservation>> found = reservationRepository.findStartedByRoomId(1);
@@ -127,10 +142,93 @@ class ReservationRepositoryTest extends AbstractIntegrationTest {
         assertThat(found.get()).hasSize(1);
     }
 
+    @Test
+    void findPendingByIdsForUpdate_shouldReturnOnlyStillPendingReservations() {
+        Reservation pendingReservation = Reservation.builder()
+                .user(testUser)
+                .roomId(1)
+                .deskId(12)
+                .startTime(LocalDateTime.now())
+                .endTime(LocalDateTime.now().plusHours(1))
+                .status(ReservationStatus.PENDING)
+                .onBreak(false)
+                .breakTime(0L)
+                .build();
+        reservationRepository.save(pendingReservation);
+
+        List<Reservation> found = reservationRepository.findPendingByIdsForUpdate(
+                List.of(testReservation.getId(), pendingReservation.getId()));
+        assertThat(found).extracting(Reservation::getId).containsExactly(pendingReservation.getId());
+    }
+
+    @Test
+    void archivedHistory_shouldPageByStudentThroughTheUserId() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 10, 0);
+        for (long id = 1; id <= 3; id++) {
+            archivedReservationRepository.save(ArchivedReservation.builder()
+                    .id(1_000 + id)
+                    .userId(testUser.getId())
+                    .roomId(1)
+                    .deskId(11)
+                    .startTime(createdAt)
+                    .endTime(createdAt.plusHours(1))
+                    .status(ReservationStatus.COMPLETED)
+                    .createdAt(createdAt.plusMinutes(id))
+                    .archivedAt(createdAt.plusDays(30))
+                    .build());
+        }
+
+        List<ReservationResponse> firstPage = archivedReservationRepository.findHistoryPageByStudentId(
+                testUser.getStudentId(), HistoryCursor.FIRST.createdAt(), HistoryCursor.FIRST.id(), Limit.of(2));
+        HistoryCursor cursor = HistoryCursor.of(firstPage.getLast());
+        List<ReservationResponse> secondPage = archivedReservationRepository.findHistoryPageByStudentId(
+                testUser.getStudentId(), cursor.createdAt(), cursor.id(), Limit.of(2));
+
+        assertThat(firstPage).extracting(ReservationResponse::getId).containsExactly(1_003L, 1_002L);
+        assertThat(secondPage).extracting(ReservationResponse::getId).containsExactly(1_001L);
+        try (Stream<ReservationResponse> all = archivedReservationRepository.streamHistoryByUserId(testUser.getId())) {
+            assertThat(all).hasSize(3);
+        }
+    }
+
     @Test
     void findActiveReservations_shouldReturnConfirmedReservations() {
         List<Reservation> found = reservationRepository.findActiveReservations(LocalDateTime.now());
         assertThat(found).hasSize(1);
         assertThat(found.get(0).getStatus()).isEqualTo(ReservationStatus.CONFIRMED);
     }
+
+    @Test
+    void findHistoryPageByUserId_shouldPageNewestFirstWithoutGapsOrRepeats() {
+        for (int i = 0; i < 4; i++) {
+            reservationRepository.save(Reservation.builder()
+                    .user(testUser)
+                    .roomId(1)
+                    .deskId(11)
+                    .startTime(LocalDateTime.now().minusDays(i + 1))
+                    .endTime(LocalDateTime.now().minusDays(i + 1).plusHours(1))
+                    .status(ReservationStatus.COMPLETED)
+                    .onBreak(false)
+                    .build());
+        }
+
+        List<ReservationResponse> firstPage = reservationRepository.findHistoryPageByUserId(testUser.getId(),
+                HistoryCursor.FIRST.createdAt(), HistoryCursor.FIRST.id(), Limit.of(3));
+        HistoryCursor cursor = HistoryCursor.of(firstPage.getLast());
+        List<ReservationResponse> secondPage = reservationRepository.findHistoryPageByUserId(testUser.getId(),
+                cursor.createdAt(), cursor.id(), Limit.of(3));
+
+        assertThat(firstPage).hasSize(3);
+        assertThat(secondPage).hasSize(2);
+        assertThat(Stream.concat(firstPage.stream(), secondPage.stream()).map(ReservationResponse::getId).distinct())
+                .hasSize(5);
+        assertThat(firstPage.get(0).getUserId()).isEqualTo(testUser.getId());
+    }
+
+    @Test
+    void streamHistoryByStudentId_shouldStreamProjectedRows() {
+        try (Stream<ReservationResponse> history = reservationRepository.streamHistoryByStudentId(testUser.getStudentId())) {
+            assertThat(history.map(ReservationResponse::getId)).containsExactly(testReservation.getId());
+        }
+    }
 }
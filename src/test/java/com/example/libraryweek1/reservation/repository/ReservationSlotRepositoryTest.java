@@ -1,6 +1,7 @@
 package com.example.libraryweek1.reservation.repository;
 
 import com.example.libraryweek1.AbstractIntegrationTest;
+import com.example.libraryweek1.reservation.dto.SlotKey;
 import com.example.libraryweek1.reservation.entity.ReservationSlot;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -38,6 +39,28 @@ class ReservationSlotRepositoryTest extends AbstractIntegrationTest {
         assertThat(exists).isTrue();
     }
 
+    @Test
+    void findSlotKeysBetween_shouldReturnOnlyThatDaysKeys() {
+        LocalDateTime today = LocalDateTime.now().withHour(10).withMinute(0).withSecond(0).withNano(0);
+        ReservationSlot todaySlot = new ReservationSlot();
+        todaySlot.setDeskId(1);
+        todaySlot.setRoomId(1);
+        todaySlot.setSlotStart(today);
+        todaySlot.setSlotEnd(today.plusMinutes(30));
+        reservationSlotRepository.save(todaySlot);
+
+        ReservationSlot tomorrowSlot = new ReservationSlot();
+        tomorrowSlot.setDeskId(1);
+        tomorrowSlot.setRoomId(1);
+        tomorrowSlot.setSlotStart(today.plusDays(1));
+        tomorrowSlot.setSlotEnd(today.plusDays(1).plusMinutes(30));
+        reservationSlotRepository.save(tomorrowSlot);
+
+        List<SlotKey> keys = reservationSlotRepository.findSlotKeysBetween(
+                today.toLocalDate().atStartOfDay(), today.toLocalDate().plusDays(1).atStartOfDay());
+        assertThat(keys).containsExactly(new SlotKey(1, today));
+    }
+
     @Test
     void deleteBySlotEndBefore_shouldDeleteOldSlots() {
         ReservationSlot oldSlot = new ReservationSlot();
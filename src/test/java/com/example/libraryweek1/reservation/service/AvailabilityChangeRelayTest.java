@@ -0,0 +1,126 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.event.DeskPresenceChangedEvent;
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotWindowChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityChangeRelayTest {
+
+    private static final String CHANNEL = "availability:changes";
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+    @Mock
+    private DeskAvailabilityIndex indexA;
+    @Mock
+    private AvailabilityStreamBus streamBusA;
+    @Mock
+    private DeskAvailabilityIndex indexB;
+    @Mock
+    private AvailabilityStreamBus streamBusB;
+
+    private final JsonMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final AvailabilityVersionTracker trackerA = new AvailabilityVersionTracker();
+    private final AvailabilityVersionTracker trackerB = new AvailabilityVersionTracker();
+    private AvailabilityChangeRelay nodeA;
+    private AvailabilityChangeRelay nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = new AvailabilityChangeRelay(indexA, trackerA, streamBusA, redisTemplate, objectMapper, listenerContainer);
+        nodeB = new AvailabilityChangeRelay(indexB, trackerB, streamBusB, redisTemplate, objectMapper, listenerContainer);
+    }
+
+    @Test
+    void slotsChanged_shouldReachTheIndexBeforeTheVersion_onTheOtherNode() {
+        SlotsChangedEvent booked = new SlotsChangedEvent(1, 11, START, START.plusHours(1), true);
+        String deskTag = trackerB.deskTag(11);
+
+        nodeA.onSlotsChanged(booked);
+        nodeB.onMessage(published(), null);
+
+        InOrder inOrder = inOrder(indexB, streamBusB);
+        inOrder.verify(indexB).onSlotsChanged(booked);
+        inOrder.verify(streamBusB).onSlotsChanged(booked);
+        assertThat(trackerB.deskTag(11)).isNotEqualTo(deskTag);
+    }
+
+    @Test
+    void statusWindowAndPresenceChanges_shouldBeAppliedOnTheOtherNode() {
+        String roomTag = trackerB.roomTag(2);
+
+        nodeA.onReservationStatusChanged(new ReservationStatusChangedEvent(2, 21, 1001L,
+                ReservationStatus.CONFIRMED, ReservationStatus.CANCELLED));
+        nodeB.onMessage(published(), null);
+        String afterCancel = trackerB.roomTag(2);
+        nodeA.onSlotWindowChanged(new SlotWindowChangedEvent(LocalDate.of(2024, 1, 2)));
+        nodeB.onMessage(published(), null);
+        nodeA.onDeskPresenceChanged(new DeskPresenceChangedEvent(2, 21, true));
+        nodeB.onMessage(published(), null);
+
+        assertThat(afterCancel).isNotEqualTo(roomTag);
+        assertThat(trackerB.roomTag(2)).isNotIn(roomTag, afterCancel);
+        verify(indexB).onSlotWindowChanged(new SlotWindowChangedEvent(LocalDate.of(2024, 1, 2)));
+        verify(streamBusB).onDeskPresenceChanged(new DeskPresenceChangedEvent(2, 21, true));
+    }
+
+    @Test
+    void ownMessages_shouldBeIgnored() {
+        String deskTag = trackerA.deskTag(11);
+
+        nodeA.onSlotsChanged(new SlotsChangedEvent(1, 11, START, START.plusHours(1), false));
+        nodeA.onMessage(published(), null);
+
+        verifyNoInteractions(indexA, streamBusA);
+        assertThat(trackerA.deskTag(11)).isEqualTo(deskTag);
+    }
+
+    @Test
+    void broadcast_shouldNotFailTheCaller_whenRedisIsDown() {
+        when(redisTemplate.convertAndSend(eq(CHANNEL), anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+        nodeA.onSlotsChanged(new SlotsChangedEvent(1, 11, START, START.plusHours(1), true));
+
+        verify(redisTemplate).convertAndSend(eq(CHANNEL), anyString());
+    }
+
+    // --- Helper Logic ---
+    private Message published() {
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, atLeastOnce()).convertAndSend(eq(CHANNEL), payload.capture());
+        return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8),
+                payload.getValue().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.StreamProperties;
+import com.example.libraryweek1.reservation.event.DeskPresenceChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvailabilityStreamBusTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private SimpleMeterRegistry meterRegistry;
+    private AvailabilityStreamBus bus;
+
+    @BeforeEach
+    void setUp() {
+        StreamProperties properties = new StreamProperties();
+        properties.setQueueCapacity(2);
+        properties.setHeartbeatInterval(Duration.ofMinutes(1));
+        meterRegistry = new SimpleMeterRegistry();
+        bus = new AvailabilityStreamBus(properties, meterRegistry);
+    }
+
+    @Test
+    void publish_shouldReachOnlySubscribersOfTheRoom() throws InterruptedException {
+        RecordingEmitter room1 = new RecordingEmitter();
+        RecordingEmitter room2 = new RecordingEmitter();
+        bus.register(1, room1);
+        bus.register(2, room2);
+
+        bus.onSlotsChanged(new SlotsChangedEvent(1, 11, START, START.plusHours(1), true));
+        bus.onDeskPresenceChanged(new DeskPresenceChangedEvent(1, 11, true));
+
+        assertThat(room1.sent.poll(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(room1.sent.poll(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(room2.sent.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void publish_shouldDropSubscriber_whenItFallsBehind() {
+        BlockedEmitter slow = new BlockedEmitter();
+        bus.register(1, slow);
+
+        // The first delta is stuck in send(), two more fill the queue, the fourth overflows it
+        for (int i = 0; i < 4; i++) {
+            bus.onSlotsChanged(new SlotsChangedEvent(1, 11, START.plusMinutes(30L * i), START.plusMinutes(30L * (i + 1)), true));
+            awaitFirstSend(slow);
+        }
+
+        assertThat(bus.subscriberCount(1)).isZero();
+        assertThat(meterRegistry.counter("reservation.stream.dropped").count()).isEqualTo(1.0);
+        slow.release.countDown();
+    }
+
+    @Test
+    void completion_shouldUnregisterSubscriber() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        bus.register(1, emitter);
+        assertThat(bus.subscriberCount(1)).isEqualTo(1);
+
+        emitter.complete();
+        // Without a servlet response the emitter never calls back, so completion is driven by the drainer
+        bus.onSlotsChanged(new SlotsChangedEvent(1, 11, START, START.plusHours(1), true));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bus.subscriberCount(1) > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(bus.subscriberCount(1)).isZero();
+    }
+
+    @Test
+    void register_shouldUnregister_whenEmitterCompletesWhileBeingWired() {
+        CallbackEmitter emitter = new CallbackEmitter(true);
+
+        bus.register(1, emitter);
+
+        assertThat(bus.subscriberCount(1)).isZero();
+        assertThat(meterRegistry.get("reservation.stream.connections").gauge().value()).isZero();
+    }
+
+    @Test
+    void register_shouldNotBeLost_whenLastSubscriberOfTheRoomClosesConcurrently() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            CallbackEmitter leaving = new CallbackEmitter(false);
+            bus.register(1, leaving);
+            CallbackEmitter joining = new CallbackEmitter(false);
+
+            Thread closer = Thread.ofVirtual().start(leaving.completion);
+            bus.register(1, joining);
+            closer.join();
+
+            assertThat(bus.subscriberCount(1)).isEqualTo(1);
+            joining.completion.run();
+            assertThat(bus.subscriberCount(1)).isZero();
+        }
+        assertThat(meterRegistry.get("reservation.stream.connections").gauge().value()).isZero();
+    }
+
+    private static void awaitFirstSend(BlockedEmitter emitter) {
+        try {
+            assertThat(emitter.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<SseEventBuilder> sent = new LinkedBlockingQueue<>();
+        private volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (completed) {
+                throw new IllegalStateException("Emitter already completed");
+            }
+            sent.add(builder);
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+    }
+
+    // Hands the completion callback to the test, or runs it at once like an emitter that already completed
+    private static class CallbackEmitter extends SseEmitter {
+        private final boolean alreadyCompleted;
+        private volatile Runnable completion;
+
+        private CallbackEmitter(boolean alreadyCompleted) {
+            this.alreadyCompleted = alreadyCompleted;
+        }
+
+        @Override
+        public synchronized void onCompletion(Runnable callback) {
+            completion = callback;
+            if (alreadyCompleted) {
+                callback.run();
+            }
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+        }
+
+        @Override
+        public synchronized void complete() {
+        }
+    }
+
+    private static class BlockedEmitter extends SseEmitter {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+    }
+}
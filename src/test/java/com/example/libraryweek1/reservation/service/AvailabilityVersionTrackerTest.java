@@ -0,0 +1,57 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.event.ReservationStatusChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotWindowChangedEvent;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvailabilityVersionTrackerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private final AvailabilityVersionTracker tracker = new AvailabilityVersionTracker();
+
+    @Test
+    void onSlotsChanged_shouldBumpOnlyTheDeskAndItsRoom() {
+        String desk11 = tracker.deskTag(11);
+        String desk12 = tracker.deskTag(12);
+        String room1 = tracker.roomTag(1);
+        String room2 = tracker.roomTag(2);
+
+        tracker.onSlotsChanged(new SlotsChangedEvent(1, 11, START, START.plusHours(1), true));
+
+        assertThat(tracker.deskTag(11)).isNotEqualTo(desk11);
+        assertThat(tracker.roomTag(1)).isNotEqualTo(room1);
+        assertThat(tracker.deskTag(12)).isEqualTo(desk12);
+        assertThat(tracker.roomTag(2)).isEqualTo(room2);
+    }
+
+    @Test
+    void onReservationStatusChanged_shouldBumpEverything_whenRoomUnknown() {
+        String desk11 = tracker.deskTag(11);
+        String room2 = tracker.roomTag(2);
+
+        tracker.onReservationStatusChanged(new ReservationStatusChangedEvent(null, null, ReservationStatus.COMPLETED));
+
+        assertThat(tracker.deskTag(11)).isNotEqualTo(desk11);
+        assertThat(tracker.roomTag(2)).isNotEqualTo(room2);
+    }
+
+    @Test
+    void tags_shouldNeverRepeat_acrossDeskAndWindowChanges() {
+        String initial = tracker.deskTag(11);
+        tracker.onReservationStatusChanged(new ReservationStatusChangedEvent(1, 11, ReservationStatus.CONFIRMED));
+        String afterCheckIn = tracker.deskTag(11);
+        tracker.onSlotWindowChanged(new SlotWindowChangedEvent(LocalDate.now()));
+        String afterNewDay = tracker.deskTag(11);
+
+        assertThat(afterCheckIn).isNotEqualTo(initial);
+        assertThat(afterNewDay).isNotIn(initial, afterCheckIn);
+    }
+}
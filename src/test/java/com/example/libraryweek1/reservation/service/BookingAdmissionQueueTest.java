@@ -0,0 +1,116 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.AdmissionProperties;
+import com.example.libraryweek1.reservation.exception.AdmissionRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookingAdmissionQueueTest {
+
+    private final AdmissionProperties admissionProperties = new AdmissionProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void admit_shouldCapConcurrentBookings() {
+        admissionProperties.setMaxConcurrent(3);
+        admissionProperties.setAdmissionTimeout(Duration.ofSeconds(5));
+        BookingAdmissionQueue queue = new BookingAdmissionQueue(admissionProperties, meterRegistry);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 100; i++) {
+                executor.submit(() -> queue.admit(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    sleep(2);
+                    return inFlight.decrementAndGet();
+                }));
+            }
+        }
+
+        assertThat(maxInFlight.get()).isEqualTo(3);
+        assertThat(meterRegistry.get("reservation.admission.wait").timer().count()).isEqualTo(100);
+    }
+
+    @Test
+    void admit_shouldRejectWith429_whenNoPermitWithinTimeout() throws Exception {
+        admissionProperties.setMaxConcurrent(1);
+        admissionProperties.setAdmissionTimeout(Duration.ofMillis(50));
+        BookingAdmissionQueue queue = new BookingAdmissionQueue(admissionProperties, meterRegistry);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> queue.admit(() -> {
+                held.countDown();
+                await(release);
+                return null;
+            }));
+            held.await();
+
+            assertThatThrownBy(() -> queue.admit(() -> "booked"))
+                    .isInstanceOfSatisfying(AdmissionRejectedException.class, e -> {
+                        assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                        assertThat(e.getRetryAfter()).isEqualTo(admissionProperties.getRetryAfter());
+                    });
+            release.countDown();
+        }
+        assertThat(meterRegistry.get("reservation.admission.rejected").tag("reason", "timeout").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void admit_shouldRejectWith503_whenQueueIsFull() throws Exception {
+        admissionProperties.setMaxConcurrent(1);
+        admissionProperties.setMaxWaiting(1);
+        admissionProperties.setAdmissionTimeout(Duration.ofSeconds(5));
+        BookingAdmissionQueue queue = new BookingAdmissionQueue(admissionProperties, meterRegistry);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> queue.admit(() -> {
+                held.countDown();
+                await(release);
+                return null;
+            }));
+            held.await();
+            executor.submit(() -> queue.admit(() -> "queued"));
+            while (queue.getWaiting() == 0) {
+                Thread.onSpinWait();
+            }
+
+            assertThatThrownBy(() -> queue.admit(() -> "booked"))
+                    .isInstanceOfSatisfying(AdmissionRejectedException.class,
+                            e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+            release.countDown();
+        }
+        assertThat(queue.getInFlight()).isZero();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.reservation.dto.SlotsDto;
+import com.example.libraryweek1.reservation.entity.ReservationSlot;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeskAvailabilityIndexTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+
+    @Mock
+    private ReservationSlotRepository slotRepository;
+    @Mock
+    private RangeReservationStore rangeReservationStore;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DeskAvailabilityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DeskAvailabilityIndex(slotRepository, rangeReservationStore, new ReservationProperties(),
+                transactionManager);
+    }
+
+    @Test
+    void rebuild_shouldIndexOnlyFreeSlots() {
+        List<ReservationSlot> slots = daySlots(11, 1);
+        slots.get(0).setBooked(true);
+        when(slotRepository.findAll()).thenReturn(slots);
+
+        index.rebuild();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.getFreeSlots(11)).hasSize(SlotMaintenanceService.SLOTS_PER_DAY - 1);
+        assertThat(index.getFreeSlots(11).get(0).getStartTime()).isEqualTo(DAY.atTime(9, 30));
+        assertThat(index.getFreeSlotsRoom(1)).hasSize(SlotMaintenanceService.SLOTS_PER_DAY - 1);
+    }
+
+    @Test
+    void onSlotsChanged_shouldFlipBookedAndFreedRanges() {
+        when(slotRepository.findAll()).thenReturn(daySlots(11, 1));
+        index.rebuild();
+
+        index.onSlotsChanged(new SlotsChangedEvent(1, 11, DAY.atTime(10, 0), DAY.atTime(11, 0), true));
+        List<SlotsDto> afterBooking = index.getFreeSlots(11);
+        assertThat(afterBooking).hasSize(SlotMaintenanceService.SLOTS_PER_DAY - 2);
+        assertThat(afterBooking).noneMatch(slot -> slot.getStartTime().equals(DAY.atTime(10, 30)));
+
+        index.onSlotsChanged(new SlotsChangedEvent(1, 11, DAY.atTime(10, 0), DAY.atTime(11, 0), false));
+        assertThat(index.getFreeSlots(11)).hasSize(SlotMaintenanceService.SLOTS_PER_DAY);
+    }
+
+    @Test
+    void findCandidateDesks_shouldPreferSmallestEnclosingFreeRun() {
+        List<ReservationSlot> slots = new ArrayList<>(daySlots(11, 1));
+        slots.addAll(daySlots(12, 1));
+        slots.addAll(daySlots(13, 1));
+        // Desk 12: only 10:00-11:30 free around the request; desk 13: 10:00-11:00 booked
+        slots.stream().filter(slot -> slot.getDeskId() == 12)
+                .filter(slot -> slot.getSlotStart().isBefore(DAY.atTime(10, 0)) || !slot.getSlotStart().isBefore(DAY.atTime(11, 30)))
+                .forEach(slot -> slot.setBooked(true));
+        slots.stream().filter(slot -> slot.getDeskId() == 13)
+                .filter(slot -> slot.getSlotStart().getHour() == 10)
+                .forEach(slot -> slot.setBooked(true));
+        when(slotRepository.findAll()).thenReturn(slots);
+        index.rebuild();
+
+        List<Integer> candidates = index.findCandidateDesks(1, DAY.atTime(10, 0), DAY.atTime(11, 0));
+
+        assertThat(candidates).containsExactly(12, 11);
+        assertThat(index.findCandidateDesks(2, DAY.atTime(10, 0), DAY.atTime(11, 0))).isEmpty();
+    }
+
+    @Test
+    void getRoomFreeMasks_shouldReturnMasksPerDeskAndZeroForDaysNotIndexed() {
+        List<ReservationSlot> slots = new ArrayList<>(daySlots(12, 1));
+        slots.addAll(daySlots(11, 1));
+        slots.get(0).setBooked(true);
+        when(slotRepository.findAll()).thenReturn(slots);
+        index.rebuild();
+
+        Map<Integer, int[]> masks = index.getRoomFreeMasks(1, DAY, 2);
+
+        int fullDay = (1 << SlotMaintenanceService.SLOTS_PER_DAY) - 1;
+        assertThat(masks.keySet()).containsExactly(11, 12);
+        assertThat(masks.get(11)).containsExactly(fullDay, 0);
+        assertThat(masks.get(12)).containsExactly(fullDay & ~1, 0);
+        assertThat(index.getRoomFreeMasks(2, DAY, 2)).isEmpty();
+    }
+
+    private List<ReservationSlot> daySlots(Integer deskId, Integer roomId) {
+        List<ReservationSlot> slots = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(DAY, SlotMaintenanceService.OPENING_TIME);
+        for (int i = 0; i < SlotMaintenanceService.SLOTS_PER_DAY; i++) {
+            LocalDateTime slotStart = start.plusMinutes((long) i * SlotMaintenanceService.SLOT_DURATION_MINUTES);
+            slots.add(ReservationSlot.builder()
+                    .deskId(deskId)
+                    .roomId(roomId)
+                    .slotStart(slotStart)
+                    .slotEnd(slotStart.plusMinutes(SlotMaintenanceService.SLOT_DURATION_MINUTES))
+                    .build());
+        }
+        return slots;
+    }
+}
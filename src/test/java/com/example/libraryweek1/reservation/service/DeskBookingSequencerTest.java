@@ -0,0 +1,105 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.reservation.exception.ReservationNotAvailableException;
+import com.example.libraryweek1.reservation.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeskBookingSequencerTest {
+
+    private final ReservationProperties reservationProperties = new ReservationProperties();
+    private final DeskBookingSequencer sequencer = new DeskBookingSequencer(reservationProperties);
+
+    @Test
+    void runExclusively_shouldAllowOnlyOneBookingPerDeskInFlight() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 50; i++) {
+                executor.submit(() -> sequencer.runExclusively(11, () -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    sleep(2);
+                    return inFlight.decrementAndGet();
+                }));
+            }
+        }
+
+        assertThat(maxInFlight.get()).isEqualTo(1);
+    }
+
+    @Test
+    void runExclusively_shouldNotBlockOtherDesks() throws Exception {
+        CountDownLatch deskHeld = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> holder = executor.submit(() -> sequencer.runExclusively(11, () -> {
+                deskHeld.countDown();
+                await(release);
+                return null;
+            }));
+            deskHeld.await();
+
+            assertThat(sequencer.runExclusively(12, () -> "booked")).isEqualTo("booked");
+            release.countDown();
+            holder.get(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void runExclusively_shouldFailFast_whenDeskStaysBusy() throws Exception {
+        reservationProperties.setSequencerTimeout(Duration.ofMillis(50));
+        CountDownLatch deskHeld = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> sequencer.runExclusively(11, () -> {
+                deskHeld.countDown();
+                await(release);
+                return null;
+            }));
+            deskHeld.await();
+
+            assertThatThrownBy(() -> sequencer.runExclusively(11, () -> "booked"))
+                    .isInstanceOf(ReservationNotAvailableException.class)
+                    .hasMessage("Desk Is Busy, Please Retry");
+            release.countDown();
+        }
+    }
+
+    @Test
+    void runExclusively_shouldRejectUnknownDesk() {
+        assertThatThrownBy(() -> sequencer.runExclusively(999, () -> "booked"))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Desk Not Found");
+        assertThat(sequencer.getQueueLength(999)).isZero();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
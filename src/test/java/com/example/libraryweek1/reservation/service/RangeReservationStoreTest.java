@@ -0,0 +1,86 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.AbstractIntegrationTest;
+import com.example.libraryweek1.reservation.entity.Reservation;
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.exception.ReservationNotAvailableException;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.user.entity.User;
+import com.example.libraryweek1.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@TestPropertySource(properties = "app.reservation.storage=range")
+class RangeReservationStoreTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private RangeReservationStore rangeReservationStore;
+    @Autowired
+    private ReservationRepository reservationRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository.deleteAll();
+        userRepository.deleteAll();
+        testUser = userRepository.save(User.builder()
+                .studentId(12345L)
+                .email("test@example.com")
+                .passwordHash("hashed")
+                .enabled(true)
+                .build());
+    }
+
+    @Test
+    void book_shouldRejectOverlappingRangeOnSameDesk() {
+        LocalDateTime start = LocalDate.now().plusDays(1).atTime(10, 0);
+        rangeReservationStore.book(reservation(11, start, start.plusHours(2), ReservationStatus.PENDING));
+
+        assertThatThrownBy(() -> rangeReservationStore.book(
+                reservation(11, start.plusMinutes(30), start.plusHours(1), ReservationStatus.PENDING)))
+                .isInstanceOf(ReservationNotAvailableException.class);
+    }
+
+    @Test
+    void book_shouldAllowAdjacentRangesAndOtherDesks() {
+        LocalDateTime start = LocalDate.now().plusDays(1).atTime(10, 0);
+        rangeReservationStore.book(reservation(11, start, start.plusHours(1), ReservationStatus.PENDING));
+        rangeReservationStore.book(reservation(11, start.plusHours(1), start.plusHours(2), ReservationStatus.PENDING));
+        rangeReservationStore.book(reservation(12, start, start.plusHours(1), ReservationStatus.PENDING));
+
+        assertThat(reservationRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void book_shouldIgnoreCancelledRanges() {
+        LocalDateTime start = LocalDate.now().plusDays(1).atTime(10, 0);
+        rangeReservationStore.book(reservation(11, start, start.plusHours(1), ReservationStatus.CANCELLED));
+        rangeReservationStore.book(reservation(11, start, start.plusHours(1), ReservationStatus.PENDING));
+
+        assertThat(rangeReservationStore.findWindowSlots())
+                .filteredOn(slot -> slot.getDeskId() == 11 && slot.isBooked())
+                .hasSize(2);
+    }
+
+    private Reservation reservation(Integer deskId, LocalDateTime start, LocalDateTime end, ReservationStatus status) {
+        return Reservation.builder()
+                .user(testUser)
+                .roomId(deskId / 10)
+                .deskId(deskId)
+                .startTime(start)
+                .endTime(end)
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.ArchivalProperties;
+import com.example.libraryweek1.jobs.service.impl.LocalLeaseService;
+import com.example.libraryweek1.reservation.repository.ArchivedReservationRepository;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationArchivalServiceTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+    @Mock
+    private ReservationSlotRepository slotRepository;
+    @Mock
+    private ArchivedReservationRepository archivedReservationRepository;
+
+    private final ArchivalProperties archivalProperties = new ArchivalProperties();
+    private ReservationArchivalService archivalService;
+
+    @BeforeEach
+    void setUp() {
+        archivalProperties.setBatchSize(2);
+        archivalService = new ReservationArchivalService(reservationRepository, slotRepository,
+                archivedReservationRepository, archivalProperties,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new LocalLeaseService());
+    }
+
+    @Test
+    void archiveFinishedReservations_shouldMoveInBoundedBatchesUntilExhausted() {
+        when(reservationRepository.findFinishedIdsEndedBefore(any(), eq(Limit.of(2))))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L));
+
+        archivalService.archiveFinishedReservations();
+
+        InOrder order = inOrder(archivedReservationRepository, slotRepository, reservationRepository);
+        order.verify(archivedReservationRepository).archiveByIds(eq(List.of(1L, 2L)), any());
+        order.verify(slotRepository).detachSlotsByReservationIds(List.of(1L, 2L));
+        order.verify(reservationRepository).deleteByIds(List.of(1L, 2L));
+        order.verify(archivedReservationRepository).archiveByIds(eq(List.of(3L)), any());
+        verify(reservationRepository, times(2)).findFinishedIdsEndedBefore(any(), any());
+    }
+
+    @Test
+    void archiveFinishedReservations_shouldDoNothing_whenDisabled() {
+        archivalProperties.setEnabled(false);
+
+        archivalService.archiveFinishedReservations();
+
+        verifyNoInteractions(reservationRepository, slotRepository, archivedReservationRepository);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.reservation.dto.SlotsDto;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RoomGridServiceTest {
+
+    @Mock
+    private DeskAvailabilityIndex availabilityIndex;
+    @Mock
+    private ReservationService reservationService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AvailabilityVersionTracker versionTracker;
+    private RoomGridService roomGridService;
+
+    @BeforeEach
+    void setUp() {
+        versionTracker = new AvailabilityVersionTracker();
+        roomGridService = new RoomGridService(availabilityIndex, reservationService, versionTracker, objectMapper);
+    }
+
+    @Test
+    void binary_shouldEncodeHeaderAndMasksPerDesk() {
+        Map<Integer, int[]> masks = new TreeMap<>();
+        masks.put(11, new int[]{0xFFFF, 0x0F0F});
+        masks.put(12, new int[]{0x0001, 0});
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.getRoomFreeMasks(eq(1), any(LocalDate.class), eq(2))).thenReturn(masks);
+
+        RoomGridService.GridKey key = roomGridService.key(1, 2);
+        ByteBuffer grid = ByteBuffer.wrap(roomGridService.binary(key));
+
+        assertThat(grid.get()).isEqualTo(RoomGridService.BINARY_FORMAT_VERSION);
+        assertThat(grid.getInt()).isEqualTo(1);
+        assertThat(grid.getInt()).isEqualTo((int) key.firstDay().toEpochDay());
+        assertThat(grid.get()).isEqualTo((byte) 2);
+        assertThat(grid.get()).isEqualTo((byte) SlotMaintenanceService.SLOTS_PER_DAY);
+        assertThat(grid.getShort()).isEqualTo((short) 2);
+        assertThat(grid.getInt()).isEqualTo(11);
+        assertThat(grid.getShort() & 0xFFFF).isEqualTo(0xFFFF);
+        assertThat(grid.getShort() & 0xFFFF).isEqualTo(0x0F0F);
+        assertThat(grid.getInt()).isEqualTo(12);
+        assertThat(grid.getShort() & 0xFFFF).isEqualTo(0x0001);
+        assertThat(grid.getShort() & 0xFFFF).isZero();
+        assertThat(grid.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void json_shouldBeServedFromCacheUntilTheRoomVersionMoves() {
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.getRoomFreeMasks(eq(1), any(LocalDate.class), anyInt())).thenReturn(Map.of(11, new int[5]));
+
+        byte[] first = roomGridService.json(roomGridService.key(1, null));
+        byte[] second = roomGridService.json(roomGridService.key(1, null));
+        roomGridService.binary(roomGridService.key(1, null));
+
+        assertThat(second).isSameAs(first);
+        verify(availabilityIndex, times(1)).getRoomFreeMasks(eq(1), any(LocalDate.class), eq(SlotMaintenanceService.DAYS_TO_PREGENERATE));
+
+        LocalDateTime start = LocalDate.now().atTime(10, 0);
+        versionTracker.onSlotsChanged(new SlotsChangedEvent(1, 11, start, start.plusHours(1), true));
+        RoomGridService.GridKey bumped = roomGridService.key(1, null);
+        roomGridService.json(bumped);
+
+        verify(availabilityIndex, times(2)).getRoomFreeMasks(eq(1), any(LocalDate.class), eq(SlotMaintenanceService.DAYS_TO_PREGENERATE));
+        assertThat(bumped.etag("json")).isNotEqualTo(bumped.etag("bin"));
+    }
+
+    @Test
+    void json_shouldFoldFreeSlots_whenIndexIsNotReady() {
+        LocalDateTime tomorrow = LocalDate.now().plusDays(1).atTime(SlotMaintenanceService.OPENING_TIME);
+        when(availabilityIndex.isReady()).thenReturn(false);
+        when(reservationService.getFreeSlotsRoom(1)).thenReturn(List.of(
+                SlotsDto.builder().roomId(1).deskId(12).startTime(tomorrow).endTime(tomorrow.plusMinutes(30)).build(),
+                SlotsDto.builder().roomId(1).deskId(12).startTime(tomorrow.plusHours(1)).endTime(tomorrow.plusMinutes(90)).build()));
+
+        JsonNode grid = objectMapper.readTree(roomGridService.json(roomGridService.key(1, 99)));
+
+        assertThat(grid.get("days").asInt()).isEqualTo(SlotMaintenanceService.DAYS_TO_PREGENERATE);
+        assertThat(grid.get("desks")).hasSize(4);
+        assertThat(grid.get("desks").get(0).get("deskId").asInt()).isEqualTo(11);
+        JsonNode desk12 = grid.get("desks").get(1).get("freeMasks");
+        assertThat(desk12.get(0).asInt()).isZero();
+        assertThat(desk12.get(1).asInt()).isEqualTo(0b101);
+    }
+}
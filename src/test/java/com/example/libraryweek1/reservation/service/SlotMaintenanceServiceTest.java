@@ -0,0 +1,109 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.jobs.service.impl.LocalLeaseService;
+import com.example.libraryweek1.reservation.dto.SlotKey;
+import com.example.libraryweek1.reservation.entity.ReservationSlot;
+import com.example.libraryweek1.reservation.event.SlotWindowChangedEvent;
+import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SlotMaintenanceServiceTest {
+
+    private static final int ROOM_DAYS = SlotMaintenanceService.DAYS_TO_PREGENERATE * 3; // Rooms 1-3
+
+    @Mock
+    private ReservationSlotRepository slotRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private SlotPartitionManager slotPartitionManager;
+
+    private SlotMaintenanceService slotMaintenanceService;
+
+    @BeforeEach
+    void setUp() {
+        slotMaintenanceService = new SlotMaintenanceService(slotRepository, eventPublisher, new ReservationProperties(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), slotPartitionManager,
+                new LocalLeaseService());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onStartup_shouldQueryOncePerDayAndSaveMissingSlotsPerRoom() {
+        LocalDate today = LocalDate.now();
+        LocalDateTime existingStart = LocalDateTime.of(today, SlotMaintenanceService.OPENING_TIME);
+        when(slotRepository.findSlotKeysBetween(any(), any())).thenReturn(List.of());
+        when(slotRepository.findSlotKeysBetween(today.atStartOfDay(), today.plusDays(1).atStartOfDay()))
+                .thenReturn(List.of(new SlotKey(11, existingStart)));
+
+        slotMaintenanceService.onStartup();
+
+        verify(slotRepository, times(SlotMaintenanceService.DAYS_TO_PREGENERATE)).findSlotKeysBetween(any(), any());
+        ArgumentCaptor<Collection<ReservationSlot>> saved = ArgumentCaptor.forClass(Collection.class);
+        verify(slotRepository, times(ROOM_DAYS)).saveAll(saved.capture());
+        List<ReservationSlot> allSaved = new ArrayList<>();
+        saved.getAllValues().forEach(allSaved::addAll);
+        assertThat(allSaved).hasSize(SlotMaintenanceService.DAYS_TO_PREGENERATE * SlotMaintenanceService.DESK_IDS.size()
+                * SlotMaintenanceService.SLOTS_PER_DAY - 1);
+        assertThat(allSaved).noneMatch(slot -> slot.getDeskId() == 11 && slot.getSlotStart().equals(existingStart));
+        // One transaction per room and day
+        saved.getAllValues().forEach(roomSlots -> {
+            ReservationSlot first = roomSlots.iterator().next();
+            assertThat(roomSlots).extracting(ReservationSlot::getRoomId).containsOnly(first.getRoomId());
+            assertThat(roomSlots).extracting(slot -> slot.getSlotStart().toLocalDate())
+                    .containsOnly(first.getSlotStart().toLocalDate());
+        });
+        verify(eventPublisher).publishEvent(new SlotWindowChangedEvent(today));
+    }
+
+    @Test
+    void generateNewDaySlots_shouldSkipRoomDayFilledConcurrently() {
+        when(slotRepository.findSlotKeysBetween(any(), any())).thenReturn(List.of());
+        when(slotRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenReturn(List.of());
+
+        slotMaintenanceService.generateNewDaySlots();
+
+        // The midnight run checks the whole window; the conflict only loses its own room-day
+        verify(slotRepository, times(SlotMaintenanceService.DAYS_TO_PREGENERATE)).findSlotKeysBetween(any(), any());
+        verify(slotRepository, times(ROOM_DAYS)).saveAll(anyList());
+        verify(eventPublisher).publishEvent(new SlotWindowChangedEvent(LocalDate.now().plusDays(SlotMaintenanceService.DAYS_TO_PREGENERATE - 1)));
+    }
+
+    @Test
+    void cleanupOldSlots_shouldDropPartitionsInsteadOfDeletingRows_whenPartitioned() {
+        when(slotPartitionManager.isEnabled()).thenReturn(true);
+
+        slotMaintenanceService.cleanupOldSlots();
+
+        verify(slotPartitionManager).dropPartitionsBefore(LocalDate.now());
+        verify(slotRepository, never()).deleteBySlotEndBefore(any());
+    }
+}
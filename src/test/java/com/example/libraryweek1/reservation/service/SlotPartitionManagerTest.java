@@ -0,0 +1,62 @@
+package com.example.libraryweek1.reservation.service;
+
+import com.example.libraryweek1.AbstractIntegrationTest;
+import com.example.libraryweek1.reservation.entity.ReservationSlot;
+import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = "app.reservation.slot-partitioning=true")
+class SlotPartitionManagerTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private SlotPartitionManager slotPartitionManager;
+    @Autowired
+    private ReservationSlotRepository reservationSlotRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void startup_shouldConvertTableAndCreateWindowPartitions() {
+        String relkind = jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE relname = 'reservation_slots'", String.class);
+        assertThat(relkind).isEqualTo("p");
+        assertThat(partitions()).contains(SlotPartitionManager.partitionName(LocalDate.now()),
+                SlotPartitionManager.partitionName(LocalDate.now().plusDays(SlotMaintenanceService.DAYS_TO_PREGENERATE)));
+        // Startup generation went into the partitions
+        assertThat(reservationSlotRepository.count()).isPositive();
+    }
+
+    @Test
+    void dropPartitionsBefore_shouldRemoveExpiredDaysWithTheirRows() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        slotPartitionManager.ensurePartitions(yesterday);
+        LocalDateTime slotStart = yesterday.atTime(10, 0);
+        reservationSlotRepository.save(ReservationSlot.builder()
+                .deskId(11)
+                .roomId(1)
+                .slotStart(slotStart)
+                .slotEnd(slotStart.plusMinutes(30))
+                .build());
+
+        int dropped = slotPartitionManager.dropPartitionsBefore(LocalDate.now());
+
+        assertThat(dropped).isEqualTo(1);
+        assertThat(partitions()).doesNotContain(SlotPartitionManager.partitionName(yesterday));
+        assertThat(reservationSlotRepository.findSlotKeysBetween(yesterday.atStartOfDay(), LocalDate.now().atStartOfDay()))
+                .isEmpty();
+    }
+
+    private List<String> partitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = 'reservation_slots'", String.class);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.libraryweek1.reservation.service.impl;
+
+import com.example.libraryweek1.AbstractIntegrationTest;
+import com.example.libraryweek1.config.ReservationProperties.BookingMode;
+import com.example.libraryweek1.reservation.entity.ReservationSlot;
+import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import com.example.libraryweek1.reservation.service.SlotMaintenanceService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Contention benchmark: many clients race for the same desk and time range.
+ * Compares PESSIMISTIC (row locks) with OPTIMISTIC (conditional UPDATE) claims. The claims run straight
+ * against the slot repository, the way ReservationServiceImpl.claimSlots does, so the desk sequencer and
+ * the admission queue in front of a real booking do not serialize the clients before they reach Postgres.
+ * Run with: ./mvnw test -Dtest=BookingContentionBenchmarkTest -Dbenchmark=true
+ */
+@Slf4j
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BookingContentionBenchmarkTest extends AbstractIntegrationTest {
+
+    private static final int CLIENTS = 32;
+    private static final int ROUNDS = 8;
+    private static final int DESK_ID = 11;
+
+    @Autowired
+    private ReservationSlotRepository reservationSlotRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void compareBookingModesUnderContention() throws Exception {
+        // Slots for tomorrow are pregenerated on startup; each round claims a different hour
+        LocalDate day = LocalDate.now().plusDays(1);
+        Result pessimistic = run(BookingMode.PESSIMISTIC, day, 9);
+        Result optimistic = run(BookingMode.OPTIMISTIC, day, 13);
+
+        for (Result result : List.of(pessimistic, optimistic)) {
+            log.info("{}: {} claimed, {} failed, {} rounds, {} ms per round", result.mode(), result.claimed(),
+                    result.failed(), ROUNDS, String.format("%.1f", result.elapsed().toMillis() / (double) ROUNDS));
+        }
+
+        // Exactly one client may win each contested range, whatever the mode
+        assertThat(pessimistic.claimed()).isEqualTo(ROUNDS / 2);
+        assertThat(optimistic.claimed()).isEqualTo(ROUNDS / 2);
+    }
+
+    private Result run(BookingMode mode, LocalDate day, int firstHour) throws Exception {
+        AtomicInteger claimed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long startNanos = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(CLIENTS)) {
+            // Two rounds per hour: the second round finds the hour already claimed
+            for (int round = 0; round < ROUNDS; round++) {
+                LocalDateTime start = day.atTime(firstHour + round / 2, 0);
+                CountDownLatch go = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int client = 0; client < CLIENTS; client++) {
+                    futures.add(executor.submit(() -> {
+                        go.await();
+                        try {
+                            transactionTemplate.executeWithoutResult(status -> claim(mode, start, start.plusHours(1)));
+                            claimed.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                go.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        }
+        return new Result(mode, claimed.get(), failed.get(), Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    // --- Helper Logic ---
+    // Same claims as ReservationServiceImpl.claimSlots; throwing rolls the transaction back like a lost booking
+    private void claim(BookingMode mode, LocalDateTime start, LocalDateTime end) {
+        long requiredSlots = Duration.between(start, end).toMinutes() / SlotMaintenanceService.SLOT_DURATION_MINUTES;
+        if (mode == BookingMode.OPTIMISTIC) {
+            if (reservationSlotRepository.claimSlotsByRangeAndDeskId(DESK_ID, start, end) != requiredSlots) {
+                throw new IllegalStateException("Range already claimed");
+            }
+            return;
+        }
+        List<ReservationSlot> freeSlots = reservationSlotRepository.findPessimisticSlotsByRangeAndDeskId(DESK_ID, start, end)
+                .orElseGet(List::of);
+        if (freeSlots.size() != requiredSlots) {
+            throw new IllegalStateException("Range already claimed");
+        }
+        freeSlots.forEach(slot -> slot.setBooked(true));
+        reservationSlotRepository.saveAll(freeSlots);
+    }
+
+    private record Result(BookingMode mode, int claimed, int failed, Duration elapsed) {
+    }
+}
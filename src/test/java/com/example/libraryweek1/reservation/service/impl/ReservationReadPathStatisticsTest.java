@@ -0,0 +1,111 @@
+package com.example.libraryweek1.reservation.service.impl;
+
+import com.example.libraryweek1.AbstractIntegrationTest;
+import com.example.libraryweek1.reservation.dto.SlotsDto;
+import com.example.libraryweek1.reservation.entity.Reservation;
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.reservation.service.DeskAvailabilityIndex;
+import com.example.libraryweek1.reservation.service.ReservationService;
+import com.example.libraryweek1.user.entity.User;
+import com.example.libraryweek1.user.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts what the database read paths cost per endpoint: one SQL statement and no hydrated entities.
+ * The availability index is mocked (never ready) so every call falls through to Postgres.
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ReservationReadPathStatisticsTest extends AbstractIntegrationTest {
+
+    private static final int ROOM_ID = 1;
+    private static final int DESK_ID = 11;
+
+    @MockitoBean
+    private DeskAvailabilityIndex availabilityIndex;
+
+    @Autowired
+    private ReservationService reservationService;
+    @Autowired
+    private ReservationRepository reservationRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository.deleteAll();
+        userRepository.deleteAll();
+        User user = userRepository.save(User.builder()
+                .studentId(12345L)
+                .email("test@example.com")
+                .passwordHash("hashed")
+                .enabled(true)
+                .build());
+        reservationRepository.save(Reservation.builder()
+                .user(user)
+                .roomId(ROOM_ID)
+                .deskId(DESK_ID)
+                .startTime(LocalDateTime.now())
+                .endTime(LocalDateTime.now().plusHours(1))
+                .status(ReservationStatus.CONFIRMED)
+                .onBreak(false)
+                .breakTime(0L)
+                .build());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void getFreeSlots_shouldRunOneStatementWithoutLoadingEntities() {
+        List<SlotsDto> slots = measure(() -> reservationService.getFreeSlots(DESK_ID));
+
+        assertThat(slots).isNotEmpty().allMatch(slot -> DESK_ID == slot.getDeskId());
+        assertSingleStatementNoEntities();
+    }
+
+    @Test
+    void getFreeSlotsRoom_shouldRunOneStatementWithoutLoadingEntities() {
+        List<SlotsDto> slots = measure(() -> reservationService.getFreeSlotsRoom(ROOM_ID));
+
+        assertThat(slots).isNotEmpty().allMatch(slot -> ROOM_ID == slot.getRoomId());
+        assertSingleStatementNoEntities();
+    }
+
+    @Test
+    void getActiveReservations_shouldRunOneStatementWithoutLoadingEntities() {
+        List<SlotsDto> active = measure(() -> reservationService.getActiveReservations(ROOM_ID));
+
+        assertThat(active).hasSize(1);
+        assertThat(active.get(0).getDeskId()).isEqualTo(DESK_ID);
+        assertSingleStatementNoEntities();
+    }
+
+    // --- Helper Logic ---
+    private List<SlotsDto> measure(Supplier<List<SlotsDto>> call) {
+        statistics.clear();
+        return call.get();
+    }
+
+    private void assertSingleStatementNoEntities() {
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+    }
+}
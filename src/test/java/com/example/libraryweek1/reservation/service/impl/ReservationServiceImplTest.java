@@ -1,23 +1,45 @@
 package com.example.libraryweek1.reservation.service.impl;
 
+import com.example.libraryweek1.config.AdmissionProperties;
+import com.example.libraryweek1.config.ReservationProperties;
+import com.example.libraryweek1.jobs.service.JobService;
 import com.example.libraryweek1.mapper.DataMapper;
+import com.example.libraryweek1.reservation.dto.ReservationHistoryPage;
 import com.example.libraryweek1.reservation.dto.ReservationRequest;
 import com.example.libraryweek1.reservation.dto.ReservationResponse;
+import com.example.libraryweek1.reservation.dto.RoomReservationRequest;
 import com.example.libraryweek1.reservation.dto.SlotsDto;
 import com.example.libraryweek1.reservation.entity.Reservation;
 import com.example.libraryweek1.reservation.entity.ReservationSlot;
 import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.exception.InvalidCursorException;
 import com.example.libraryweek1.reservation.exception.NotConsecutiveSlotsException;
+import com.example.libraryweek1.reservation.exception.ReservationNotAvailableException;
 import com.example.libraryweek1.reservation.exception.ResourceNotFoundException;
+import com.example.libraryweek1.reservation.entity.ArchivedReservation;
+import com.example.libraryweek1.reservation.repository.ArchivedReservationRepository;
 import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.reservation.event.SlotsChangedEvent;
 import com.example.libraryweek1.reservation.repository.ReservationSlotRepository;
+import com.example.libraryweek1.reservation.service.BookingAdmissionQueue;
+import com.example.libraryweek1.reservation.service.DeskAvailabilityIndex;
+import com.example.libraryweek1.reservation.service.DeskBookingSequencer;
+import com.example.libraryweek1.reservation.service.RangeReservationStore;
 import com.example.libraryweek1.user.entity.User;
-import com.example.libraryweek1.user.repository.UserRepository;
+import com.example.libraryweek1.user.service.UserLookupService;
+import com.example.libraryweek1.utilization.service.UtilizationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jobrunr.scheduling.JobScheduler;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -25,11 +47,22 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -42,7 +75,31 @@ class ReservationServiceImplTest {
     @Mock
     private DataMapper dataMapper;
     @Mock
-    private UserRepository userRepository;
+    private UserLookupService userLookupService;
+    @Mock
+    private JobScheduler jobScheduler;
+    @Mock
+    private JobService jobService;
+    @Mock
+    private DeskAvailabilityIndex availabilityIndex;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private RangeReservationStore rangeReservationStore;
+    @Mock
+    private ArchivedReservationRepository archivedReservationRepository;
+    @Mock
+    private UtilizationService utilizationService;
+    @Spy
+    private ReservationProperties reservationProperties = new ReservationProperties();
+    @Spy
+    private DeskBookingSequencer bookingSequencer = new DeskBookingSequencer(reservationProperties);
+    @Spy
+    private AdmissionProperties admissionProperties = new AdmissionProperties();
+    @Spy
+    private BookingAdmissionQueue bookingAdmissionQueue = new BookingAdmissionQueue(admissionProperties, new SimpleMeterRegistry());
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
 
     @InjectMocks
     private ReservationServiceImpl reservationService;
@@ -50,11 +107,9 @@ class ReservationServiceImplTest {
     @Test
     void getFreeSlots_shouldReturnSlots_whenFound() {
         Integer deskId = 1;
-        ReservationSlot slot = new ReservationSlot();
         SlotsDto slotsDto = new SlotsDto();
 
-        when(reservationSlotRepository.findSlotsByDeskId(deskId)).thenReturn(Optional.of(List.of(slot)));
-        when(dataMapper.toSlotsDto(slot)).thenReturn(slotsDto);
+        when(reservationSlotRepository.findFreeSlotDtosByDeskId(deskId)).thenReturn(Optional.of(List.of(slotsDto)));
 
         List<SlotsDto> result = reservationService.getFreeSlots(deskId);
 
@@ -62,10 +117,24 @@ class ReservationServiceImplTest {
         assertThat(result.get(0)).isEqualTo(slotsDto);
     }
 
+    @Test
+    void getFreeSlots_shouldUseAvailabilityIndex_whenReady() {
+        Integer deskId = 1;
+        SlotsDto slotsDto = new SlotsDto();
+
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.getFreeSlots(deskId)).thenReturn(List.of(slotsDto));
+
+        List<SlotsDto> result = reservationService.getFreeSlots(deskId);
+
+        assertThat(result).containsExactly(slotsDto);
+        verifyNoInteractions(reservationSlotRepository);
+    }
+
     @Test
     void getFreeSlots_shouldThrowException_whenNoSlotsFound() {
         Integer deskId = 1;
-        when(reservationSlotRepository.findSlotsByDeskId(deskId)).thenReturn(Optional.empty());
+        when(reservationSlotRepository.findFreeSlotDtosByDeskId(deskId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> reservationService.getFreeSlots(deskId))
                 .isInstanceOf(ResourceNotFoundException.class)
@@ -75,11 +144,9 @@ class ReservationServiceImplTest {
     @Test
     void getFreeSlotsRoom_shouldReturnSlots_whenFound() {
         Integer roomId = 1;
-        ReservationSlot slot = new ReservationSlot();
         SlotsDto slotsDto = new SlotsDto();
 
-        when(reservationSlotRepository.findSlotsByRoomId(roomId)).thenReturn(Optional.of(List.of(slot)));
-        when(dataMapper.toSlotsDto(slot)).thenReturn(slotsDto);
+        when(reservationSlotRepository.findFreeSlotDtosByRoomId(roomId)).thenReturn(Optional.of(List.of(slotsDto)));
 
         List<SlotsDto> result = reservationService.getFreeSlotsRoom(roomId);
 
@@ -90,7 +157,7 @@ class ReservationServiceImplTest {
     @Test
     void getFreeSlotsRoom_shouldThrowException_whenNoSlotsFound() {
         Integer roomId = 1;
-        when(reservationSlotRepository.findSlotsByRoomId(roomId)).thenReturn(Optional.empty());
+        when(reservationSlotRepository.findFreeSlotDtosByRoomId(roomId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> reservationService.getFreeSlotsRoom(roomId))
                 .isInstanceOf(ResourceNotFoundException.class)
@@ -100,11 +167,9 @@ class ReservationServiceImplTest {
     @Test
     void getActiveReservations_shouldReturnReservations_whenFound() {
         Integer roomId = 1;
-        Reservation reservation = new Reservation();
         SlotsDto slotsDto = new SlotsDto();
 
-        when(reservationRepository.findStartedByRoomId(roomId)).thenReturn(Optional.of(List.of(reservation)));
-        when(dataMapper.toSlotsDto(reservation)).thenReturn(slotsDto);
+        when(reservationRepository.findStartedSlotDtosByRoomId(roomId)).thenReturn(Optional.of(List.of(slotsDto)));
 
         List<SlotsDto> result = reservationService.getActiveReservations(roomId);
 
@@ -115,7 +180,7 @@ class ReservationServiceImplTest {
     @Test
     void getActiveReservations_shouldThrowException_whenNoReservationsFound() {
         Integer roomId = 1;
-        when(reservationRepository.findStartedByRoomId(roomId)).thenReturn(Optional.empty());
+        when(reservationRepository.findStartedSlotDtosByRoomId(roomId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> reservationService.getActiveReservations(roomId))
                 .isInstanceOf(ResourceNotFoundException.class)
@@ -145,6 +210,47 @@ class ReservationServiceImplTest {
         verify(reservationRepository).save(reservation);
     }
 
+    @Test
+    void cancelReservation_shouldReleaseSlots() {
+        Long reservationId = 1L;
+        ReservationSlot slot = new ReservationSlot();
+        slot.setBooked(true);
+        Reservation reservation = new Reservation();
+        reservation.setId(reservationId);
+        reservation.setDeskId(11);
+        reservation.addSlot(slot);
+
+        when(reservationRepository.findById(reservationId)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.save(reservation)).thenReturn(reservation);
+
+        reservationService.cancelReservation(reservationId, "Changed plans");
+
+        assertThat(slot.isBooked()).isFalse();
+        assertThat(slot.getReservation()).isNull();
+        verify(eventPublisher).publishEvent(any(SlotsChangedEvent.class));
+    }
+
+    @Test
+    void cancelReservation_shouldCountNoShow_whenStudentNeverCheckedIn() {
+        Reservation reservation = Reservation.builder()
+                .id(1L)
+                .roomId(1)
+                .deskId(11)
+                .startTime(LocalDateTime.of(2024, 1, 1, 10, 0))
+                .endTime(LocalDateTime.of(2024, 1, 1, 11, 0))
+                .status(ReservationStatus.PENDING)
+                .build();
+        when(reservationRepository.findById(1L)).thenReturn(Optional.of(reservation));
+        when(reservationRepository.save(reservation)).thenReturn(reservation);
+
+        reservationService.cancelReservation(1L, Reservation.NO_SHOW_REASON);
+        reservationService.cancelReservation(1L, Reservation.NO_SHOW_REASON);
+
+        // The second call finds it already cancelled and must not count it again
+        verify(utilizationService).recordCancellation(1, reservation.getStartTime(), reservation.getEndTime(), true);
+        verify(utilizationService, never()).recordCancellation(any(), any(), any(), eq(false));
+    }
+
     @Test
     void cancelReservation_shouldThrowException_whenReservationNotFound() {
         Long reservationId = 1L;
@@ -171,23 +277,125 @@ class ReservationServiceImplTest {
         assertThat(result.get(0)).isEqualTo(response);
     }
 
+    @Test
+    void getReservationsByUserId_shouldReadArchiveOnlyWhenAsked() {
+        Long userId = 1L;
+        Reservation reservation = new Reservation();
+        ArchivedReservation archived = ArchivedReservation.builder().id(7L).userId(userId).build();
+        ReservationResponse response = new ReservationResponse();
+        ReservationResponse archivedResponse = ReservationResponse.builder().id(7L).build();
+
+        when(reservationRepository.findByUserId(userId)).thenReturn(List.of(reservation));
+        when(dataMapper.toReservationResponse(reservation)).thenReturn(response);
+
+        assertThat(reservationService.getReservationsByUserId(userId, false)).containsExactly(response);
+        verifyNoInteractions(archivedReservationRepository);
+
+        when(archivedReservationRepository.findByUserIdOrderByStartTimeDesc(userId)).thenReturn(List.of(archived));
+        when(dataMapper.toReservationResponse(archived)).thenReturn(archivedResponse);
+
+        assertThat(reservationService.getReservationsByUserId(userId, true)).containsExactly(response, archivedResponse);
+    }
+
+    @Test
+    void getReservationHistoryByUserId_shouldReturnNextCursor_whenPageIsFull() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 10, 0);
+        ReservationResponse newer = ReservationResponse.builder().id(9L).createdAt(createdAt.plusHours(1)).build();
+        ReservationResponse older = ReservationResponse.builder().id(4L).createdAt(createdAt).build();
+        when(reservationRepository.findHistoryPageByUserId(1L, LocalDateTime.of(2024, 2, 1, 0, 0), 50L, Limit.of(2)))
+                .thenReturn(List.of(newer, older));
+
+        ReservationHistoryPage page = reservationService.getReservationHistoryByUserId(1L, "2024-02-01T00:00,50", 2, false);
+
+        assertThat(page.getItems()).containsExactly(newer, older);
+        assertThat(page.getNextCursor()).isEqualTo("2024-01-01T10:00,4");
+        // The archive is only read when the caller asks for it
+        verifyNoInteractions(archivedReservationRepository);
+    }
+
+    @Test
+    void getReservationHistoryByUserId_shouldMergeArchivedRowsNewestFirst() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 10, 0);
+        ReservationResponse live9 = ReservationResponse.builder().id(9L).createdAt(createdAt.plusHours(1)).build();
+        ReservationResponse live4 = ReservationResponse.builder().id(4L).createdAt(createdAt).build();
+        ReservationResponse archived7 = ReservationResponse.builder().id(7L).createdAt(createdAt.plusMinutes(30)).build();
+        ReservationResponse archived2 = ReservationResponse.builder().id(2L).createdAt(createdAt.minusHours(1)).build();
+        when(reservationRepository.findHistoryPageByUserId(1L, LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE, Limit.of(3)))
+                .thenReturn(List.of(live9, live4));
+        when(archivedReservationRepository.findHistoryPageByUserId(1L, LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE, Limit.of(3)))
+                .thenReturn(List.of(archived7, archived2));
+
+        ReservationHistoryPage page = reservationService.getReservationHistoryByUserId(1L, null, 3, true);
+
+        assertThat(page.getItems()).containsExactly(live9, archived7, live4);
+        assertThat(page.getNextCursor()).isEqualTo("2024-01-01T10:00,4");
+    }
+
+    @Test
+    void streamReservationHistoryByStudentId_shouldMergeArchiveAndSkipRowArchivedMeanwhile() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 10, 0);
+        ReservationResponse live9 = ReservationResponse.builder().id(9L).createdAt(createdAt.plusHours(1)).build();
+        ReservationResponse live5 = ReservationResponse.builder().id(5L).createdAt(createdAt).build();
+        // Reservation 5 was archived between the two reads and shows up in both
+        ReservationResponse archived5 = ReservationResponse.builder().id(5L).createdAt(createdAt).build();
+        ReservationResponse archived2 = ReservationResponse.builder().id(2L).createdAt(createdAt.minusHours(1)).build();
+        when(reservationRepository.streamHistoryByStudentId(42L)).thenReturn(Stream.of(live9, live5));
+        when(archivedReservationRepository.streamHistoryByStudentId(42L)).thenReturn(Stream.of(archived5, archived2));
+
+        List<ReservationResponse> streamed = new ArrayList<>();
+        reservationService.streamReservationHistoryByStudentId(42L, true, streamed::add);
+
+        assertThat(streamed).extracting(ReservationResponse::getId).containsExactly(9L, 5L, 2L);
+    }
+
+    @Test
+    void streamReservationHistoryByUserId_shouldNotOpenTheArchive_unlessAskedTo() {
+        ReservationResponse live9 = ReservationResponse.builder().id(9L).createdAt(LocalDateTime.now()).build();
+        when(reservationRepository.streamHistoryByUserId(1L)).thenReturn(Stream.of(live9));
+
+        List<ReservationResponse> streamed = new ArrayList<>();
+        reservationService.streamReservationHistoryByUserId(1L, false, streamed::add);
+
+        assertThat(streamed).containsExactly(live9);
+        verifyNoInteractions(archivedReservationRepository);
+    }
+
+    @Test
+    void getReservationHistoryByStudentId_shouldEndPaging_whenPageIsShort() {
+        ReservationResponse only = ReservationResponse.builder().id(4L).createdAt(LocalDateTime.now()).build();
+        when(reservationRepository.findHistoryPageByStudentId(any(), any(), any(), any())).thenReturn(List.of(only));
+
+        ReservationHistoryPage page = reservationService.getReservationHistoryByStudentId(42L, null, 20, false);
+
+        assertThat(page.getNextCursor()).isNull();
+        verify(reservationRepository).findHistoryPageByStudentId(42L, LocalDateTime.of(9999, 12, 31, 23, 59),
+                Long.MAX_VALUE, Limit.of(20));
+    }
+
+    @Test
+    void getReservationHistoryByUserId_shouldRejectMalformedCursor() {
+        assertThatThrownBy(() -> reservationService.getReservationHistoryByUserId(1L, "not-a-cursor", 20, false))
+                .isInstanceOf(InvalidCursorException.class)
+                .hasMessage("Invalid History Cursor");
+    }
+
     @Test
     void makeReservation_shouldCreateReservation_whenValidRequest() {
         ReservationRequest request = new ReservationRequest();
         request.setUserId(1L);
-        request.setDeskId(1);
+        request.setDeskId(11);
         request.setStartTime(LocalDateTime.now());
-        request.setEndTime(LocalDateTime.now().plusHours(2));
+        request.setEndTime(request.getStartTime().plusHours(1));
 
         User user = new User();
 
         ReservationSlot slot1 = new ReservationSlot();
         slot1.setSlotStart(LocalDateTime.of(2024, 1, 1, 10, 0));
-        slot1.setSlotEnd(LocalDateTime.of(2024, 1, 1, 11, 0));
+        slot1.setSlotEnd(LocalDateTime.of(2024, 1, 1, 10, 30));
 
         ReservationSlot slot2 = new ReservationSlot();
-        slot2.setSlotStart(LocalDateTime.of(2024, 1, 1, 11, 0));
-        slot2.setSlotEnd(LocalDateTime.of(2024, 1, 1, 12, 0));
+        slot2.setSlotStart(LocalDateTime.of(2024, 1, 1, 10, 30));
+        slot2.setSlotEnd(LocalDateTime.of(2024, 1, 1, 11, 0));
 
         // Use ArrayList to allow sorting/modification if needed by the service
         List<ReservationSlot> slots = new ArrayList<>(Arrays.asList(slot1, slot2));
@@ -196,7 +404,7 @@ class ReservationServiceImplTest {
         Reservation savedReservation = new Reservation();
         ReservationResponse response = new ReservationResponse();
 
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(user));
         when(reservationSlotRepository.findPessimisticSlotsByRangeAndDeskId(
                 request.getDeskId(), request.getStartTime(), request.getEndTime()))
                 .thenReturn(Optional.of(slots));
@@ -208,6 +416,7 @@ class ReservationServiceImplTest {
 
         assertThat(result).isEqualTo(response);
         verify(reservationRepository).save(reservation);
+        verify(utilizationService).recordBooking(request.getRoomId(), request.getStartTime(), request.getEndTime());
     }
 
     @Test
@@ -215,7 +424,7 @@ class ReservationServiceImplTest {
         ReservationRequest request = new ReservationRequest();
         request.setUserId(1L);
 
-        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+        when(userLookupService.findById(1L)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> reservationService.makeReservation(request))
                 .isInstanceOf(ResourceNotFoundException.class)
@@ -226,13 +435,13 @@ class ReservationServiceImplTest {
     void makeReservation_shouldThrowException_whenSlotsNotFound() {
         ReservationRequest request = new ReservationRequest();
         request.setUserId(1L);
-        request.setDeskId(1);
+        request.setDeskId(11);
         request.setStartTime(LocalDateTime.now());
         request.setEndTime(LocalDateTime.now().plusHours(1));
 
         User user = new User();
 
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(user));
         when(reservationSlotRepository.findPessimisticSlotsByRangeAndDeskId(any(), any(), any()))
                 .thenReturn(Optional.empty());
 
@@ -245,23 +454,23 @@ class ReservationServiceImplTest {
     void makeReservation_shouldThrowException_whenSlotsNotConsecutive() {
         ReservationRequest request = new ReservationRequest();
         request.setUserId(1L);
-        request.setDeskId(1);
+        request.setDeskId(11);
         request.setStartTime(LocalDateTime.now());
-        request.setEndTime(LocalDateTime.now().plusHours(2));
+        request.setEndTime(request.getStartTime().plusHours(1));
 
         User user = new User();
 
         ReservationSlot slot1 = new ReservationSlot();
         slot1.setSlotStart(LocalDateTime.of(2024, 1, 1, 10, 0));
-        slot1.setSlotEnd(LocalDateTime.of(2024, 1, 1, 11, 0));
+        slot1.setSlotEnd(LocalDateTime.of(2024, 1, 1, 10, 30));
 
         ReservationSlot slot2 = new ReservationSlot();
-        slot2.setSlotStart(LocalDateTime.of(2024, 1, 1, 12, 0)); // Gap here
-        slot2.setSlotEnd(LocalDateTime.of(2024, 1, 1, 13, 0));
+        slot2.setSlotStart(LocalDateTime.of(2024, 1, 1, 11, 0)); // Gap here
+        slot2.setSlotEnd(LocalDateTime.of(2024, 1, 1, 11, 30));
 
         List<ReservationSlot> slots = new ArrayList<>(Arrays.asList(slot1, slot2));
 
-        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(user));
         when(reservationSlotRepository.findPessimisticSlotsByRangeAndDeskId(any(), any(), any()))
                 .thenReturn(Optional.of(slots));
 
@@ -269,4 +478,220 @@ class ReservationServiceImplTest {
                 .isInstanceOf(NotConsecutiveSlotsException.class)
                 .hasMessage("Reservation Slots Are Not Consecutive");
     }
+
+    @Test
+    void makeReservation_shouldThrowException_whenPessimisticClaimCoversOnlyPartOfRange() {
+        ReservationRequest request = new ReservationRequest();
+        request.setUserId(1L);
+        request.setDeskId(11);
+        request.setStartTime(LocalDateTime.of(2024, 1, 1, 10, 0));
+        request.setEndTime(LocalDateTime.of(2024, 1, 1, 11, 0));
+
+        User user = new User();
+
+        ReservationSlot slot1 = new ReservationSlot();
+        slot1.setSlotStart(LocalDateTime.of(2024, 1, 1, 10, 0));
+        slot1.setSlotEnd(LocalDateTime.of(2024, 1, 1, 10, 30));
+
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(user));
+        when(reservationSlotRepository.findPessimisticSlotsByRangeAndDeskId(
+                request.getDeskId(), request.getStartTime(), request.getEndTime()))
+                .thenReturn(Optional.of(new ArrayList<>(List.of(slot1))));
+
+        assertThatThrownBy(() -> reservationService.makeReservation(request))
+                .isInstanceOf(ReservationNotAvailableException.class)
+                .hasMessage("Requested Slots Are No Longer Available");
+        verify(reservationRepository, never()).save(any());
+    }
+
+    @Test
+    void makeReservation_optimistic_shouldClaimSlotsWithoutLocking() {
+        reservationProperties.setBookingMode(ReservationProperties.BookingMode.OPTIMISTIC);
+        ReservationRequest request = new ReservationRequest();
+        request.setUserId(1L);
+        request.setDeskId(11);
+        request.setStartTime(LocalDateTime.of(2024, 1, 1, 10, 0));
+        request.setEndTime(LocalDateTime.of(2024, 1, 1, 11, 0));
+
+        User user = new User();
+        user.setStudentId(42L);
+
+        ReservationSlot slot1 = new ReservationSlot();
+        slot1.setSlotStart(LocalDateTime.of(2024, 1, 1, 10, 0));
+        slot1.setSlotEnd(LocalDateTime.of(2024, 1, 1, 10, 30));
+
+        ReservationSlot slot2 = new ReservationSlot();
+        slot2.setSlotStart(LocalDateTime.of(2024, 1, 1, 10, 30));
+        slot2.setSlotEnd(LocalDateTime.of(2024, 1, 1, 11, 0));
+
+        List<ReservationSlot> slots = new ArrayList<>(Arrays.asList(slot2, slot1));
+        Reservation reservation = new Reservation();
+        ReservationResponse response = new ReservationResponse();
+
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(user));
+        when(reservationSlotRepository.claimSlotsByRangeAndDeskId(
+                request.getDeskId(), request.getStartTime(), request.getEndTime())).thenReturn(2);
+        when(reservationSlotRepository.findClaimedSlotsByRangeAndDeskId(
+                request.getDeskId(), request.getStartTime(), request.getEndTime())).thenReturn(slots);
+        when(dataMapper.toReservation(slots, request, user)).thenReturn(reservation);
+        when(reservationRepository.save(reservation)).thenReturn(reservation);
+        when(dataMapper.toReservationResponse(reservation)).thenReturn(response);
+
+        ReservationResponse result = reservationService.makeReservation(request);
+
+        assertThat(result).isEqualTo(response);
+        verify(reservationSlotRepository).saveAll(slots);
+    }
+
+    @Test
+    void makeReservation_optimistic_shouldThrowException_whenSlotsAlreadyClaimed() {
+        reservationProperties.setBookingMode(ReservationProperties.BookingMode.OPTIMISTIC);
+        ReservationRequest request = new ReservationRequest();
+        request.setUserId(1L);
+        request.setDeskId(11);
+        request.setStartTime(LocalDateTime.of(2024, 1, 1, 10, 0));
+        request.setEndTime(LocalDateTime.of(2024, 1, 1, 11, 0));
+
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(new User()));
+        when(reservationSlotRepository.claimSlotsByRangeAndDeskId(any(), any(), any())).thenReturn(1);
+
+        assertThatThrownBy(() -> reservationService.makeReservation(request))
+                .isInstanceOf(ReservationNotAvailableException.class)
+                .hasMessage("Requested Slots Are No Longer Available");
+    }
+
+    @Test
+    void makeReservation_range_shouldInsertSingleReservationRow() {
+        reservationProperties.setStorage(ReservationProperties.StorageMode.RANGE);
+        ReservationRequest request = new ReservationRequest();
+        request.setUserId(1L);
+        request.setDeskId(11);
+        request.setStartTime(LocalDateTime.of(2024, 1, 1, 10, 0));
+        request.setEndTime(LocalDateTime.of(2024, 1, 1, 11, 0));
+
+        User user = new User();
+        Reservation reservation = new Reservation();
+        ReservationResponse response = new ReservationResponse();
+
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(user));
+        when(dataMapper.toReservation(List.of(), request, user)).thenReturn(reservation);
+        when(rangeReservationStore.book(reservation)).thenReturn(reservation);
+        when(dataMapper.toReservationResponse(reservation)).thenReturn(response);
+
+        ReservationResponse result = reservationService.makeReservation(request);
+
+        assertThat(result).isEqualTo(response);
+        verifyNoInteractions(reservationSlotRepository);
+    }
+
+    @Test
+    void makeReservation_batchJobs_shouldNotScheduleJobRunrJobs() {
+        reservationProperties.setStorage(ReservationProperties.StorageMode.RANGE);
+        reservationProperties.setJobs(ReservationProperties.JobsMode.BATCH);
+        ReservationRequest request = new ReservationRequest();
+        request.setUserId(1L);
+        request.setDeskId(11);
+        request.setStartTime(LocalDateTime.of(2024, 1, 1, 10, 0));
+        request.setEndTime(LocalDateTime.of(2024, 1, 1, 11, 0));
+
+        User user = new User();
+        Reservation reservation = new Reservation();
+
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(user));
+        when(dataMapper.toReservation(List.of(), request, user)).thenReturn(reservation);
+        when(rangeReservationStore.book(reservation)).thenReturn(reservation);
+
+        reservationService.makeReservation(request);
+
+        verifyNoInteractions(jobScheduler);
+    }
+
+    @Test
+    void makeReservation_shouldNotHoldAdmissionPermit_whileWaitingForDesk() throws Exception {
+        ReservationRequest request = new ReservationRequest();
+        request.setUserId(1L);
+        request.setDeskId(11);
+        request.setStartTime(LocalDateTime.of(2024, 1, 1, 10, 0));
+        request.setEndTime(LocalDateTime.of(2024, 1, 1, 11, 0));
+
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(new User()));
+        when(reservationSlotRepository.findPessimisticSlotsByRangeAndDeskId(any(), any(), any()))
+                .thenReturn(Optional.empty());
+        CountDownLatch deskHeld = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> bookingSequencer.runExclusively(11, () -> {
+                deskHeld.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            deskHeld.await();
+            Future<?> queued = executor.submit(() -> reservationService.makeReservation(request));
+            while (bookingSequencer.getQueueLength(11) == 0) {
+                Thread.sleep(1);
+            }
+
+            // Queued on desk 11, yet every permit is still free for other desks
+            assertThat(bookingAdmissionQueue.getInFlight()).isZero();
+            release.countDown();
+            assertThatThrownBy(() -> queued.get(1, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(ResourceNotFoundException.class);
+        }
+    }
+
+    @Test
+    void makeRoomReservation_shouldFallBackToNextCandidate_whenBestFitDeskIsTaken() {
+        reservationProperties.setStorage(ReservationProperties.StorageMode.RANGE);
+        RoomReservationRequest request = RoomReservationRequest.builder()
+                .userId(1L)
+                .roomId(1)
+                .startTime(LocalDateTime.of(2024, 1, 1, 10, 0))
+                .endTime(LocalDateTime.of(2024, 1, 1, 11, 0))
+                .build();
+
+        User user = new User();
+        user.setStudentId(42L);
+        Reservation reservation = new Reservation();
+        ReservationResponse response = new ReservationResponse();
+
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(user));
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.findCandidateDesks(1, request.getStartTime(), request.getEndTime()))
+                .thenReturn(List.of(12, 11));
+        when(dataMapper.toReservation(any(), any(), any())).thenReturn(reservation);
+        when(rangeReservationStore.book(reservation))
+                .thenThrow(new ReservationNotAvailableException("Requested Slots Are No Longer Available"))
+                .thenReturn(reservation);
+        when(dataMapper.toReservationResponse(reservation)).thenReturn(response);
+
+        ReservationResponse result = reservationService.makeRoomReservation(request);
+
+        assertThat(result).isEqualTo(response);
+        verify(rangeReservationStore, times(2)).book(reservation);
+        verify(eventPublisher).publishEvent(new SlotsChangedEvent(1, 11, request.getStartTime(), request.getEndTime(), true));
+    }
+
+    @Test
+    void makeRoomReservation_shouldThrowException_whenNoDeskCoversRange() {
+        RoomReservationRequest request = RoomReservationRequest.builder()
+                .userId(1L)
+                .roomId(1)
+                .startTime(LocalDateTime.of(2024, 1, 1, 10, 0))
+                .endTime(LocalDateTime.of(2024, 1, 1, 11, 0))
+                .build();
+
+        when(userLookupService.findById(1L)).thenReturn(Optional.of(new User()));
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.findCandidateDesks(any(), any(), any())).thenReturn(List.of());
+
+        assertThatThrownBy(() -> reservationService.makeRoomReservation(request))
+                .isInstanceOf(ReservationNotAvailableException.class)
+                .hasMessage("No Desk In Room Is Free For The Requested Range");
+        verifyNoInteractions(reservationSlotRepository);
+    }
 }
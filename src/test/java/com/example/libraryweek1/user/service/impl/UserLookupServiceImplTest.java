@@ -0,0 +1,122 @@
+package com.example.libraryweek1.user.service.impl;
+
+import com.example.libraryweek1.config.UserCacheProperties;
+import com.example.libraryweek1.user.dto.CachedUser;
+import com.example.libraryweek1.user.entity.User;
+import com.example.libraryweek1.user.event.UserChangedEvent;
+import com.example.libraryweek1.user.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserLookupServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final JsonMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UserLookupServiceImpl userLookupService;
+
+    @BeforeEach
+    void setUp() {
+        userLookupService = new UserLookupServiceImpl(userRepository, redisTemplate, objectMapper,
+                new UserCacheProperties(), listenerContainer, meterRegistry);
+    }
+
+    @Test
+    void findById_shouldLoadOnceAndServeLaterCallsLocally() {
+        User user = user();
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        Optional<User> first = userLookupService.findById(1L);
+        Optional<User> second = userLookupService.findById(1L);
+
+        assertThat(first).get().extracting(User::getStudentId).isEqualTo(12345L);
+        assertThat(second).get().extracting(User::getPasswordHash).isNull();
+        verify(userRepository, times(1)).findById(1L);
+        verify(valueOperations).set(eq("users:id:1"), anyString(), eq(Duration.ofHours(1)));
+        assertThat(meterRegistry.counter("users.cache.redis", "result", "miss").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void findByStudentId_shouldUseRedis_whenLocalTierMisses() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("users:student:12345")).thenReturn(objectMapper.writeValueAsString(CachedUser.of(user())));
+
+        Optional<User> found = userLookupService.findByStudentId(12345L);
+
+        assertThat(found).get().extracting(User::getId).isEqualTo(1L);
+        verify(userRepository, never()).findByStudentId(any());
+        assertThat(meterRegistry.counter("users.cache.redis", "result", "hit").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void invalidationMessage_shouldEvictLocalEntriesOfTheUser() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user()));
+        userLookupService.findById(1L);
+
+        userLookupService.onMessage(new DefaultMessage("users:invalidate".getBytes(StandardCharsets.UTF_8),
+                "1".getBytes(StandardCharsets.UTF_8)), null);
+        userLookupService.findById(1L);
+
+        verify(userRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void onUserChanged_shouldDeleteRedisEntriesAndBroadcast() {
+        userLookupService.onUserChanged(new UserChangedEvent(1L, 12345L, 12345L));
+
+        verify(redisTemplate).delete(List.of("users:id:1", "users:student:12345"));
+        verify(redisTemplate).convertAndSend("users:invalidate", "1");
+    }
+
+    @Test
+    void onUserChanged_shouldAlsoEvictOldStudentId_whenItChanged() {
+        userLookupService.onUserChanged(new UserChangedEvent(1L, 54321L, 12345L));
+
+        verify(redisTemplate).delete(List.of("users:id:1", "users:student:54321", "users:student:12345"));
+        verify(redisTemplate).convertAndSend("users:invalidate", "1");
+    }
+
+    private static User user() {
+        return User.builder()
+                .id(1L)
+                .studentId(12345L)
+                .email("test@example.com")
+                .passwordHash("hashed")
+                .enabled(true)
+                .build();
+    }
+}
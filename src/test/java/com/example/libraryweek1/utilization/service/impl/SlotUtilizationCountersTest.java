@@ -0,0 +1,130 @@
+package com.example.libraryweek1.utilization.service.impl;
+
+import com.example.libraryweek1.AbstractIntegrationTest;
+import com.example.libraryweek1.reservation.entity.Reservation;
+import com.example.libraryweek1.reservation.entity.ReservationStatus;
+import com.example.libraryweek1.reservation.repository.ReservationRepository;
+import com.example.libraryweek1.user.entity.User;
+import com.example.libraryweek1.user.repository.UserRepository;
+import com.example.libraryweek1.utilization.entity.SlotUtilization;
+import com.example.libraryweek1.utilization.repository.SlotUtilizationRepository;
+import com.example.libraryweek1.utilization.service.UtilizationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the counter upserts against Postgres: incremental deltas, the set-based sweep variants and a rebuild
+ * from the base tables must all land on the same numbers.
+ */
+class SlotUtilizationCountersTest extends AbstractIntegrationTest {
+
+    private static final LocalDate DAY = LocalDate.now().minusDays(1);
+
+    @Autowired
+    private UtilizationService utilizationService;
+    @Autowired
+    private SlotUtilizationRepository slotUtilizationRepository;
+    @Autowired
+    private ReservationRepository reservationRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        slotUtilizationRepository.deleteAll();
+        reservationRepository.deleteAll();
+        userRepository.deleteAll();
+        testUser = userRepository.save(User.builder()
+                .studentId(12345L)
+                .email("test@example.com")
+                .passwordHash("hashed")
+                .enabled(true)
+                .build());
+    }
+
+    @Test
+    void recordMethods_shouldUpsertEverySlotOfTheReservation() {
+        LocalDateTime start = DAY.atTime(10, 0);
+        transactionTemplate.executeWithoutResult(status -> {
+            utilizationService.recordBooking(1, start, start.plusHours(1));
+            utilizationService.recordBooking(1, start.plusMinutes(30), start.plusHours(1));
+            utilizationService.recordCancellation(1, start, start.plusHours(1), false);
+        });
+
+        List<SlotUtilization> slots = counters();
+        // 10:00 is slot 2, 10:30 is slot 3
+        assertThat(slots).extracting(SlotUtilization::getSlotIndex).containsExactly(2, 3);
+        assertThat(slots).extracting(SlotUtilization::getBooked).containsExactly(0L, 1L);
+        assertThat(slots).extracting(SlotUtilization::getCancelled).containsExactly(1L, 1L);
+    }
+
+    @Test
+    void recordMethods_shouldRequireTheCallersTransaction() {
+        LocalDateTime start = DAY.atTime(10, 0);
+        assertThatThrownBy(() -> utilizationService.recordBooking(1, start, start.plusHours(1)))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+
+    @Test
+    void sweepVariantsAndRebuild_shouldAgree() {
+        LocalDateTime start = DAY.atTime(9, 0);
+        Reservation ended = save(11, start, start.plusHours(1), ReservationStatus.CONFIRMED);
+        Reservation noShow = save(12, start, start.plusHours(1), ReservationStatus.PENDING);
+        transactionTemplate.executeWithoutResult(status -> {
+            utilizationService.recordBooking(1, ended.getStartTime(), ended.getEndTime());
+            utilizationService.recordBooking(1, noShow.getStartTime(), noShow.getEndTime());
+        });
+
+        transactionTemplate.executeWithoutResult(status -> {
+            utilizationService.recordNoShows(List.of(noShow.getId()));
+            reservationRepository.cancelPendingByIds(List.of(noShow.getId()), Reservation.NO_SHOW_REASON);
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            utilizationService.recordCompletionsEndedBy(start.plusHours(1));
+            reservationRepository.completeEndedBy(start.plusHours(1));
+        });
+        List<SlotUtilization> incremental = counters();
+
+        int written = utilizationService.rebuild(DAY, DAY);
+        List<SlotUtilization> rebuilt = counters();
+
+        assertThat(written).isEqualTo(2);
+        assertThat(incremental).extracting(SlotUtilization::getBooked).containsExactly(1L, 1L);
+        assertThat(incremental).extracting(SlotUtilization::getCompleted).containsExactly(1L, 1L);
+        assertThat(incremental).extracting(SlotUtilization::getNoShows).containsExactly(1L, 1L);
+        assertThat(rebuilt).usingRecursiveFieldByFieldElementComparatorIgnoringFields("id").isEqualTo(incremental);
+    }
+
+    private List<SlotUtilization> counters() {
+        return slotUtilizationRepository.findBySlotDateBetween(DAY, DAY).stream()
+                .sorted(Comparator.comparing(SlotUtilization::getSlotIndex))
+                .toList();
+    }
+
+    private Reservation save(Integer deskId, LocalDateTime start, LocalDateTime end, ReservationStatus status) {
+        return reservationRepository.save(Reservation.builder()
+                .user(testUser)
+                .roomId(1)
+                .deskId(deskId)
+                .startTime(start)
+                .endTime(end)
+                .status(status)
+                .onBreak(false)
+                .build());
+    }
+}
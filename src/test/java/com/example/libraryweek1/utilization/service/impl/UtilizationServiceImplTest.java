@@ -0,0 +1,112 @@
+package com.example.libraryweek1.utilization.service.impl;
+
+import com.example.libraryweek1.utilization.dto.HeatmapCellDto;
+import com.example.libraryweek1.utilization.dto.RoomHeatmapDto;
+import com.example.libraryweek1.utilization.dto.SlotUtilizationTotals;
+import com.example.libraryweek1.utilization.dto.UtilizationHeatmapDto;
+import com.example.libraryweek1.utilization.entity.SlotUtilization;
+import com.example.libraryweek1.utilization.exception.InvalidDateRangeException;
+import com.example.libraryweek1.utilization.repository.SlotUtilizationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UtilizationServiceImplTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+
+    @Mock
+    private SlotUtilizationRepository slotUtilizationRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private UtilizationServiceImpl utilizationService;
+
+    @BeforeEach
+    void setUp() {
+        utilizationService = new UtilizationServiceImpl(slotUtilizationRepository, jdbcTemplate);
+    }
+
+    @Test
+    void getHeatmap_shouldMergeHalfHourSlotsIntoHourlyRatios() {
+        // Room 1 has 4 desks: 8 desk-slots per hour. 09:00 and 09:30 together hold 6 bookings.
+        when(slotUtilizationRepository.findBySlotDateBetween(DAY, DAY.plusDays(1))).thenReturn(List.of(
+                counters(1, DAY, 0, 4, 1, 0),
+                counters(1, DAY, 1, 2, 0, 1)));
+
+        UtilizationHeatmapDto heatmap = utilizationService.getHeatmap(DAY, DAY.plusDays(1));
+
+        RoomHeatmapDto room1 = heatmap.getRooms().get(0);
+        assertThat(heatmap.getRooms()).extracting(RoomHeatmapDto::getRoomId).containsExactly(1, 2, 3);
+        assertThat(room1.getDesks()).isEqualTo(4);
+        // 8 opening hours per day, every date/hour is present even without counters
+        assertThat(room1.getCells()).hasSize(16);
+        HeatmapCellDto nine = room1.getCells().get(0);
+        assertThat(nine.getDate()).isEqualTo(DAY);
+        assertThat(nine.getHour()).isEqualTo(9);
+        assertThat(nine.getBookedRatio()).isCloseTo(0.75, within(1e-9));
+        assertThat(nine.getFreeRatio()).isCloseTo(0.25, within(1e-9));
+        assertThat(nine.getNoShowRatio()).isCloseTo(1.0 / 8, within(1e-9));
+        assertThat(room1.getCells().get(8).getFreeRatio()).isEqualTo(1.0);
+    }
+
+    @Test
+    void getHourlyProfile_shouldDivideByEveryDayOfTheRange() {
+        when(slotUtilizationRepository.sumBySlotBetween(DAY, DAY.plusDays(9)))
+                .thenReturn(List.of(new SlotUtilizationTotals(2, 2, 40L, 30L, 0L, 0L)));
+
+        UtilizationHeatmapDto profile = utilizationService.getHourlyProfile(DAY, DAY.plusDays(9));
+
+        HeatmapCellDto ten = profile.getRooms().get(1).getCells().get(1);
+        assertThat(profile.getRooms().get(1).getCells()).hasSize(8);
+        assertThat(ten.getDate()).isNull();
+        assertThat(ten.getHour()).isEqualTo(10);
+        // 40 bookings over 10 days * 4 desks * 2 slots
+        assertThat(ten.getBookedRatio()).isCloseTo(0.5, within(1e-9));
+    }
+
+    @Test
+    void recordCancellation_shouldReleaseBookingAndCountNoShow() {
+        LocalDateTime start = DAY.atTime(10, 0);
+
+        utilizationService.recordCancellation(1, start, start.plusHours(1), true);
+
+        verify(jdbcTemplate).update(contains("ON CONFLICT"), eq(1), eq(start), eq(start.plusHours(1)),
+                eq(-1), eq(0), eq(0), eq(1));
+    }
+
+    @Test
+    void getHeatmap_shouldRejectInvertedRange() {
+        assertThatThrownBy(() -> utilizationService.getHeatmap(DAY, DAY.minusDays(1)))
+                .isInstanceOf(InvalidDateRangeException.class);
+        verifyNoInteractions(slotUtilizationRepository);
+    }
+
+    private static SlotUtilization counters(Integer roomId, LocalDate date, int slotIndex, long booked, long cancelled, long noShows) {
+        return SlotUtilization.builder()
+                .roomId(roomId)
+                .slotDate(date)
+                .slotIndex(slotIndex)
+                .booked(booked)
+                .cancelled(cancelled)
+                .noShows(noShows)
+                .build();
+    }
+}